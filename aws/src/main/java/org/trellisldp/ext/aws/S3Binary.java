@@ -50,6 +50,17 @@ public class S3Binary implements Binary {
 
     @Override
     public InputStream getContent(final int from, final int to) {
+        return getContent((long) from, (long) to);
+    }
+
+    /**
+     * Get a range of the content, addressing bytes beyond the first 2 GiB. The range is served by S3 and streamed
+     * as it is read.
+     * @param from the index of the first byte
+     * @param to the index of the last byte, inclusive
+     * @return the bytes in that range
+     */
+    public InputStream getContent(final long from, final long to) {
         return client
                 .getObject(new GetObjectRequest(bucketName, key).withRange(from, to)).getObjectContent();
     }
@@ -21,3 +21,10 @@ echo "cassandra is ready"
 
 echo "initializing cassandra tablespace"
 cqlsh -f "$INIT_PATH"/trellis.cql
+
+# the containment view is only needed unless containment is kept in the containment table
+if [ "$TRELLIS_CASSANDRA_CONTAINMENT_INDEX" != "TABLE" ]
+then
+    echo "creating basic containment view"
+    cqlsh -f "$INIT_PATH"/basiccontainment.cql
+fi
@@ -17,6 +17,7 @@ package org.trellisldp.ext.cassandra;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
 /**
@@ -27,6 +28,8 @@ class ByteBufferInputStream extends InputStream {
 
     private static final int ENDOFSTREAM = -1;
 
+    private static final int TRANSFER_SIZE = 8192;
+
     private final ByteBuffer buffer;
     private int readLimit;
     private int readSinceMark;
@@ -84,4 +87,26 @@ class ByteBufferInputStream extends InputStream {
         readSinceMark += availableLength;
         return availableLength;
     }
+
+    /**
+     * Writes the remaining bytes straight from the backing array of the buffer, if it has one, instead of copying
+     * them through an intermediate array.
+     */
+    @Override
+    public long transferTo(final OutputStream out) throws IOException {
+        final int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.limit());
+        } else {
+            final byte[] transfer = new byte[Math.min(length, TRANSFER_SIZE)];
+            while (buffer.hasRemaining()) {
+                final int count = Math.min(transfer.length, buffer.remaining());
+                buffer.get(transfer, 0, count);
+                out.write(transfer, 0, count);
+            }
+        }
+        readSinceMark += length;
+        return length;
+    }
 }
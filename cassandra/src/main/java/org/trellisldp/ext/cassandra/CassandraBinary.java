@@ -20,6 +20,10 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
 
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.rdf.api.IRI;
@@ -44,6 +48,18 @@ public class CassandraBinary implements Binary {
 
     private final ReadRange readRange;
 
+    private final Long size;
+
+    private final Integer chunkCount;
+
+    private final String digestAlgorithm;
+
+    private final byte[] digest;
+
+    private final ByteBuffer inline;
+
+    private final List<ByteBuffer> chunkHashes;
+
     /**
      * @param id identifier for this {@link Binary}
      * @param read a {@link Read} query to use
@@ -51,25 +67,132 @@ public class CassandraBinary implements Binary {
      * @param chunkLength the length of chunk to use reading bits from Cassandra
      */
     public CassandraBinary(final IRI id, final Read read, final ReadRange readRange, final int chunkLength) {
+        this(id, read, readRange, chunkLength, null, null, null, null);
+    }
+
+    /**
+     * @param id identifier for this {@link Binary}
+     * @param read a {@link Read} query to use
+     * @param readRange a {@link ReadRange} query to use
+     * @param chunkLength the length of chunk to use reading bits from Cassandra
+     * @param size the number of bytes in this binary, if known
+     * @param chunkCount the number of chunks in this binary, if known
+     * @param digestAlgorithm the algorithm of {@code digest}, if known
+     * @param digest a digest of the bytes of this binary, if known
+     */
+    public CassandraBinary(final IRI id, final Read read, final ReadRange readRange, final int chunkLength,
+            final Long size, final Integer chunkCount, final String digestAlgorithm, final byte[] digest) {
+        this(id, read, readRange, chunkLength, size, chunkCount, digestAlgorithm, digest, null, null);
+    }
+
+    /**
+     * A binary whose chunks are stored by the hash of their content.
+     *
+     * @param id identifier for this {@link Binary}
+     * @param read a {@link Read} query to use
+     * @param readRange a {@link ReadRange} query to use
+     * @param chunkLength the length of chunk to use reading bits from Cassandra
+     * @param chunkHashes the hashes of the chunks of this binary, in order
+     * @param size the number of bytes in this binary
+     * @param digestAlgorithm the algorithm of {@code digest}, if known
+     * @param digest a digest of the bytes of this binary, if known
+     */
+    public CassandraBinary(final IRI id, final Read read, final ReadRange readRange, final int chunkLength,
+            final List<ByteBuffer> chunkHashes, final long size, final String digestAlgorithm, final byte[] digest) {
+        this(id, read, readRange, chunkLength, size, chunkHashes.size(), digestAlgorithm, digest, null,
+                chunkHashes);
+    }
+
+    /**
+     * A binary small enough to have been stored inline, whose content is already in memory.
+     *
+     * @param id identifier for this {@link Binary}
+     * @param content the bytes of this binary
+     * @param digestAlgorithm the algorithm of {@code digest}, if known
+     * @param digest a digest of the bytes of this binary, if known
+     */
+    public CassandraBinary(final IRI id, final ByteBuffer content, final String digestAlgorithm, final byte[] digest) {
+        this(id, null, null, Math.max(1, content.remaining()), (long) content.remaining(), 0, digestAlgorithm, digest,
+                content, null);
+    }
+
+    private CassandraBinary(final IRI id, final Read read, final ReadRange readRange, final int chunkLength,
+            final Long size, final Integer chunkCount, final String digestAlgorithm, final byte[] digest,
+            final ByteBuffer inline, final List<ByteBuffer> chunkHashes) {
         this.id = id;
         this.read = read;
         this.readRange = readRange;
         if (chunkLength < 1) throw new IllegalArgumentException("Chunk length < 1!");
         this.chunkLength = chunkLength;
+        this.size = size;
+        this.chunkCount = chunkCount;
+        this.digestAlgorithm = digestAlgorithm;
+        this.digest = digest;
+        this.inline = inline;
+        this.chunkHashes = chunkHashes;
+    }
+
+    /**
+     * @return the number of bytes in this binary, if it was recorded when the binary was written
+     */
+    public Optional<Long> getSize() {
+        return Optional.ofNullable(size);
+    }
+
+    /**
+     * @return the number of chunks in this binary, if it was recorded when the binary was written
+     */
+    public Optional<Integer> getChunkCount() {
+        return Optional.ofNullable(chunkCount);
+    }
+
+    /**
+     * @param algorithm a digest algorithm, e.g. {@code SHA-256}
+     * @return the base64-encoded digest of this binary, if one was recorded with that algorithm when the binary was
+     *         written
+     */
+    public Optional<String> getDigest(final String algorithm) {
+        if (digest == null || !algorithm.equalsIgnoreCase(digestAlgorithm)) return Optional.empty();
+        return Optional.of(Base64.getEncoder().encodeToString(digest));
     }
 
     @Override
     public InputStream getContent() {
+        if (inline != null) return new ByteBufferInputStream(inline.duplicate());
+        if (chunkHashes != null) return read.execute(id, chunkHashes).toCompletableFuture().join();
         return read.execute(id).toCompletableFuture().join();
     }
 
     @Override
     public InputStream getContent(final int from, final int to) {
-        final int firstChunk = from / chunkLength;
-        final int lastChunk = to / chunkLength;
-        final int chunkStreamStart = from % chunkLength;
-        final int rangeSize = to - from + 1; // +1 because range is inclusive
-        final InputStream retrieve = readRange.execute(id, firstChunk, lastChunk).toCompletableFuture().join();
+        return getContent((long) from, (long) to);
+    }
+
+    /**
+     * Like {@link #getContent(int, int)}, but addressing bytes beyond the first 2 GiB. Chunks are fetched only as the
+     * returned stream reaches them, so a range of any size is served without buffering it.
+     *
+     * @param from the index of the first byte to read
+     * @param to the index of the last byte to read, inclusive
+     * @return the bytes in that range
+     */
+    public InputStream getContent(final long from, final long to) {
+        if (from < 0) throw new IllegalArgumentException("Range starts before the first byte!");
+        // +1 because range is inclusive, avoiding overflow for an open-ended range
+        final long rangeSize = to < from ? 0 : to - from == Long.MAX_VALUE ? Long.MAX_VALUE : to - from + 1;
+        if (inline != null) {
+            final ByteBuffer range = inline.duplicate();
+            range.position(range.position() + (int) Math.min(from, range.remaining()));
+            range.limit(range.position() + (int) Math.min(rangeSize, range.remaining()));
+            return new ByteBufferInputStream(range);
+        }
+        final int firstChunk = Math.toIntExact(from / chunkLength);
+        // chunk indexes are ints, so no binary has chunks beyond this
+        final int lastChunk = (int) Math.min(Math.max(to, from) / chunkLength, Integer.MAX_VALUE);
+        final long chunkStreamStart = from % chunkLength;
+        final InputStream retrieve = (chunkHashes != null
+                        ? readRange.execute(id, chunkHashes, firstChunk, lastChunk)
+                        : readRange.execute(id, firstChunk, lastChunk)).toCompletableFuture().join();
         // skip to fulfill lower end of range
         try {
             final long skipped = retrieve.skip(chunkStreamStart);
@@ -15,21 +15,40 @@
  */
 package org.trellisldp.ext.cassandra;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.synchronizedList;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.function.Function.identity;
 import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.rdf.api.IRI;
 import org.slf4j.Logger;
@@ -48,11 +67,28 @@ public class CassandraBinaryService implements BinaryService {
     public static final String CONFIG_MAX_CHUNK_SIZE = "trellis.cassandra.max-chunk-size";
     /** The default chunk size for binary resources, in bytes. */
     public static final int DEFAULT_CHUNK_SIZE = 1048576;
+    /** Configuration key for the maximum number of chunk inserts in flight for one upload. */
+    public static final String CONFIG_UPLOAD_CONCURRENCY = "trellis.cassandra.upload-concurrency";
+    /** The default maximum number of chunk inserts in flight for one upload. */
+    public static final int DEFAULT_UPLOAD_CONCURRENCY = 4;
+    /** Configuration key for the maximum number of bytes in flight for one upload. */
+    public static final String CONFIG_UPLOAD_BUDGET = "trellis.cassandra.upload-budget";
+    /** The default maximum number of bytes in flight for one upload. */
+    public static final long DEFAULT_UPLOAD_BUDGET = 8L * 1024 * 1024;
+    /** Configuration key for the algorithm of the digest recorded for each binary, or {@code none}. */
+    public static final String CONFIG_BINARY_DIGEST = "trellis.cassandra.binary-digest";
+    /** The default algorithm of the digest recorded for each binary. */
+    public static final String DEFAULT_BINARY_DIGEST = "SHA-256";
+    /**
+     * Configuration key for the size in bytes up to which a binary is stored inline, in its metadata row, rather than
+     * in chunks. Zero, the default, stores every binary in chunks.
+     */
+    public static final String CONFIG_BINARY_INLINE_THRESHOLD = "trellis.cassandra.binary-inline-threshold";
 
-    private static final Logger LOGGER = getLogger(CassandraBinaryService.class);
+    /** The algorithm of the hashes by which chunks are stored when they are deduplicated. */
+    private static final String CHUNK_HASH_ALGORITHM = "SHA-256";
 
-    @SuppressWarnings("boxing")
-    private static final CompletableFuture<Long> DONE = completedFuture(-1L);
+    private static final Logger LOGGER = getLogger(CassandraBinaryService.class);
 
     // package-private for testing
     static final String CASSANDRA_CHUNK_HEADER_NAME = "Cassandra-Chunk-Size";
@@ -61,6 +97,14 @@ public class CassandraBinaryService implements BinaryService {
 
     private final int defaultChunkLength;
 
+    private final int uploadConcurrency;
+
+    private final long uploadBudget;
+
+    private final String digestAlgorithm;
+
+    private final int inlineThreshold;
+
     private final GetChunkSize get;
 
     private final Insert insert;
@@ -71,7 +115,21 @@ public class CassandraBinaryService implements BinaryService {
 
     private final ReadRange readRange;
 
-    private Executor readBinaryWorkers = Executors.newCachedThreadPool();
+    private final ChunkStore chunkStore;
+
+    private final boolean dedup;
+
+    private final ChunkCompression compression;
+
+    private final Executor readBinaryWorkers = CassandraExecutors.reads();
+
+    private final Executor uploadWorkers = CassandraExecutors.uploads();
+
+    private final SingleFlight<IRI, Binary> lookups = new SingleFlight<>();
+
+    private final ChunkBufferPool buffers = ChunkBufferPool.shared();
+
+    private final ChunkCache chunkCache = ChunkCache.shared();
 
     /**
      * For use with RESTeasy and CDI proxies.
@@ -80,7 +138,7 @@ public class CassandraBinaryService implements BinaryService {
      *          It should not be invoked directly in user code.
      */
     public CassandraBinaryService() {
-        this(new DefaultIdentifierService(), null, null, null, null, null);
+        this(new DefaultIdentifierService(), null, null, null, null, null, null, null);
     }
 
     /**
@@ -90,29 +148,117 @@ public class CassandraBinaryService implements BinaryService {
      * @param delete a {@link Delete} query to use
      * @param read a {@link Read} query to use
      * @param readRange a {@link ReadRange} query to use
+     * @param chunkStore a {@link ChunkStore} to use for chunks stored by the hash of their content
+     * @param compression the {@link ChunkCompression} with which to compress chunks
      */
     @Inject
     public CassandraBinaryService(final IdentifierService idService, final GetChunkSize get, final Insert insert,
-            final Delete delete, final Read read, final ReadRange readRange) {
-        this.defaultChunkLength = getConfig().getOptionalValue(CONFIG_MAX_CHUNK_SIZE, Integer.class)
-            .orElse(DEFAULT_CHUNK_SIZE);
+            final Delete delete, final Read read, final ReadRange readRange, final ChunkStore chunkStore,
+            final ChunkCompression compression) {
+        this(idService, get, insert, delete, read, readRange, chunkStore, compression,
+                getConfig().getOptionalValue(CONFIG_MAX_CHUNK_SIZE, Integer.class).orElse(DEFAULT_CHUNK_SIZE),
+                getConfig().getOptionalValue(CONFIG_UPLOAD_CONCURRENCY, Integer.class)
+                    .orElse(DEFAULT_UPLOAD_CONCURRENCY),
+                getConfig().getOptionalValue(CONFIG_UPLOAD_BUDGET, Long.class).orElse(DEFAULT_UPLOAD_BUDGET),
+                getConfig().getOptionalValue(CONFIG_BINARY_DIGEST, String.class).orElse(DEFAULT_BINARY_DIGEST),
+                getConfig().getOptionalValue(CONFIG_BINARY_INLINE_THRESHOLD, Integer.class).orElse(0));
+    }
+
+    /**
+     * @param idService {@link IdentifierService} to use for binaries
+     * @param get a {@link GetChunkSize} query to use
+     * @param insert a {@link Insert} query to use
+     * @param delete a {@link Delete} query to use
+     * @param read a {@link Read} query to use
+     * @param readRange a {@link ReadRange} query to use
+     * @param chunkStore a {@link ChunkStore} to use for chunks stored by the hash of their content, or {@code null};
+     *        chunks are only stored by hash if it is enabled, and along with other binary metadata
+     * @param compression the {@link ChunkCompression} with which to compress chunks, or {@code null}
+     * @param defaultChunkLength the chunk size for binaries that do not ask for another
+     * @param uploadConcurrency the maximum number of chunk inserts in flight for one upload
+     * @param uploadBudget the maximum number of bytes in flight for one upload
+     * @param digestAlgorithm the algorithm of the digest recorded for each binary, or {@code none}; digests are
+     *        only recorded along with other binary metadata
+     * @param inlineThreshold the size in bytes up to which a binary is stored inline, or zero; binaries are only
+     *        stored inline along with other binary metadata
+     */
+    public CassandraBinaryService(final IdentifierService idService, final GetChunkSize get, final Insert insert,
+            final Delete delete, final Read read, final ReadRange readRange, final ChunkStore chunkStore,
+            final ChunkCompression compression, final int defaultChunkLength, final int uploadConcurrency,
+            final long uploadBudget, final String digestAlgorithm, final int inlineThreshold) {
+        if (uploadConcurrency < 1) throw new IllegalArgumentException("Upload concurrency < 1!");
+        if (inlineThreshold < 0) throw new IllegalArgumentException("Inline threshold < 0!");
+        this.inlineThreshold = inlineThreshold;
+        this.digestAlgorithm = "none".equalsIgnoreCase(digestAlgorithm) ? null : digestAlgorithm;
+        if (this.digestAlgorithm != null) newDigest(this.digestAlgorithm);
+        this.defaultChunkLength = defaultChunkLength;
         LOGGER.info("Using configured default chunk length: {}", defaultChunkLength);
+        this.uploadConcurrency = uploadConcurrency;
+        this.uploadBudget = uploadBudget;
         this.idService = idService;
         this.get = get;
         this.insert = insert;
         this.delete = delete;
         this.read = read;
         this.readRange = readRange;
+        this.chunkStore = chunkStore;
+        this.dedup = chunkStore != null && chunkStore.isEnabled();
+        if (dedup && !insert.recordsMetadata()) {
+            throw new IllegalArgumentException("Storing chunks by hash requires binary metadata to be recorded!");
+        }
+        this.compression = compression != null && compression.isEnabled() ? compression : null;
+        if (this.compression != null && !dedup && !insert.recordsCompression()) {
+            throw new IllegalArgumentException("Compressing chunks requires an Insert query that records it!");
+        }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Concurrent requests for the same binary share one lookup.
+     */
     @Override
     public CompletionStage<Binary> get(final IRI id) {
+        return lookups.get(id, this::load);
+    }
+
+    private CompletionStage<Binary> load(final IRI id) {
         LOGGER.debug("Retrieving binary content from: {}", id);
-        return get.execute(id)
-                        .thenApplyAsync(r -> new CassandraBinary(id, read, readRange, r.getInt("chunkSize")),
-                        readBinaryWorkers);
+        return get.execute(id).thenApplyAsync(r -> binary(id, r), readBinaryWorkers);
+    }
+
+    private CassandraBinary binary(final IRI id, final Row row) {
+        final int chunkSize = row.getInt("chunkSize");
+        // binaries written without metadata have only a chunk size
+        if (!row.getColumnDefinitions().contains("size")) return new CassandraBinary(id, read, readRange, chunkSize);
+        final ByteBuffer digest = row.getByteBuffer("digest");
+        final byte[] digestBytes = digest == null ? null : new byte[digest.remaining()];
+        if (digest != null) digest.duplicate().get(digestBytes);
+        final ByteBuffer inline = row.getByteBuffer("inline");
+        if (inline != null) return new CassandraBinary(id, inline, row.getString("digestAlgorithm"), digestBytes);
+        final List<ByteBuffer> chunkHashes = chunkHashes(row);
+        if (!chunkHashes.isEmpty()) {
+            return new CassandraBinary(id, read, readRange, chunkSize, chunkHashes, row.getLong("size"),
+                    row.getString("digestAlgorithm"), digestBytes);
+        }
+        return new CassandraBinary(id, read, readRange, chunkSize, row.getLong("size"), row.getInt("chunkCount"),
+                row.getString("digestAlgorithm"), digestBytes);
+    }
+
+    /**
+     * @return the hashes of the chunks of a binary stored by the hash of their content, or an empty list
+     */
+    private static List<ByteBuffer> chunkHashes(final Row row) {
+        if (row == null || !row.getColumnDefinitions().contains("chunkHashes")) return emptyList();
+        final List<ByteBuffer> chunkHashes = row.getList("chunkHashes", ByteBuffer.class);
+        return chunkHashes == null ? emptyList() : chunkHashes;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If chunks are deduplicated, the chunks of any binary this replaces are released once it has been replaced.
+     */
     @Override
     public CompletionStage<Void> setContent(final BinaryMetadata meta, final InputStream stream) {
         LOGGER.debug("Recording binary content under: {}", meta.getIdentifier());
@@ -125,28 +271,249 @@ public class CassandraBinaryService implements BinaryService {
                 throw new TrellisRuntimeException("Too many " + CASSANDRA_CHUNK_HEADER_NAME + " headers!");
             else chunkSize = Integer.parseInt(headers.get(0));
         }
-        return setChunk(meta, stream, new AtomicInteger(), chunkSize)
-                        .thenAccept(l -> LOGGER.debug("Recorded binary content under: {}", meta.getIdentifier()));
+        final IRI id = meta.getIdentifier();
+        final Upload upload = new Upload(id, stream, chunkSize, meta.getMimeType().orElse(null));
+        // read before the upload can replace them; a binary that cannot be found has no chunks to release
+        final CompletionStage<List<ByteBuffer>> replaced = dedup ? get.execute(id).handle((row, e) -> chunkHashes(row))
+            : completedFuture(emptyList());
+        return supplyAsync(upload::run, uploadWorkers)
+                        .thenCombine(replaced, (uploaded, hashes) -> uploaded)
+                        .thenCompose(this::recordMetadata)
+                        .handle((chunks, e) -> e == null ? completedFuture(chunks) : purgeAfter(upload, replaced, e))
+                        .thenCompose(identity())
+                        .thenCompose(chunks -> releaseReplaced(replaced, chunks))
+                        .whenComplete((chunks, e) -> forget(id))
+                        .thenAccept(chunks -> LOGGER.debug("Recorded {} chunks of binary content under: {}", chunks,
+                                        id));
     }
 
-    @SuppressWarnings("resource")
-    private CompletionStage<Long> setChunk(final BinaryMetadata meta, final InputStream data,
-            final AtomicInteger chunkIndex, final int chunkLength) {
-        final IRI id = meta.getIdentifier();
-        LOGGER.debug("Recording chunk {} of binary content under: {}", chunkIndex.get(), id);
-
-        try (final NoopCloseCountingInputStream countingChunk = new NoopCloseCountingInputStream(
-                        new BoundedInputStream(data, chunkLength))) {
-            return insert.execute(id, chunkLength, chunkIndex.getAndIncrement(), countingChunk)
-                            .thenComposeAsync(future -> countingChunk.getByteCount() == chunkLength
-                                            ? setChunk(meta, data, chunkIndex, chunkLength)
-                                            : DONE, insert);
+    /**
+     * Once every chunk has been written, record the metadata of the binary, if that is configured.
+     */
+    private CompletionStage<Integer> recordMetadata(final Upload upload) {
+        if (!insert.recordsMetadata()) return completedFuture(upload.chunkCount);
+        final byte[] digest = upload.digest == null ? null : upload.digest.digest();
+        if (upload.inline != null) {
+            return insert.executeInline(upload.id, upload.chunkLength, upload.inline, digestAlgorithm, digest)
+                            .thenApply(v -> upload.chunkCount);
+        }
+        return insert.executeMetadata(upload.id, upload.size, upload.chunkLength, upload.chunkCount,
+                        digestAlgorithm, digest, upload.hashes).thenApply(v -> upload.chunkCount);
+    }
+
+    private static MessageDigest newDigest(final String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported binary digest algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Once a binary has been replaced, release the chunks of the binary it replaced.
+     */
+    private CompletionStage<Integer> releaseReplaced(final CompletionStage<List<ByteBuffer>> replaced,
+            final int chunks) {
+        return replaced.thenCompose(hashes -> hashes.isEmpty() ? completedFuture((Void) null)
+                        : chunkStore.releaseAll(hashes)).thenApply(r -> chunks);
+    }
+
+    /**
+     * Remove whatever chunks of a failed upload were written, then fail with the error that ended the upload. Chunks
+     * stored by hash, including those of the binary the upload would have replaced, are released only once the
+     * binary has been deleted, so that if deleting it fails they leak rather than go missing from under it.
+     */
+    private CompletableFuture<Integer> purgeAfter(final Upload upload,
+            final CompletionStage<List<ByteBuffer>> replaced, final Throwable error) {
+        final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+        LOGGER.warn("Failed to record binary content under: {}, purging it", upload.id, cause);
+        final CompletionStage<Void> purge = delete.execute(upload.id);
+        return (dedup ? purge.thenCompose(r -> replaced).thenCompose(hashes -> {
+            final List<ByteBuffer> released = new ArrayList<>(upload.stored);
+            released.addAll(hashes);
+            return chunkStore.releaseAll(released);
+        }) : purge)
+            .<Integer>handle((r, e) -> {
+                if (e != null) cause.addSuppressed(e);
+                throw new CompletionException(cause);
+            }).toCompletableFuture();
+    }
+
+    /**
+     * Reads a binary chunk by chunk, keeping several chunk inserts in flight at once. The number in flight is bounded
+     * both by {@link #uploadConcurrency} and by {@link #uploadBudget}, and reading from the caller's stream waits
+     * while that bound is reached. A binary no larger than {@link #inlineThreshold} is not written in chunks at all,
+     * but kept to be stored inline. If chunks are deduplicated, each is stored in the {@link ChunkStore} by its hash,
+     * and the hashes are kept to be recorded in order with the metadata of the binary. If the MIME type of the binary
+     * is one that {@link ChunkCompression} applies to, each chunk that shrinks when compressed is stored compressed.
+     */
+    private final class Upload {
+
+        private final IRI id;
+        private InputStream data;
+        private ReadableByteChannel channel;
+        private final int chunkLength;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final MessageDigest digest;
+        private long size;
+        private int chunkCount;
+        private ByteBuffer inline;
+        private final MessageDigest chunkDigest;
+        private final List<ByteBuffer> hashes;
+        private final List<ByteBuffer> stored;
+        private final Deflater deflater;
+
+        private Upload(final IRI id, final InputStream data, final int chunkLength, final String mimeType) {
+            this.id = id;
+            this.digest = digestAlgorithm != null && insert.recordsMetadata() ? newDigest(digestAlgorithm) : null;
+            this.data = data;
+            this.chunkLength = chunkLength;
+            this.maxInFlight = (int) Math.max(1, Math.min(uploadConcurrency, uploadBudget / Math.max(1, chunkLength)));
+            this.inFlight = new Semaphore(maxInFlight);
+            this.chunkDigest = dedup ? newDigest(CHUNK_HASH_ALGORITHM) : null;
+            this.hashes = dedup ? new ArrayList<>() : null;
+            this.stored = dedup ? synchronizedList(new ArrayList<>()) : null;
+            this.deflater = compression != null && compression.appliesTo(mimeType) ? compression.newDeflater() : null;
+        }
+
+        private Upload run() {
+            if (inlineThreshold > 0 && insert.recordsMetadata() && readInline()) return this;
+            try {
+                boolean full;
+                do {
+                    final ByteBuffer chunk = readChunk();
+                    // an empty binary is still recorded as one empty chunk
+                    if (!chunk.hasRemaining() && chunkCount > 0) {
+                        buffers.release(chunk);
+                        break;
+                    }
+                    inFlight.acquireUninterruptibly();
+                    if (failure.get() != null) {
+                        inFlight.release();
+                        buffers.release(chunk);
+                        break;
+                    }
+                    LOGGER.debug("Recording chunk {} of binary content under: {}", chunkCount, id);
+                    // the chunk may be back in the pool, and reused, as soon as it is stored
+                    full = chunk.limit() == chunkLength;
+                    size += chunk.remaining();
+                    if (digest != null) digest.update(chunk.duplicate());
+                    store(chunk).whenComplete((r, e) -> {
+                                        if (e != null) failure.compareAndSet(null, e);
+                                        inFlight.release();
+                                    });
+                } while (full && failure.get() == null);
+            } finally {
+                // no insert may land after this upload has failed and its binary has been purged
+                inFlight.acquireUninterruptibly(maxInFlight);
+                if (deflater != null) deflater.end();
+            }
+            if (failure.get() != null) throw new CompletionException(failure.get());
+            return this;
+        }
+
+        /**
+         * Store one chunk, compressed if that shrinks it, and release its buffer once it has been stored.
+         */
+        private CompletionStage<Void> store(final ByteBuffer chunk) {
+            final int index = chunkCount++;
+            final ByteBuffer hash = dedup ? hash(chunk) : null;
+            final ByteBuffer compressed = deflater != null ? compress(chunk) : null;
+            final ByteBuffer written = compressed != null ? compressed : chunk;
+            final String algorithm = compressed != null ? compression.getAlgorithm() : null;
+            final CompletionStage<Void> put;
+            if (dedup) {
+                put = (algorithm == null ? chunkStore.put(hash, written) : chunkStore.put(hash, written, algorithm))
+                    .thenRun(() -> stored.add(hash));
+            } else {
+                put = algorithm == null ? insert.execute(id, chunkLength, index, written)
+                    : insert.execute(id, chunkLength, index, written, algorithm);
+            }
+            return put.whenComplete((r, e) -> buffers.release(written));
+        }
+
+        private ByteBuffer hash(final ByteBuffer chunk) {
+            chunkDigest.update(chunk.duplicate());
+            final ByteBuffer hash = ByteBuffer.wrap(chunkDigest.digest());
+            hashes.add(hash);
+            return hash;
+        }
+
+        /**
+         * @return the compressed chunk, having released the original, or {@code null} if it did not shrink
+         */
+        private ByteBuffer compress(final ByteBuffer chunk) {
+            final ByteBuffer compressed = buffers.acquire(chunkLength);
+            if (ChunkCompression.compress(deflater, chunk, compressed)) {
+                buffers.release(chunk);
+                return compressed;
+            }
+            buffers.release(compressed);
+            return null;
+        }
+
+        /**
+         * @return whether the whole binary was small enough to be stored inline
+         */
+        @SuppressWarnings("resource")
+        private boolean readInline() {
+            final byte[] head;
+            try {
+                head = IOUtils.toByteArray(new BoundedInputStream(data, inlineThreshold + 1L));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (head.length > inlineThreshold) {
+                // too large after all: write it in chunks, starting with the bytes already read
+                data = new SequenceInputStream(new ByteArrayInputStream(head), data);
+                return false;
+            }
+            LOGGER.debug("Recording {} bytes of binary content inline under: {}", head.length, id);
+            inline = ByteBuffer.wrap(head);
+            size = head.length;
+            if (digest != null) digest.update(head);
+            return true;
+        }
+
+        @SuppressWarnings("resource")
+        private ByteBuffer readChunk() {
+            final ByteBuffer chunk = buffers.acquire(chunkLength);
+            try {
+                if (chunk.hasArray()) return ChunkBufferPool.fill(data, chunk);
+                // one channel for the whole upload, rather than one, with its transfer array, for each chunk
+                if (channel == null) channel = Channels.newChannel(data);
+                return ChunkBufferPool.fill(channel, chunk);
+            } catch (final IOException e) {
+                buffers.release(chunk);
+                throw new UncheckedIOException(e);
+            }
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If chunks are deduplicated, the chunks of the binary are released once it has been deleted.
+     */
     @Override
     public CompletionStage<Void> purgeContent(final IRI identifier) {
-        return delete.execute(identifier);
+        if (!dedup) return delete.execute(identifier).whenComplete((r, e) -> forget(identifier));
+        // a binary that cannot be found has no chunks to release
+        return get.execute(identifier).handle((row, e) -> chunkHashes(row))
+            .thenCompose(chunkHashes -> delete.execute(identifier)
+                            .thenCompose(r -> chunkStore.releaseAll(chunkHashes)))
+            .whenComplete((r, e) -> forget(identifier));
+    }
+
+    /**
+     * Stop serving lookups and chunks of a binary that may have begun before it was written or purged.
+     */
+    private void forget(final IRI id) {
+        lookups.forget(id);
+        chunkCache.invalidate(id);
     }
 
     @Override
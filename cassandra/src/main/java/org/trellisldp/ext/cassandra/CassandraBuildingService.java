@@ -15,6 +15,7 @@
  */
 package org.trellisldp.ext.cassandra;
 
+import static java.util.Collections.emptyMap;
 import static java.util.function.Predicate.isEqual;
 import static java.util.stream.Collectors.toSet;
 import static org.trellisldp.api.Resource.SpecialResources.MISSING_RESOURCE;
@@ -22,10 +23,16 @@ import static org.trellisldp.api.Resource.SpecialResources.MISSING_RESOURCE;
 import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
 import org.slf4j.Logger;
 import org.trellisldp.api.BinaryMetadata;
 import org.trellisldp.api.Metadata;
@@ -35,6 +42,35 @@ import org.trellisldp.vocabulary.Trellis;
 interface CassandraBuildingService {
 
     default Resource parse(final Row metadata, final Logger log, final IRI id) {
+        return parse(metadata, log, id, emptyMap());
+    }
+
+    /**
+     * Build a resource from a row of mutable data.
+     *
+     * @param metadata the row, or {@code null} if the resource was not found
+     * @param log the logger to use
+     * @param id the identifier of the resource
+     * @param deferredGraphs graphs to be retrieved only when a caller of the resource asks for them
+     * @return the resource
+     */
+    default Resource parse(final Row metadata, final Logger log, final IRI id,
+            final Map<IRI, Supplier<CompletionStage<Stream<Quad>>>> deferredGraphs) {
+        return parse(metadata, log, id, deferredGraphs, null);
+    }
+
+    /**
+     * Build a resource from a row of mutable data and RDF read from elsewhere.
+     *
+     * @param metadata the row, or {@code null} if the resource was not found
+     * @param log the logger to use
+     * @param id the identifier of the resource
+     * @param deferredGraphs graphs to be retrieved only when a caller of the resource asks for them
+     * @param data the RDF of the resource, or {@code null} to parse it from {@code metadata}
+     * @return the resource
+     */
+    default Resource parse(final Row metadata, final Logger log, final IRI id,
+            final Map<IRI, Supplier<CompletionStage<Stream<Quad>>>> deferredGraphs, final Dataset data) {
         if (metadata == null) {
             log.debug("{} was not found.", id);
             return MISSING_RESOURCE;
@@ -53,19 +89,34 @@ interface CassandraBuildingService {
 
         final Instant modified = metadata.get("modified", Instant.class);
         log.debug("Found modified = {} for resource {}", modified, id);
-        final Dataset dataset = CassandraIOUtils.parse(metadata.getString("quads"));
-        log.debug("Found dataset = {} for resource {}", dataset, id);
 
         final BinaryMetadata binary = binaryId != null ?
             BinaryMetadata.builder(binaryId).mimeType(mimeType).build() : null;
 
-        final Set<IRI> graphs = dataset.getGraphNames().filter(IRI.class::isInstance).map(IRI.class::cast)
+        // when the graph names were recorded, the RDF is only parsed if a caller asks for it
+        final Optional<Set<IRI>> storedGraphs = CassandraIOUtils.graphNames(metadata);
+        final Supplier<Dataset> dataset;
+        final Stream<IRI> graphNames;
+        if (storedGraphs.isPresent()) {
+            log.debug("Found graph names = {} for resource {}", storedGraphs.get(), id);
+            dataset = data != null ? () -> data : () -> CassandraIOUtils.parse(metadata);
+            graphNames = storedGraphs.get().stream();
+        } else {
+            final Dataset parsed = data != null ? data : CassandraIOUtils.parse(metadata);
+            log.debug("Found dataset = {} for resource {}", parsed, id);
+            dataset = () -> parsed;
+            graphNames = parsed.getGraphNames().filter(IRI.class::isInstance).map(IRI.class::cast);
+        }
+
+        final Set<IRI> graphs = graphNames
             .filter(isEqual(Trellis.PreferUserManaged).or(isEqual(Trellis.PreferServerManaged)).negate())
             .collect(toSet());
 
         final Metadata meta = Metadata.builder(id).container(container).interactionModel(ixnModel)
             .metadataGraphNames(graphs).binary(binary).build();
 
-        return new CassandraResource(meta, modified, dataset);
+        final CassandraResource resource = new CassandraResource(meta, modified, dataset);
+        deferredGraphs.forEach(resource::defer);
+        return resource;
     }
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.config.Config;
+import org.slf4j.Logger;
+
+/**
+ * The worker pools shared by every query and service in this extension. Reading and writing binary content, which
+ * may block on streams supplied by callers, happens on these workers rather than on the driver's I/O threads.
+ *
+ * <p>Each pool is bounded both in threads and in queued tasks. A task submitted to a saturated pool is rejected
+ * with a {@link RejectedExecutionException}, which fails the operation that submitted it rather than letting threads
+ * or memory grow without limit.
+ *
+ * <p>Uploads, which block on the caller's stream for as long as it takes to arrive, run on an {@link #uploads()}
+ * pool so that slow clients cannot starve the write workers. Long-running maintenance jobs, such as backfills and
+ * compaction, run on a {@link #jobs()} pool of their own so that they never occupy the workers that serve requests.
+ */
+public final class CassandraExecutors {
+
+    /** The configuration key for the maximum number of threads writing to Cassandra. */
+    public static final String CONFIG_CASSANDRA_WRITE_THREADS = "trellis.cassandra.write-threads";
+
+    /** The configuration key for the maximum number of tasks waiting for a write thread. */
+    public static final String CONFIG_CASSANDRA_WRITE_QUEUE = "trellis.cassandra.write-queue";
+
+    /** The configuration key for the maximum number of threads reading from Cassandra. */
+    public static final String CONFIG_CASSANDRA_READ_THREADS = "trellis.cassandra.read-threads";
+
+    /** The configuration key for the maximum number of tasks waiting for a read thread. */
+    public static final String CONFIG_CASSANDRA_READ_QUEUE = "trellis.cassandra.read-queue";
+
+    /** The configuration key for the maximum number of binary uploads reading from their streams at once. */
+    public static final String CONFIG_CASSANDRA_UPLOAD_THREADS = "trellis.cassandra.upload-threads";
+
+    /** The configuration key for the maximum number of binary uploads waiting for a thread. */
+    public static final String CONFIG_CASSANDRA_UPLOAD_QUEUE = "trellis.cassandra.upload-queue";
+
+    /** The configuration key for the maximum number of maintenance jobs running at once. */
+    public static final String CONFIG_CASSANDRA_JOB_THREADS = "trellis.cassandra.job-threads";
+
+    /**
+     * The configuration key for running tasks on virtual threads, where the JVM supports them. The thread and queue
+     * limits then bound the number of tasks that may be running or waiting at once.
+     */
+    public static final String CONFIG_CASSANDRA_VIRTUAL_THREADS = "trellis.cassandra.virtual-threads";
+
+    /** The default maximum number of threads in each pool. */
+    public static final int DEFAULT_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    /** The default maximum number of tasks waiting in each pool. */
+    public static final int DEFAULT_QUEUE = 1024;
+
+    /** The default maximum number of maintenance jobs running at once. */
+    public static final int DEFAULT_JOB_THREADS = 2;
+
+    /** The maximum number of maintenance jobs waiting for a thread. */
+    private static final int JOB_QUEUE = 16;
+
+    private static final Logger LOGGER = getLogger(CassandraExecutors.class);
+
+    private static final Pool WRITES;
+
+    private static final Pool READS;
+
+    private static final Pool UPLOADS;
+
+    private static final Pool JOBS;
+
+    static {
+        final Config config = getConfig();
+        final boolean virtual = config.getOptionalValue(CONFIG_CASSANDRA_VIRTUAL_THREADS, Boolean.class)
+            .orElse(Boolean.FALSE);
+        WRITES = new Pool("trellis-cassandra-write",
+                config.getOptionalValue(CONFIG_CASSANDRA_WRITE_THREADS, Integer.class).orElse(DEFAULT_THREADS),
+                config.getOptionalValue(CONFIG_CASSANDRA_WRITE_QUEUE, Integer.class).orElse(DEFAULT_QUEUE), virtual);
+        READS = new Pool("trellis-cassandra-read",
+                config.getOptionalValue(CONFIG_CASSANDRA_READ_THREADS, Integer.class).orElse(DEFAULT_THREADS),
+                config.getOptionalValue(CONFIG_CASSANDRA_READ_QUEUE, Integer.class).orElse(DEFAULT_QUEUE), virtual);
+        UPLOADS = new Pool("trellis-cassandra-upload",
+                config.getOptionalValue(CONFIG_CASSANDRA_UPLOAD_THREADS, Integer.class).orElse(DEFAULT_THREADS),
+                config.getOptionalValue(CONFIG_CASSANDRA_UPLOAD_QUEUE, Integer.class).orElse(DEFAULT_QUEUE), virtual);
+        JOBS = new Pool("trellis-cassandra-job",
+                config.getOptionalValue(CONFIG_CASSANDRA_JOB_THREADS, Integer.class).orElse(DEFAULT_JOB_THREADS),
+                JOB_QUEUE, virtual);
+    }
+
+    /**
+     * @return the pool for work that writes to Cassandra
+     */
+    public static Pool writes() {
+        return WRITES;
+    }
+
+    /**
+     * @return the pool for work that reads from Cassandra
+     */
+    public static Pool reads() {
+        return READS;
+    }
+
+    /**
+     * @return the pool for reading uploaded binaries from their streams, which may block on slow clients
+     */
+    public static Pool uploads() {
+        return UPLOADS;
+    }
+
+    /**
+     * @return the pool for long-running maintenance jobs, which may block for as long as they run
+     */
+    public static Pool jobs() {
+        return JOBS;
+    }
+
+    /**
+     * A bounded pool of workers.
+     */
+    public static final class Pool implements Executor {
+
+        private final String name;
+        private final ThreadPoolExecutor threads;
+        private final Executor virtualThreads;
+        private final Semaphore virtualPermits;
+        private final int capacity;
+        private final LongAdder rejected = new LongAdder();
+
+        Pool(final String name, final int maxThreads, final int maxQueued, final boolean virtual) {
+            if (maxThreads < 1) throw new IllegalArgumentException(name + " thread count < 1!");
+            if (maxQueued < 1) throw new IllegalArgumentException(name + " queue length < 1!");
+            this.name = name;
+            this.capacity = maxThreads + maxQueued;
+            final Executor virtualExecutor = virtual ? newVirtualThreadExecutor(name) : null;
+            if (virtualExecutor != null) {
+                this.virtualThreads = virtualExecutor;
+                this.virtualPermits = new Semaphore(capacity);
+                this.threads = null;
+            } else {
+                this.virtualThreads = null;
+                this.virtualPermits = null;
+                this.threads = new ThreadPoolExecutor(maxThreads, maxThreads, 60, SECONDS,
+                        new ArrayBlockingQueue<>(maxQueued), daemonThreads(name), (task, pool) -> reject());
+                threads.allowCoreThreadTimeOut(true);
+            }
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            if (threads != null) {
+                threads.execute(task);
+                return;
+            }
+            if (!virtualPermits.tryAcquire()) reject();
+            try {
+                virtualThreads.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        virtualPermits.release();
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                virtualPermits.release();
+                throw e;
+            }
+        }
+
+        private void reject() {
+            rejected.increment();
+            throw new RejectedExecutionException(name + " is saturated!");
+        }
+
+        /**
+         * @return whether this pool runs tasks on virtual threads
+         */
+        public boolean isVirtual() {
+            return threads == null;
+        }
+
+        /**
+         * @return the approximate number of tasks running, or running and waiting when virtual
+         */
+        public int getActiveCount() {
+            return threads != null ? threads.getActiveCount() : capacity - virtualPermits.availablePermits();
+        }
+
+        /**
+         * @return the number of tasks waiting for a thread, always zero when virtual
+         */
+        public int getQueueSize() {
+            return threads != null ? threads.getQueue().size() : 0;
+        }
+
+        /**
+         * @return the number of tasks that may be running or waiting at once
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return the number of tasks rejected because this pool was saturated
+         */
+        public long getRejectedCount() {
+            return rejected.sum();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Executor newVirtualThreadExecutor(final String name) {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            LOGGER.warn("Virtual threads are not available in this JVM; {} will use platform threads", name);
+            return null;
+        }
+    }
+
+    private CassandraExecutors() {
+        // not instantiable
+    }
+}
@@ -16,24 +16,49 @@
 package org.trellisldp.ext.cassandra;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.jena.riot.Lang.NQUADS;
+import static org.apache.jena.riot.Lang.RDFTHRIFT;
+import static org.apache.jena.riot.RDFFormat.RDF_THRIFT;
+import static org.trellisldp.api.TrellisUtils.TRELLIS_DATA_PREFIX;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+
+import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
 import org.apache.commons.rdf.api.RDF;
 import org.apache.jena.commonsrdf.JenaCommonsRDF;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.trellisldp.api.RDFFactory;
 import org.trellisldp.vocabulary.Trellis;
 
 
 public final class CassandraIOUtils {
 
+    /**
+     * The configuration key for recording the names of the graphs in a resource in their own column, so that a
+     * resource's metadata can be read without parsing its RDF.
+     */
+    public static final String CONFIG_CASSANDRA_GRAPH_NAMES = "trellis.cassandra.graph-names";
+
+    /** The name of the column holding the names of the graphs stored for a resource. */
+    public static final String GRAPH_NAMES = "graphnames";
+
     private static final RDF rdf = RDFFactory.getInstance();
 
     /**
@@ -60,17 +85,100 @@ public final class CassandraIOUtils {
         return fromNQuads(data);
     }
 
+    /**
+     * Serialize a dataset into binary RDF.
+     * @param dataset the dataset
+     * @return the RDF Thrift bytes
+     */
+    public static ByteBuffer serializeBinary(final Dataset dataset) {
+        if (dataset == null || dataset.size() == 0) {
+            return null;
+        }
+        return toThrift(dataset);
+    }
+
+    /**
+     * Parse binary RDF into a dataset.
+     * @param data the RDF Thrift bytes
+     * @return the dataset
+     */
+    public static Dataset parse(final ByteBuffer data) {
+        if (data == null) {
+            return rdf.createDataset();
+        }
+        return fromThrift(data);
+    }
+
+    /**
+     * Parse the RDF stored in a row, in whichever {@link QuadsFormat} it was written.
+     * @param row the row
+     * @return the dataset
+     */
+    public static Dataset parse(final Row row) {
+        if (row.getColumnDefinitions().contains(QUADS_BINARY) && !row.isNull(QUADS_BINARY)) {
+            return parse(row.getByteBuffer(QUADS_BINARY));
+        }
+        return parse(row.getString(QUADS));
+    }
+
+    /**
+     * @param dataset the dataset, may be {@code null}
+     * @return the names of the graphs in the dataset that are stored with it
+     */
+    public static Set<String> graphNames(final Dataset dataset) {
+        if (dataset == null) {
+            return Set.of();
+        }
+        return storedQuads(dataset).map(Quad::getGraphName).flatMap(Optional::stream)
+            .filter(IRI.class::isInstance).map(IRI.class::cast).map(IRI::getIRIString).collect(toSet());
+    }
+
+    /**
+     * Read the graph names recorded in a row. Cassandra does not distinguish an empty set from a missing one, so
+     * nothing is returned for a resource that has no graphs as well as for a row written before graph names were
+     * recorded; in either case the RDF of the resource must be parsed to find its graphs.
+     *
+     * @param row the row
+     * @return the names of the graphs stored in the row, if they were recorded
+     */
+    public static Optional<Set<IRI>> graphNames(final Row row) {
+        if (!row.getColumnDefinitions().contains(GRAPH_NAMES) || row.isNull(GRAPH_NAMES)) {
+            return Optional.empty();
+        }
+        return Optional.of(row.getSet(GRAPH_NAMES, String.class).stream().map(rdf::createIRI).collect(toSet()));
+    }
+
     static String toNQuads(final Dataset dataset) {
         try (final ByteArrayOutputStream bytes = new ByteArrayOutputStream()) {
-            RDFDataMgr.writeQuads(bytes, dataset.stream().filter(quad ->
-                        !quad.getGraphName().filter(Trellis.PreferServerManaged::equals).isPresent())
-                    .map(JenaCommonsRDF::toJena).iterator());
+            RDFDataMgr.writeQuads(bytes, storedQuads(dataset).map(JenaCommonsRDF::toJena).iterator());
             return bytes.toString(UTF_8);
         } catch (final IOException e) {
             throw new UncheckedIOException("Dataset could not be serialized!", e);
         }
     }
 
+    static ByteBuffer toThrift(final Dataset dataset) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final StreamRDF writer = StreamRDFWriter.getWriterStream(bytes, RDF_THRIFT);
+        writer.start();
+        // IRIs under the data prefix are written as prefixed names, which keeps repeated identifiers short
+        writer.prefix("", TRELLIS_DATA_PREFIX);
+        storedQuads(dataset).map(JenaCommonsRDF::toJena).forEach(writer::quad);
+        writer.finish();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    static Dataset fromThrift(final ByteBuffer data) {
+        final org.apache.jena.query.Dataset dataset = DatasetFactory.create();
+        RDFParser.source(new ByteBufferInputStream(data.duplicate())).lang(RDFTHRIFT).parse(dataset);
+        return JenaCommonsRDF.fromJena(dataset.asDatasetGraph());
+    }
+
+    static Stream<? extends Quad> storedQuads(final Dataset dataset) {
+        return dataset.stream().filter(quad ->
+                !quad.getGraphName().filter(Trellis.PreferServerManaged::equals).isPresent());
+    }
+
     static Dataset fromNQuads(final String data) {
         final org.apache.jena.query.Dataset dataset = DatasetFactory.create();
         RDFParser.fromString(data).lang(NQUADS).parse(dataset);
@@ -17,16 +17,21 @@ package org.trellisldp.ext.cassandra;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static java.util.Collections.emptySortedSet;
+import static java.util.Collections.emptyMap;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toCollection;
 import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.trellisldp.api.Resource.SpecialResources.MISSING_RESOURCE;
 
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
 import com.datastax.oss.driver.api.core.uuid.Uuids;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -41,8 +46,10 @@ import org.slf4j.Logger;
 import org.trellisldp.api.MementoService;
 import org.trellisldp.api.Metadata;
 import org.trellisldp.api.Resource;
+import org.trellisldp.api.TrellisRuntimeException;
 import org.trellisldp.ext.cassandra.query.rdf.GetFirstMemento;
 import org.trellisldp.ext.cassandra.query.rdf.GetMemento;
+import org.trellisldp.ext.cassandra.query.rdf.MementoChain;
 import org.trellisldp.ext.cassandra.query.rdf.Mementoize;
 import org.trellisldp.ext.cassandra.query.rdf.Mementos;
 
@@ -55,6 +62,12 @@ public class CassandraMementoService implements MementoService, CassandraBuildin
     /** The configuration key for enabling/disabling memento handling. */
     public static final String CONFIG_CASSANDRA_VERSIONING = "trellis.cassandra.versioning";
 
+    /**
+     * The configuration key for keeping only the last of the Mementos of a resource written within the same second,
+     * the granularity at which Mementos are addressed. Default: {@code false}.
+     */
+    public static final String CONFIG_CASSANDRA_MEMENTO_COALESCE = "trellis.cassandra.memento-coalesce";
+
     private static final Logger LOGGER = getLogger(CassandraMementoService.class);
 
     private final Mementos mementos;
@@ -65,21 +78,45 @@ public class CassandraMementoService implements MementoService, CassandraBuildin
 
     private final GetFirstMemento getFirstMemento;
 
+    private final MementoChain mementoChain;
+
     private final boolean enabled;
 
+    private final int snapshotInterval;
+
+    private final boolean contentHash;
+
+    private final boolean coalesce;
+
     CassandraMementoService() {
-        this(null, null, null, null);
+        this(null, null, null, null, null);
     }
 
     @Inject
     CassandraMementoService(final Mementos mementos, final Mementoize mementoize, final GetMemento getMemento,
-                    final GetFirstMemento getFirstMemento) {
+                    final GetFirstMemento getFirstMemento, final MementoChain mementoChain) {
+        this(mementos, mementoize, getMemento, getFirstMemento, mementoChain,
+                        getConfig().getOptionalValue(CONFIG_CASSANDRA_VERSIONING, Boolean.class).orElse(Boolean.TRUE),
+                        Mementoize.snapshotIntervalConfigured(), Mementoize.contentHashConfigured(),
+                        getConfig().getOptionalValue(CONFIG_CASSANDRA_MEMENTO_COALESCE, Boolean.class)
+                            .orElse(Boolean.FALSE));
+    }
+
+    CassandraMementoService(final Mementos mementos, final Mementoize mementoize, final GetMemento getMemento,
+                    final GetFirstMemento getFirstMemento, final MementoChain mementoChain, final boolean enabled,
+                    final int snapshotInterval, final boolean contentHash, final boolean coalesce) {
         this.mementos = mementos;
         this.mementoize = mementoize;
         this.getMemento = getMemento;
         this.getFirstMemento = getFirstMemento;
-        this.enabled = getConfig().getOptionalValue(CONFIG_CASSANDRA_VERSIONING, Boolean.class)
-            .orElse(Boolean.TRUE);
+        this.mementoChain = mementoChain;
+        this.enabled = enabled;
+        this.snapshotInterval = snapshotInterval;
+        this.contentHash = contentHash;
+        this.coalesce = coalesce;
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException(Mementoize.CONFIG_CASSANDRA_MEMENTO_SNAPSHOT_INTERVAL + " < 1!");
+        }
     }
 
     @Override
@@ -89,10 +126,40 @@ public class CassandraMementoService implements MementoService, CassandraBuildin
             final Metadata metadata = Metadata.builder(r).build();
             final Dataset data = r.dataset();
             final Instant modified = r.getModified();
-            final UUID creation = Uuids.timeBased();
+            // when coalescing, every write within a second has the same key, so the last one replaces the others
+            final UUID creation = coalesce ? Uuids.startOf(modified.truncatedTo(SECONDS).toEpochMilli())
+                : Uuids.timeBased();
 
+            final ByteBuffer hash = contentHash ? MementoHash.of(metadata, data) : null;
             LOGGER.debug("Writing Memento for {} at time: {}", metadata.getIdentifier(), modified);
-            return mementoize.execute(metadata, modified, data, creation);
+            if (snapshotInterval == 1 && !contentHash) return mementoize.execute(metadata, modified, data, creation);
+            // the latest Mementos back to the last snapshot, which is never more than the interval away
+            return mementoChain.execute(metadata.getIdentifier(), coalesce ? snapshotInterval + 1 : snapshotInterval)
+                            .thenApply(AsyncResultSetUtils::stream)
+                            .thenApply(rows -> rows.collect(toList()))
+                            .thenCompose(latest -> {
+                                if (hash != null && !latest.isEmpty() && hash.equals(MementoHash.of(latest.get(0)))) {
+                                    LOGGER.debug("Memento for {} is unchanged, not writing it",
+                                                    metadata.getIdentifier());
+                                    return completedFuture(null);
+                                }
+                                // a delta is based on a Memento created before it, never on the one it replaces or
+                                // on one written concurrently after it, and records which one that is
+                                final List<Row> chain = snapshotInterval > 1
+                                    ? MementoDelta.chain(latest.stream()
+                                                    .filter(row -> row.getUuid("created").timestamp()
+                                                                    < creation.timestamp())
+                                                    .collect(toList()))
+                                    : null;
+                                final int depth = chain != null ? MementoDelta.depth(chain.get(0)) + 1 : 0;
+                                if (depth == 0 || depth >= snapshotInterval) {
+                                    return mementoize.execute(metadata, modified, data, creation, hash);
+                                }
+                                final Dataset previous = MementoDelta.rebuild(chain);
+                                return mementoize.execute(metadata, modified, data, creation,
+                                                chain.get(0).getUuid("created"), MementoDelta.added(previous, data),
+                                                MementoDelta.removed(previous, data), depth, hash);
+                            });
         }
         return completedFuture(null);
     }
@@ -117,12 +184,25 @@ public class CassandraMementoService implements MementoService, CassandraBuildin
         if (enabled) {
             LOGGER.debug("Retrieving Memento for: {} at {}", id, time);
             return getMemento.execute(id, time)
-                            .thenCompose(result -> result.remaining() > 0
+                            .thenCompose(result -> result.remaining() == 0
                                             ? getFirstMemento.execute(id)
                                             : completedFuture(result))
                             .thenApply(AsyncResultSet::one)
-                            .thenApply(row -> parse(row, LOGGER, id));
+                            .thenCompose(row -> MementoDelta.depth(row) == 0
+                                            ? completedFuture(parse(row, LOGGER, id))
+                                            : rebuild(id, row).thenApply(data -> parse(row, LOGGER, id,
+                                                            emptyMap(), data)));
         }
         return completedFuture(MISSING_RESOURCE);
     }
+
+    private CompletionStage<Dataset> rebuild(final IRI id, final Row memento) {
+        return mementoChain.chain(id, memento)
+                        .thenApply(chain -> {
+                            if (chain == null) {
+                                throw new TrellisRuntimeException("Missing snapshot for Memento of " + id);
+                            }
+                            return MementoDelta.rebuild(chain);
+                        });
+    }
 }
@@ -23,10 +23,13 @@ import javax.inject.Inject;
 
 import org.eclipse.microprofile.health.HealthCheck;
 import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
 import org.eclipse.microprofile.health.Readiness;
 
 /**
  * Check the health of the cassandra connection.
+ *
+ * <p>When a {@link CassandraResourceCache} is enabled, its statistics are reported as data on the response.
  */
 @Readiness
 @ApplicationScoped
@@ -34,6 +37,8 @@ public class CassandraReadinessCheck implements HealthCheck {
 
     private final CqlSession session;
 
+    private final CassandraResourceCache cache;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -41,16 +46,26 @@ public class CassandraReadinessCheck implements HealthCheck {
      *          It should not be invoked directly in user code.
      */
     public CassandraReadinessCheck() {
-        this(null);
+        this(null, null);
     }
 
     /**
      * Create a cassandra connection health checker.
      * @param session the cassandra session
      */
-    @Inject
     public CassandraReadinessCheck(final CqlSession session) {
+        this(session, null);
+    }
+
+    /**
+     * Create a cassandra connection health checker that also reports resource cache statistics.
+     * @param session the cassandra session
+     * @param cache the resource cache, may be {@code null}
+     */
+    @Inject
+    public CassandraReadinessCheck(final CqlSession session, final CassandraResourceCache cache) {
         this.session = session;
+        this.cache = cache;
     }
 
     @Override
@@ -58,9 +73,17 @@ public class CassandraReadinessCheck implements HealthCheck {
         if (session != null) {
             final ResultSet res = session.execute("SELECT identifier FROM mutabledata LIMIT 1");
 
-            return HealthCheckResponse.named(CassandraReadinessCheck.class.getSimpleName())
-                .status(res.one() != null).build();
+            return withCacheStats(HealthCheckResponse.named(CassandraReadinessCheck.class.getSimpleName())
+                .status(res.one() != null)).build();
         }
         return HealthCheckResponse.named(CassandraReadinessCheck.class.getSimpleName()).down().build();
     }
+
+    private HealthCheckResponseBuilder withCacheStats(final HealthCheckResponseBuilder builder) {
+        if (cache == null || !cache.isEnabled()) return builder;
+        return builder.withData("resourceCacheHits", cache.getHitCount())
+            .withData("resourceCacheMisses", cache.getMissCount())
+            .withData("resourceCacheEvictions", cache.getEvictionCount())
+            .withData("resourceCacheSize", cache.getSize());
+    }
 }
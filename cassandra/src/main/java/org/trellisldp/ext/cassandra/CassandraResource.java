@@ -15,18 +15,30 @@
  */
 package org.trellisldp.ext.cassandra;
 
+import static com.google.common.base.Suppliers.memoize;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
 import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
 import static org.trellisldp.vocabulary.RDF.type;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
 import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
 import org.trellisldp.api.BinaryMetadata;
 import org.trellisldp.api.Metadata;
 import org.trellisldp.api.RDFFactory;
@@ -41,15 +53,43 @@ class CassandraResource implements Resource {
     private static final RDF rdf = RDFFactory.getInstance();
 
     private final Metadata metadata;
-    private final Dataset dataset;
+    private final Supplier<Dataset> dataset;
+    private final Supplier<Dataset> merged = memoize(this::merge);
     private final Instant modified;
 
+    /**
+     * Graphs that are only retrieved when a caller asks for them, keyed by graph name.
+     */
+    private final Map<IRI, Supplier<? extends CompletionStage<Stream<Quad>>>> deferredGraphs = new LinkedHashMap<>();
+
     public CassandraResource(final Metadata metadata, final Instant modified, final Dataset dataset) {
+        this(metadata, modified, () -> dataset);
+    }
+
+    /**
+     * @param metadata the metadata of the resource
+     * @param modified the time at which the resource was last modified
+     * @param dataset a source of the RDF of the resource, invoked at most once and only when the RDF is requested
+     */
+    CassandraResource(final Metadata metadata, final Instant modified, final Supplier<Dataset> dataset) {
         this.metadata = metadata;
-        this.dataset = dataset;
+        this.dataset = memoize(dataset::get);
         this.modified = modified;
     }
 
+    /**
+     * Register a graph that should be retrieved only when it is requested, either explicitly through
+     * {@link #stream(Collection)} or implicitly through {@link #stream()} or {@link #dataset()}.
+     *
+     * @param graphName the name of the graph
+     * @param quads a source of the quads in that graph, invoked once per request for the graph; the stage it returns is
+     *        only awaited when a terminal operation begins on the stream of quads, since {@link Resource} is
+     *        synchronous
+     */
+    void defer(final IRI graphName, final Supplier<? extends CompletionStage<Stream<Quad>>> quads) {
+        deferredGraphs.put(graphName, quads);
+    }
+
     @Override
     public IRI getIdentifier() {
         return metadata.getIdentifier();
@@ -82,13 +122,61 @@ class CassandraResource implements Resource {
 
     @Override
     public Dataset dataset() {
-        return dataset;
+        return merged.get();
+    }
+
+    /**
+     * @return the stored RDF with every deferred graph, in a new dataset: a resource may be shared between requests,
+     *         so the stored RDF, which {@link #stream()} reads, is never changed
+     */
+    private Dataset merge() {
+        if (deferredGraphs.isEmpty()) return dataset.get();
+        final Dataset all = rdf.createDataset();
+        dataset.get().stream().forEach(all::add);
+        deferredQuads(graphName -> true).forEach(all::add);
+        return all;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Stream<Quad> stream() {
-        return Stream.concat(getServerManagedQuads(), (Stream<Quad>) dataset.stream());
+        return quads(graphName -> true);
+    }
+
+    @Override
+    public Stream<Triple> stream(final Collection<IRI> graphNames) {
+        return quads(graphNames::contains).filter(quad -> quad.getGraphName().filter(graphNames::contains).isPresent())
+            .map(Quad::asTriple);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<Quad> quads(final Predicate<IRI> graphNames) {
+        return Stream.concat(Stream.concat(getServerManagedQuads(),
+                    lazily(() -> (Stream<Quad>) dataset.get().stream())), deferredQuads(graphNames));
+    }
+
+    private Stream<Quad> deferredQuads(final Predicate<IRI> graphNames) {
+        // concatenate rather than flatMap: flatMap buffers each inner stream when consumed through an iterator,
+        // which would defeat the paging of large deferred graphs
+        return deferredGraphs.entrySet().stream().filter(graph -> graphNames.test(graph.getKey()))
+            .map(graph -> lazily(() -> await(graph.getValue().get()))).reduce(Stream::concat)
+            .orElseGet(Stream::empty);
+    }
+
+    private static Stream<Quad> await(final CompletionStage<Stream<Quad>> quads) {
+        try {
+            return quads.toCompletableFuture().join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * @param quads a source of quads
+     * @return a stream that does not invoke {@code quads} until a terminal operation begins
+     */
+    private static Stream<Quad> lazily(final Supplier<Stream<Quad>> quads) {
+        return StreamSupport.stream(() -> quads.get().spliterator(), ORDERED | NONNULL, false);
     }
 
     private Stream<Quad> getServerManagedQuads() {
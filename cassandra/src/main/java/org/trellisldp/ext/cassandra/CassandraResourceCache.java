@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import com.google.common.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.apache.commons.rdf.api.IRI;
+import org.trellisldp.api.Resource;
+
+/**
+ * A bounded, in-process cache of resources read by {@link CassandraResourceService}.
+ *
+ * <p>The cache is disabled unless {@value #CONFIG_CASSANDRA_RESOURCE_CACHE_SIZE} is set. Writes made through this
+ * process invalidate the affected entries; writes made by other processes are only seen once an entry expires, after
+ * {@value #CONFIG_CASSANDRA_RESOURCE_CACHE_EXPIRE_SECONDS} seconds.
+ */
+@ApplicationScoped
+public class CassandraResourceCache {
+
+    /** The configuration key for the maximum number of cached resources. Zero, the default, disables the cache. */
+    public static final String CONFIG_CASSANDRA_RESOURCE_CACHE_SIZE = "trellis.cassandra.resource-cache-size";
+
+    /** The configuration key for the number of seconds for which a resource is cached. */
+    public static final String CONFIG_CASSANDRA_RESOURCE_CACHE_EXPIRE_SECONDS =
+        "trellis.cassandra.resource-cache-expire-seconds";
+
+    private final Cache<IRI, Resource> cache;
+
+    private final boolean enabled;
+
+    /** The number of generation counters over which identifiers are spread. */
+    private static final int GENERATIONS = 1024;
+
+    /**
+     * Per-identifier generations, bumped on invalidation so that a read that overlapped a write to the same
+     * resource does not cache what it read. Identifiers share a counter only if they hash to the same slot.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+
+    /**
+     * Create a cache configured by {@value #CONFIG_CASSANDRA_RESOURCE_CACHE_SIZE} and
+     * {@value #CONFIG_CASSANDRA_RESOURCE_CACHE_EXPIRE_SECONDS}.
+     */
+    public CassandraResourceCache() {
+        this(getConfig().getOptionalValue(CONFIG_CASSANDRA_RESOURCE_CACHE_SIZE, Long.class).orElse(0L),
+                getConfig().getOptionalValue(CONFIG_CASSANDRA_RESOURCE_CACHE_EXPIRE_SECONDS, Long.class).orElse(10L));
+    }
+
+    /**
+     * @param size the maximum number of cached resources, or zero to disable the cache
+     * @param expireSeconds the number of seconds for which a resource is cached
+     */
+    public CassandraResourceCache(final long size, final long expireSeconds) {
+        this.enabled = size > 0;
+        this.cache = newBuilder().maximumSize(size).expireAfterWrite(expireSeconds, SECONDS).recordStats().build();
+    }
+
+    /**
+     * @return whether resources are cached at all
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param id the identifier of a resource
+     * @return the cached resource, or {@code null}
+     */
+    Resource get(final IRI id) {
+        return enabled ? cache.getIfPresent(id) : null;
+    }
+
+    /**
+     * @param id the identifier of the resource about to be read
+     * @return a token to pass to {@link #put} once the read that begins now has completed
+     */
+    long generation(final IRI id) {
+        return generations.get(slot(id));
+    }
+
+    /**
+     * Cache a resource, unless it was invalidated after its read began.
+     *
+     * @param id the identifier of the resource
+     * @param resource the resource
+     * @param readGeneration the value of {@link #generation(IRI)} when the read began
+     */
+    void put(final IRI id, final Resource resource, final long readGeneration) {
+        if (!enabled) return;
+        final int slot = slot(id);
+        if (generations.get(slot) != readGeneration) return;
+        cache.put(id, resource);
+        // an invalidation may have slipped in between the check and the put
+        if (generations.get(slot) != readGeneration) cache.invalidate(id);
+    }
+
+    /**
+     * @param id the identifier of a resource that has been written
+     */
+    void invalidate(final IRI id) {
+        generations.incrementAndGet(slot(id));
+        cache.invalidate(id);
+    }
+
+    private static int slot(final IRI id) {
+        return Math.floorMod(id.hashCode(), GENERATIONS);
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of lookups that had to go to Cassandra
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return the number of resources evicted because the cache was full or they had expired
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return the approximate number of cached resources
+     */
+    public long getSize() {
+        return cache.size();
+    }
+}
@@ -15,8 +15,13 @@
  */
 package org.trellisldp.ext.cassandra;
 
+import static com.google.common.cache.CacheBuilder.newBuilder;
 import static java.time.Instant.now;
+import static java.util.Collections.singletonMap;
 import static java.util.UUID.randomUUID;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.trellisldp.api.Metadata.builder;
 import static org.trellisldp.api.Resource.SpecialResources.MISSING_RESOURCE;
@@ -30,10 +35,12 @@ import static org.trellisldp.vocabulary.RDF.type;
 
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.google.common.cache.Cache;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletionStage;
 import java.util.stream.Stream;
@@ -79,6 +86,25 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
         SUPPORTED_INTERACTION_MODELS = Collections.unmodifiableSet(ixnModels);
     }
 
+    /**
+     * The configuration key for streaming containment. When enabled, the {@code ldp:contains} triples of a container
+     * are paged lazily from Cassandra as the resource is streamed, instead of being read in full when the resource is
+     * retrieved. Calling {@link Resource#dataset()} on such a container still materializes its containment.
+     */
+    public static final String CONFIG_CASSANDRA_CONTAINMENT_STREAMING = "trellis.cassandra.containment-streaming";
+
+    /**
+     * The configuration key for prefetching containment. When enabled, the containment of a resource is queried at
+     * the same time as the resource itself, unless the resource is already known not to be a container.
+     */
+    public static final String CONFIG_CASSANDRA_CONTAINMENT_PREFETCH = "trellis.cassandra.containment-prefetch";
+
+    /**
+     * The configuration key for the number of resources whose container-ness is remembered, so that containment is
+     * not prefetched for resources that are known not to be containers. Zero disables these hints.
+     */
+    public static final String CONFIG_CASSANDRA_CONTAINER_HINTS_SIZE = "trellis.cassandra.container-hints-size";
+
     static final Logger log = getLogger(CassandraResourceService.class);
 
     private final Delete delete;
@@ -95,14 +121,28 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
 
     private final ImmutableRetrieve immutableRetrieve;
 
+    private final boolean streamContainment;
+
+    private final boolean prefetchContainment;
+
+    /**
+     * Whether recently seen resources are containers. These hints are only used to decide whether to prefetch
+     * containment, so a stale hint costs an extra query but never changes a response.
+     */
+    private final Cache<IRI, Boolean> containerHints;
+
+    private final CassandraResourceCache cache;
+
+    private final SingleFlight<IRI, Resource> lookups = new SingleFlight<>();
+
     CassandraResourceService() {
-        this(null, null, null, null, null, null, null);
+        this(null, null, null, null, null, null, null, null);
     }
 
     @Inject
     CassandraResourceService(final Delete delete, final Get get, final ImmutableInsert immutableInsert,
             final MutableInsert mutableInsert, final Touch touch, final ImmutableRetrieve immutableRetrieve,
-            final BasicContainment bcontainment) {
+            final BasicContainment bcontainment, final CassandraResourceCache cache) {
         this.delete = delete;
         this.get = get;
         this.immutableInsert = immutableInsert;
@@ -110,6 +150,13 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
         this.touch = touch;
         this.immutableRetrieve = immutableRetrieve;
         this.bcontainment = bcontainment;
+        this.cache = cache;
+        this.streamContainment = getConfig().getOptionalValue(CONFIG_CASSANDRA_CONTAINMENT_STREAMING, Boolean.class)
+            .orElse(Boolean.FALSE);
+        this.prefetchContainment = getConfig().getOptionalValue(CONFIG_CASSANDRA_CONTAINMENT_PREFETCH, Boolean.class)
+            .orElse(Boolean.TRUE);
+        this.containerHints = newBuilder().maximumSize(getConfig()
+                .getOptionalValue(CONFIG_CASSANDRA_CONTAINER_HINTS_SIZE, Long.class).orElse(10_000L)).build();
     }
 
     /**
@@ -132,32 +179,87 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Immutable data, which holds a resource's audit trail, is not retrieved here. It is fetched only if a caller
+     * of the returned resource asks for the {@link Trellis#PreferAudit} graph, so an ordinary read costs one
+     * partition lookup however much history the resource has accumulated.
+     *
+     * <p>Unless containment is streamed, it is queried alongside the resource rather than after it, and the result
+     * is discarded if the resource turns out not to be a container.
+     *
+     * <p>Resources that are found may be kept in a {@link CassandraResourceCache}.
+     */
     @Override
     public CompletionStage<? extends Resource> get(final IRI id) {
         log.debug("Retrieving {}", id);
-        log.debug("Retrieving immutable data for {}", id);
-        final CompletionStage<Stream<Quad>> immutableData = immutableRetrieve.execute(id);
-        // get resource and add immutable tuples
+        final Resource cached = cache.get(id);
+        if (cached != null) {
+            log.debug("Found {} in cache", id);
+            return completedFuture(cached);
+        }
+        // concurrent requests for the same resource share one lookup
+        return lookups.get(id, this::loadAndCache);
+    }
+
+    private CompletionStage<Resource> loadAndCache(final IRI id) {
+        final long generation = cache.generation(id);
+        return load(id).thenApply(res -> {
+            if (res instanceof CassandraResource) cache.put(id, res, generation);
+            return res;
+        });
+    }
+
+    private CompletionStage<Resource> load(final IRI id) {
         log.debug("Retrieving mutable data for {}", id);
         final CompletionStage<Resource> resource = get.execute(id)
                         .thenApply(AsyncResultSet::one)
-                        .thenApply(row -> parse(row, log, id))
-                        .thenCombine(immutableData, this::addTuples);
+                        .thenApply(row -> parse(row, log, id, singletonMap(Trellis.PreferAudit,
+                                        () -> immutableData(id))));
+        final CompletionStage<Stream<Quad>> prefetched = prefetchContainment(id);
         // add containment tuples if needed
         return resource.thenCompose(res -> {
+            // missing resources are remembered too, since creating a resource always begins by looking it up
+            containerHints.put(id, isContainer(res));
             if (!isContainer(res)) return resource;
+            if (streamContainment) {
+                ((CassandraResource) res).defer(LDP.PreferContainment, () -> {
+                    log.debug("Streaming containment data for {}", id);
+                    return bcontainment.streamAsync(id);
+                });
+                return resource;
+            }
             log.debug("Retrieving containment data for {}", id);
-            return resource.thenCombine(bcontainment.execute(id), this::addTuples);
+            return resource.thenCombine(prefetched != null ? prefetched : bcontainment.execute(id),
+                    this::addContainment);
         });
     }
 
-    private Resource addTuples(final Resource resource, final Stream<Quad> additionalTuples) {
-        additionalTuples.forEach(resource.dataset()::add);
+    private CompletionStage<Stream<Quad>> prefetchContainment(final IRI id) {
+        if (streamContainment || !prefetchContainment || Boolean.FALSE.equals(containerHints.getIfPresent(id))) {
+            return null;
+        }
+        log.debug("Prefetching containment data for {}", id);
+        return bcontainment.execute(id);
+    }
+
+    private CompletionStage<Stream<Quad>> immutableData(final IRI id) {
+        log.debug("Retrieving immutable data for {}", id);
+        return immutableRetrieve.execute(id);
+    }
+
+    private Resource addContainment(final Resource resource, final Stream<Quad> containment) {
+        final List<Quad> quads = containment.collect(toList());
+        ((CassandraResource) resource).defer(LDP.PreferContainment, () -> completedFuture(quads.stream()));
         return resource;
     }
 
     private static boolean isContainer(final Resource res) {
-        final IRI interactionModel = res.getInteractionModel();
+        return isContainer(res.getInteractionModel());
+    }
+
+    private static boolean isContainer(final IRI interactionModel) {
         final IRI superclass = getSuperclassOf(interactionModel);
         return Container.equals(interactionModel) || Container.equals(superclass);
     }
@@ -170,7 +272,7 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
     @Override
     public CompletionStage<Void> add(final IRI id, final Dataset dataset) {
         log.debug("Adding immutable data to {}", id);
-        return immutableInsert.execute(id, dataset, now());
+        return immutableInsert.execute(id, dataset, now()).whenComplete((r, e) -> invalidate(id));
     }
 
     @Override
@@ -188,12 +290,14 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
     @Override
     public CompletionStage<Void> delete(final Metadata meta) {
         log.debug("Deleting {}", meta.getIdentifier());
-        return delete.execute(meta.getIdentifier());
+        containerHints.invalidate(meta.getIdentifier());
+        return delete.execute(meta.getIdentifier(), meta.getContainer().orElse(null))
+            .whenComplete((r, e) -> invalidate(meta));
     }
 
     @Override
     public CompletionStage<Void> touch(final IRI id) {
-        return touch.execute(now(), id);
+        return touch.execute(now(), id).whenComplete((r, e) -> invalidate(id));
     }
 
     @Override
@@ -202,6 +306,21 @@ class CassandraResourceService implements ResourceService, CassandraBuildingServ
     }
 
     private CompletionStage<Void> write(final Metadata meta, final Dataset data) {
-        return mutableInsert.execute(meta, now(), data, Uuids.timeBased());
+        containerHints.put(meta.getIdentifier(), isContainer(meta.getInteractionModel()));
+        return mutableInsert.execute(meta, now(), data, Uuids.timeBased()).whenComplete((r, e) -> invalidate(meta));
+    }
+
+    /**
+     * Invalidate a resource that has been written, and its container, whose containment may have changed. This
+     * happens once the write has completed, so that a read which overlapped it is neither cached nor shared.
+     */
+    private void invalidate(final Metadata meta) {
+        invalidate(meta.getIdentifier());
+        meta.getContainer().ifPresent(this::invalidate);
+    }
+
+    private void invalidate(final IRI id) {
+        lookups.forget(id);
+        cache.invalidate(id);
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of buffers for binary chunks. A chunk being written is read from its source straight into a pooled buffer,
+ * which is handed to the driver as it is and returned to the pool once the write has completed, so no per-chunk
+ * array is allocated or copied.
+ *
+ * <p>Released buffers are kept, grouped by capacity, up to {@value #CONFIG_CASSANDRA_BUFFER_POOL_SIZE} bytes in
+ * total; beyond that they are left to the garbage collector.
+ */
+public final class ChunkBufferPool {
+
+    /** The configuration key for the maximum number of bytes of idle buffers kept for reuse. */
+    public static final String CONFIG_CASSANDRA_BUFFER_POOL_SIZE = "trellis.cassandra.buffer-pool-size";
+
+    /** The configuration key for allocating buffers outside the Java heap. */
+    public static final String CONFIG_CASSANDRA_DIRECT_BUFFERS = "trellis.cassandra.direct-buffers";
+
+    /** The default maximum number of bytes of idle buffers kept for reuse. */
+    public static final long DEFAULT_POOL_SIZE = 16L * 1024 * 1024;
+
+    private static final ChunkBufferPool SHARED = new ChunkBufferPool(
+            getConfig().getOptionalValue(CONFIG_CASSANDRA_BUFFER_POOL_SIZE, Long.class).orElse(DEFAULT_POOL_SIZE),
+            getConfig().getOptionalValue(CONFIG_CASSANDRA_DIRECT_BUFFERS, Boolean.class).orElse(Boolean.TRUE));
+
+    private final Map<Integer, Queue<ByteBuffer>> idle = new ConcurrentHashMap<>();
+
+    private final long maxIdleBytes;
+
+    private final boolean direct;
+
+    private final AtomicLong idleBytes = new AtomicLong();
+
+    private final LongAdder allocations = new LongAdder();
+
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private final LongAdder reuses = new LongAdder();
+
+    /**
+     * @param maxIdleBytes the maximum number of bytes of idle buffers kept for reuse
+     * @param direct whether to allocate buffers outside the Java heap
+     */
+    public ChunkBufferPool(final long maxIdleBytes, final boolean direct) {
+        if (maxIdleBytes < 0) throw new IllegalArgumentException("Buffer pool size < 0!");
+        this.maxIdleBytes = maxIdleBytes;
+        this.direct = direct;
+    }
+
+    /**
+     * @return the pool shared by every binary service, configured by {@value #CONFIG_CASSANDRA_BUFFER_POOL_SIZE} and
+     *         {@value #CONFIG_CASSANDRA_DIRECT_BUFFERS}
+     */
+    public static ChunkBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param capacity the capacity of buffer needed
+     * @return an empty buffer of exactly that capacity, which should be given back with {@link #release}
+     */
+    public ByteBuffer acquire(final int capacity) {
+        final Queue<ByteBuffer> buffers = idle.get(capacity);
+        final ByteBuffer reused = buffers == null ? null : buffers.poll();
+        if (reused != null) {
+            idleBytes.addAndGet(-capacity);
+            reuses.increment();
+            reused.clear();
+            return reused;
+        }
+        allocations.increment();
+        allocatedBytes.add(capacity);
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * @param buffer a buffer from {@link #acquire} that is no longer in use
+     */
+    public void release(final ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (idleBytes.addAndGet(capacity) > maxIdleBytes) {
+            idleBytes.addAndGet(-capacity);
+            return;
+        }
+        idle.computeIfAbsent(capacity, k -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    }
+
+    /**
+     * Fill a buffer from a stream, stopping when the buffer is full or the stream is exhausted. A heap buffer is read
+     * into directly; a direct buffer is read through a channel made for this call, so a caller filling many direct
+     * buffers from one stream should keep a channel of its own and use {@link #fill(ReadableByteChannel, ByteBuffer)}.
+     *
+     * @param source the stream, which is not closed
+     * @param buffer the buffer, which is flipped, ready to be read, on return
+     * @return {@code buffer}
+     * @throws IOException if {@code source} cannot be read
+     */
+    @SuppressWarnings("resource")
+    public static ByteBuffer fill(final InputStream source, final ByteBuffer buffer) throws IOException {
+        // closing this channel would close the source
+        if (!buffer.hasArray()) return fill(Channels.newChannel(source), buffer);
+        final byte[] array = buffer.array();
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = source.read(array, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read > 0) buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Fill a buffer from a channel, stopping when the buffer is full or the channel is exhausted.
+     *
+     * @param source the channel, which is not closed
+     * @param buffer the buffer, which is flipped, ready to be read, on return
+     * @return {@code buffer}
+     * @throws IOException if {@code source} cannot be read
+     */
+    public static ByteBuffer fill(final ReadableByteChannel source, final ByteBuffer buffer) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) read = source.read(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return whether buffers are allocated outside the Java heap
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return the number of buffers allocated because none was available for reuse
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return the total capacity of buffers allocated because none was available for reuse
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * @return the number of buffers reused instead of allocated
+     */
+    public long getReuseCount() {
+        return reuses.sum();
+    }
+
+    /**
+     * @return the total capacity of the buffers idle in this pool
+     */
+    public long getIdleBytes() {
+        return idleBytes.get();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static com.google.common.cache.CacheBuilder.newBuilder;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import com.google.common.cache.Cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A node-local cache of binary chunks, so that binaries read over and over are not fetched from Cassandra each time.
+ * Chunks are kept outside the Java heap, as they were stored, and evicted least recently used first once they hold
+ * more than {@value #CONFIG_CASSANDRA_CHUNK_CACHE_SIZE} bytes, which therefore count against the JVM's limit on direct
+ * memory.
+ *
+ * <p>The cache is disabled unless {@value #CONFIG_CASSANDRA_CHUNK_CACHE_SIZE} is set. Writing or purging a binary
+ * through this process invalidates its chunks; binaries are not expected to be changed by other processes. Chunks are
+ * cached under the generation of their binary, so invalidating a binary only moves it to a new generation, and the
+ * chunks cached under the old one, which can no longer be found, are left to be evicted.
+ */
+public final class ChunkCache {
+
+    /** The configuration key for the maximum number of bytes of cached chunks. Zero, the default, disables it. */
+    public static final String CONFIG_CASSANDRA_CHUNK_CACHE_SIZE = "trellis.cassandra.chunk-cache-size";
+
+    private static final ChunkCache SHARED = new ChunkCache(
+            getConfig().getOptionalValue(CONFIG_CASSANDRA_CHUNK_CACHE_SIZE, Long.class).orElse(0L));
+
+    private final Cache<Key, Chunk> cache;
+
+    private final long maxBytes;
+
+    /** The number of generation counters over which binaries are spread. */
+    private static final int GENERATIONS = 1024;
+
+    /**
+     * Per-binary generations, bumped on invalidation so that a read that overlapped a write to the same binary does
+     * not cache what it read. Binaries share a counter only if they hash to the same slot.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+
+    /**
+     * @param maxBytes the maximum number of bytes of cached chunks, or zero to disable the cache
+     */
+    public ChunkCache(final long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Chunk cache size < 0!");
+        this.maxBytes = maxBytes;
+        // Guava divides the maximum weight between the segments of a cache and evicts within each, so a single
+        // segment is used to let any chunk that fits in the cache stay in it
+        this.cache = newBuilder().concurrencyLevel(1).maximumWeight(maxBytes)
+            .weigher((final Key key, final Chunk chunk) -> chunk.bytes.capacity())
+            .recordStats().build();
+    }
+
+    /**
+     * @return the cache shared by every binary query and service, configured by
+     *         {@value #CONFIG_CASSANDRA_CHUNK_CACHE_SIZE}
+     */
+    public static ChunkCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return whether chunks are cached at all
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @param id the identifier of the binary about to be read
+     * @return a token to pass to {@link #put} once the read that begins now has fetched a chunk
+     */
+    public long generation(final IRI id) {
+        return generations.get(slot(id));
+    }
+
+    /**
+     * @param id the identifier of a binary
+     * @param chunkIndex the index of one of its chunks
+     * @return the content of that chunk, or {@code null} if it is not cached
+     */
+    public InputStream get(final IRI id, final int chunkIndex) {
+        if (!isEnabled()) return null;
+        final Chunk chunk = cache.getIfPresent(new Key(id, chunkIndex, generation(id)));
+        return chunk == null ? null : chunk.content();
+    }
+
+    /**
+     * Cache a chunk that has been fetched, unless its binary was invalidated after its read began.
+     *
+     * @param id the identifier of a binary
+     * @param chunkIndex the index of one of its chunks
+     * @param stored the bytes of that chunk, as stored
+     * @param compression how the chunk was compressed, or {@code null}
+     * @param readGeneration the value of {@link #generation(IRI)} when the read began
+     * @return the content of the chunk
+     */
+    public InputStream put(final IRI id, final int chunkIndex, final InputStream stored, final String compression,
+            final long readGeneration) {
+        if (!isEnabled() || generation(id) != readGeneration) return ChunkCompression.decompress(stored, compression);
+        final byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(stored);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // a chunk larger than the whole cache would only be evicted again at once
+        if (bytes.length > maxBytes) return ChunkCompression.decompress(new ByteArrayInputStream(bytes), compression);
+        final ByteBuffer offHeap = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        offHeap.flip();
+        final Chunk chunk = new Chunk(offHeap.asReadOnlyBuffer(), compression);
+        // if the binary is invalidated meanwhile, this is cached under a generation that will not be read again
+        cache.put(new Key(id, chunkIndex, readGeneration), chunk);
+        return chunk.content();
+    }
+
+    /**
+     * @param id the identifier of a binary that has been written or purged
+     */
+    public void invalidate(final IRI id) {
+        if (isEnabled()) generations.incrementAndGet(slot(id));
+    }
+
+    private static int slot(final IRI id) {
+        return Math.floorMod(id.hashCode(), GENERATIONS);
+    }
+
+    /**
+     * @return the number of chunks read from the cache
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of chunks that had to be fetched from Cassandra
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return the fraction of chunks read from the cache, or one if none have been read
+     */
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * @return the number of chunks evicted because the cache was full, including those of invalidated binaries
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return the approximate number of cached chunks
+     */
+    public long getSize() {
+        return cache.size();
+    }
+
+    private static final class Key {
+
+        private final IRI id;
+
+        private final int chunkIndex;
+
+        private final long generation;
+
+        private Key(final IRI id, final int chunkIndex, final long generation) {
+            this.id = id;
+            this.chunkIndex = chunkIndex;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) return false;
+            final Key key = (Key) other;
+            return chunkIndex == key.chunkIndex && generation == key.generation && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, chunkIndex, generation);
+        }
+    }
+
+    private static final class Chunk {
+
+        private final ByteBuffer bytes;
+
+        private final String compression;
+
+        private Chunk(final ByteBuffer bytes, final String compression) {
+            this.bytes = bytes;
+            this.compression = compression;
+        }
+
+        private InputStream content() {
+            return ChunkCompression.decompress(new ByteBufferInputStream(bytes.duplicate()), compression);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.Arrays.stream;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toList;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.trellisldp.api.TrellisRuntimeException;
+
+/**
+ * Compresses the chunks of binaries whose MIME type is likely to compress well. Whether and how each chunk was
+ * compressed is recorded with the chunk, so chunks that do not shrink are stored as they are, and binaries written
+ * with other settings are still read correctly.
+ *
+ * <p>Compression is disabled unless {@value #CONFIG_BINARY_COMPRESSION} is set to {@value #DEFLATE}.
+ */
+@ApplicationScoped
+public class ChunkCompression {
+
+    /**
+     * The configuration key for the algorithm with which chunks are compressed, {@value #DEFLATE} or {@value #NONE}.
+     * While it is set at all, even to {@value #NONE}, the {@code compression} column of each chunk is read.
+     */
+    public static final String CONFIG_BINARY_COMPRESSION = "trellis.cassandra.binary-compression";
+
+    /**
+     * The configuration key for a comma-separated list of the MIME types of binaries whose chunks are compressed. A
+     * type may end with {@code /*} to match any subtype.
+     */
+    public static final String CONFIG_BINARY_COMPRESSION_TYPES = "trellis.cassandra.binary-compression-types";
+
+    /** Compression with {@link Deflater}. */
+    public static final String DEFLATE = "deflate";
+
+    /** No compression. */
+    public static final String NONE = "none";
+
+    /** The default MIME types of binaries whose chunks are compressed. */
+    public static final String DEFAULT_COMPRESSION_TYPES = "text/*,application/json,application/ld+json,"
+        + "application/xml,application/n-triples";
+
+    private final String algorithm;
+
+    private final List<String> types;
+
+    /**
+     * Create a policy configured by {@value #CONFIG_BINARY_COMPRESSION} and {@value #CONFIG_BINARY_COMPRESSION_TYPES}.
+     */
+    public ChunkCompression() {
+        this(getConfig().getOptionalValue(CONFIG_BINARY_COMPRESSION, String.class).orElse(NONE),
+                getConfig().getOptionalValue(CONFIG_BINARY_COMPRESSION_TYPES, String.class)
+                    .orElse(DEFAULT_COMPRESSION_TYPES));
+    }
+
+    /**
+     * @param algorithm the algorithm with which chunks are compressed, {@value #DEFLATE} or {@value #NONE}
+     * @param types a comma-separated list of the MIME types of binaries whose chunks are compressed
+     */
+    public ChunkCompression(final String algorithm, final String types) {
+        if (NONE.equalsIgnoreCase(algorithm)) this.algorithm = null;
+        else if (DEFLATE.equalsIgnoreCase(algorithm)) this.algorithm = DEFLATE;
+        else throw new IllegalArgumentException("Unsupported binary compression: " + algorithm);
+        this.types = stream(types.split(",")).map(String::trim).filter(type -> !type.isEmpty())
+            .map(type -> type.toLowerCase(ROOT)).collect(toList());
+    }
+
+    /**
+     * @return whether any chunks are compressed
+     */
+    public boolean isEnabled() {
+        return algorithm != null;
+    }
+
+    /**
+     * @return the algorithm with which chunks are compressed, or {@code null} if they are not
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param mimeType the MIME type of a binary, which may carry parameters, or {@code null}
+     * @return whether the chunks of that binary should be compressed
+     */
+    public boolean appliesTo(final String mimeType) {
+        if (algorithm == null || mimeType == null) return false;
+        final int parameters = mimeType.indexOf(';');
+        final String type = (parameters < 0 ? mimeType : mimeType.substring(0, parameters)).trim().toLowerCase(ROOT);
+        return types.stream().anyMatch(allowed -> allowed.endsWith("/*")
+                ? type.startsWith(allowed.substring(0, allowed.length() - 1)) : allowed.equals(type));
+    }
+
+    /**
+     * @return a compressor for the chunks of one binary, which must be ended once they have all been compressed
+     */
+    Deflater newDeflater() {
+        // chunks are compressed as they are uploaded, so favour speed over ratio
+        return new Deflater(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param deflater the compressor for the binary to which {@code chunk} belongs
+     * @param chunk the bytes of a chunk, which are not consumed
+     * @param compressed a buffer into which to compress them, which is flipped ready to be read
+     * @return whether the chunk was compressed into fewer bytes than it holds; if not, it should be stored as it is
+     */
+    static boolean compress(final Deflater deflater, final ByteBuffer chunk, final ByteBuffer compressed) {
+        deflater.reset();
+        deflater.setInput(chunk.duplicate());
+        deflater.finish();
+        deflater.deflate(compressed);
+        final boolean smaller = deflater.finished() && compressed.position() < chunk.remaining();
+        compressed.flip();
+        return smaller;
+    }
+
+    /**
+     * @param chunk the stored bytes of a chunk
+     * @param compression how the chunk was compressed, as recorded with it, or {@code null}
+     * @return the bytes of the chunk as they were written
+     */
+    public static InputStream decompress(final InputStream chunk, final String compression) {
+        if (compression == null) return chunk;
+        if (DEFLATE.equals(compression)) return new InflaterInputStream(chunk);
+        throw new TrellisRuntimeException("Unknown binary chunk compression: " + compression);
+    }
+}
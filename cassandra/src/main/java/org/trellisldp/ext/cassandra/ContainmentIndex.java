@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.Locale.ROOT;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * Describes where basic containment is recorded.
+ *
+ * <p>By default containment is read from the {@code basiccontainment} materialized view, which Cassandra maintains
+ * from {@code mutabledata}. The view is partitioned only by container, so a container with many children becomes a
+ * single, very wide partition. Alternatively, containment can be kept in the {@code containment} table, which this
+ * extension maintains itself and which spreads the children of each container across a fixed number of buckets
+ * chosen by a hash of the child's identifier.
+ *
+ * <p>An existing keyspace is moved from the view to the table in three steps: run with {@link Mode#MIGRATING}, so
+ * that new writes are recorded in the table while reads still use the view; backfill the table with
+ * {@link org.trellisldp.ext.cassandra.query.rdf.ContainmentBackfill}; then switch to {@link Mode#TABLE}. Once no
+ * node reads the view, it should be dropped, since Cassandra otherwise keeps maintaining it on every write. A keyspace
+ * that starts out in {@link Mode#TABLE} mode never needs the view, which is created separately by
+ * {@code basiccontainment.cql}.
+ */
+public final class ContainmentIndex {
+
+    /** The configuration key for selecting where containment is recorded. */
+    public static final String CONFIG_CASSANDRA_CONTAINMENT_INDEX = "trellis.cassandra.containment-index";
+
+    /**
+     * The configuration key for the number of buckets in the containment table. This must not be changed once the
+     * table holds data.
+     */
+    public static final String CONFIG_CASSANDRA_CONTAINMENT_BUCKETS = "trellis.cassandra.containment-buckets";
+
+    /** The default number of buckets in the containment table. */
+    public static final int DEFAULT_BUCKETS = 16;
+
+    /**
+     * Where containment is written and read.
+     */
+    public enum Mode {
+        /** Read from the materialized view; do not maintain the table. */
+        VIEW,
+        /** Read from the materialized view, but also maintain the table. */
+        MIGRATING,
+        /** Read from and maintain the table. */
+        TABLE
+    }
+
+    private final Mode mode;
+    private final int buckets;
+
+    /**
+     * @param mode where containment is written and read
+     * @param buckets the number of buckets in the containment table
+     */
+    public ContainmentIndex(final Mode mode, final int buckets) {
+        if (buckets < 1) throw new IllegalArgumentException("Containment bucket count < 1!");
+        this.mode = mode;
+        this.buckets = buckets;
+    }
+
+    /**
+     * @return the index selected by {@value #CONFIG_CASSANDRA_CONTAINMENT_INDEX} and
+     *         {@value #CONFIG_CASSANDRA_CONTAINMENT_BUCKETS}
+     */
+    public static ContainmentIndex configured() {
+        final Mode mode = getConfig().getOptionalValue(CONFIG_CASSANDRA_CONTAINMENT_INDEX, String.class)
+            .map(m -> m.toUpperCase(ROOT)).map(Mode::valueOf).orElse(Mode.VIEW);
+        return new ContainmentIndex(mode, getConfig().getOptionalValue(CONFIG_CASSANDRA_CONTAINMENT_BUCKETS,
+                    Integer.class).orElse(DEFAULT_BUCKETS));
+    }
+
+    /**
+     * @return whether writes to resources must also maintain the containment table
+     */
+    public boolean writesTable() {
+        return mode != Mode.VIEW;
+    }
+
+    /**
+     * @return whether containment is read from the containment table
+     */
+    public boolean readsTable() {
+        return mode == Mode.TABLE;
+    }
+
+    /**
+     * @return the number of buckets in the containment table
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @param identifier the identifier of a contained resource
+     * @return the bucket in which that resource is recorded
+     */
+    public int bucket(final IRI identifier) {
+        return bucket(identifier.getIRIString());
+    }
+
+    /**
+     * @param identifier the identifier of a contained resource
+     * @return the bucket in which that resource is recorded
+     */
+    public int bucket(final String identifier) {
+        // String.hashCode is specified by the JLS, so this is stable across JVMs and releases
+        return Math.floorMod(identifier.hashCode(), buckets);
+    }
+}
@@ -22,6 +22,7 @@ import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.io.InputStream;
+import java.util.function.Function;
 
 /**
  * An {@link InputStream} backed by a Cassandra query to retrieve one binary chunk.
@@ -36,18 +37,30 @@ public class LazyChunkInputStream extends LazyFilterInputStream {
 
     private final BoundStatement query;
 
+    private final Function<Row, InputStream> content;
+
     /**
      * @param session The Cassandra session to use
      * @param query the CQL query to use
      */
     public LazyChunkInputStream(final CqlSession session, final BoundStatement query) {
+        this(session, query, row -> row.get("chunk", InputStream.class));
+    }
+
+    /**
+     * @param session The Cassandra session to use
+     * @param query the CQL query to use
+     * @param content reads the content of the chunk from the row that {@code query} returns
+     */
+    public LazyChunkInputStream(final CqlSession session, final BoundStatement query,
+            final Function<Row, InputStream> content) {
         this.session = session;
         this.query = query;
+        this.content = content;
     }
 
     @Override
     protected InputStream initialize() {
-        final Row row = requireNonNull(session.execute(query).one(), "Missing binary chunk!");
-        return row.get("chunk", InputStream.class);
+        return content.apply(requireNonNull(session.execute(query).one(), "Missing binary chunk!"));
     }
 }
@@ -18,6 +18,7 @@ package org.trellisldp.ext.cassandra;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Like {@link FilterInputStream} but lazier; does not fill the slot for wrapped {@link InputStream} until
@@ -58,6 +59,11 @@ public abstract class LazyFilterInputStream extends InputStream {
         return wrapped().skip(n);
     }
 
+    @Override
+    public long transferTo(final OutputStream out) throws IOException {
+        return wrapped().transferTo(out);
+    }
+
     @Override
     public int available() throws IOException {
         return wrapped().available();
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_BASE;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_DEPTH;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.REMOVED_QUADS;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.RDF;
+import org.trellisldp.api.RDFFactory;
+
+/**
+ * Delta-encoded Mementos. Between full snapshots, a Memento may record only the quads added since an earlier Memento,
+ * in the usual RDF columns, and the quads removed since then, as N-Quads in {@code removedquads}. The creation of that
+ * earlier Memento is recorded in {@code deltabase}; deltas written before that column was added are based on the
+ * Memento just before them. The distance of a delta from the last snapshot is recorded in {@code deltadepth}; a
+ * Memento without one is a full snapshot. Once {@link org.trellisldp.ext.cassandra.query.rdf.MementoCompactor} has
+ * turned an earlier delta into a snapshot, the recorded distance may overstate the real one, but never understates it.
+ */
+public final class MementoDelta {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    /**
+     * @param row a Memento, may be {@code null}
+     * @return the number of deltas between that Memento and the last full snapshot, zero for a snapshot
+     */
+    public static int depth(final Row row) {
+        if (row == null || !row.getColumnDefinitions().contains(DELTA_DEPTH) || row.isNull(DELTA_DEPTH)) return 0;
+        return row.getInt(DELTA_DEPTH);
+    }
+
+    /**
+     * @param row a Memento
+     * @return the creation of the Memento on which {@code row} is based, or {@code null} if it is a snapshot or is
+     *         based on the Memento just before it
+     */
+    public static UUID base(final Row row) {
+        if (!row.getColumnDefinitions().contains(DELTA_BASE) || row.isNull(DELTA_BASE)) return null;
+        return row.getUuid(DELTA_BASE);
+    }
+
+    /**
+     * @param rows Mementos of a resource, newest first
+     * @return the first of {@code rows} and those it is based on back to the nearest full snapshot, newest first, or
+     *         {@code null} if that snapshot or any Memento on the way is not among {@code rows}
+     */
+    public static List<Row> chain(final Iterable<Row> rows) {
+        final List<Row> chain = new ArrayList<>();
+        UUID base = null;
+        for (final Row row : rows) {
+            // Mementos written concurrently with those in the chain are skipped
+            if (base != null && !base.equals(row.getUuid("created"))) continue;
+            chain.add(row);
+            if (depth(row) == 0) return chain;
+            base = base(row);
+        }
+        return null;
+    }
+
+    /**
+     * @param chain a Memento and those it is based on back to a full snapshot, newest first, as from {@link #chain}
+     * @return the RDF of the first Memento in {@code chain}
+     */
+    public static Dataset rebuild(final List<Row> chain) {
+        final Dataset dataset = CassandraIOUtils.parse(chain.get(chain.size() - 1));
+        for (int i = chain.size() - 2; i >= 0; i--) {
+            final Row delta = chain.get(i);
+            CassandraIOUtils.parse(delta.getString(REMOVED_QUADS)).stream().forEach(dataset::remove);
+            CassandraIOUtils.parse(delta).stream().forEach(dataset::add);
+        }
+        return dataset;
+    }
+
+    /**
+     * @param previous the RDF of the previous Memento
+     * @param current the RDF of the new Memento
+     * @return the stored quads in {@code current} that are not in {@code previous}
+     */
+    static Dataset added(final Dataset previous, final Dataset current) {
+        final Dataset added = rdf.createDataset();
+        CassandraIOUtils.storedQuads(current).filter(quad -> !previous.contains(quad)).forEach(added::add);
+        return added;
+    }
+
+    /**
+     * @param previous the RDF of the previous Memento
+     * @param current the RDF of the new Memento
+     * @return the quads in {@code previous} that are not in {@code current}
+     */
+    static Dataset removed(final Dataset previous, final Dataset current) {
+        final Dataset removed = rdf.createDataset();
+        previous.stream().filter(quad -> !current.contains(quad)).forEach(removed::add);
+        return removed;
+    }
+
+    private MementoDelta() {
+        // not instantiable
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.CONTENT_HASH;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.trellisldp.api.BinaryMetadata;
+import org.trellisldp.api.Metadata;
+
+/**
+ * Hashes of the content of Mementos, by which a Memento that would repeat the one before it is recognized. A hash
+ * covers what a Memento stores apart from its times: the interaction model, container and binary of the resource,
+ * and its stored quads, in a canonical order.
+ */
+final class MementoHash {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * @param metadata metadata for a resource
+     * @param data RDF for that resource, may be {@code null}
+     * @return the hash of a Memento of that resource
+     */
+    static ByteBuffer of(final Metadata metadata, final Dataset data) {
+        final MessageDigest digest = newDigest();
+        update(digest, metadata.getInteractionModel().getIRIString());
+        update(digest, metadata.getContainer().map(IRI::getIRIString).orElse(""));
+        update(digest, metadata.getBinary().map(BinaryMetadata::getIdentifier).map(IRI::getIRIString).orElse(""));
+        update(digest, metadata.getBinary().flatMap(BinaryMetadata::getMimeType).orElse(""));
+        if (data != null) {
+            final Iterator<String> quads = CassandraIOUtils.storedQuads(data).map(MementoHash::canonical).sorted()
+                .iterator();
+            while (quads.hasNext()) update(digest, quads.next());
+        }
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    /**
+     * @param row a Memento, may be {@code null}
+     * @return the hash recorded for that Memento, or {@code null} if there is none
+     */
+    static ByteBuffer of(final Row row) {
+        if (row == null || !row.getColumnDefinitions().contains(CONTENT_HASH)) return null;
+        return row.getByteBuffer(CONTENT_HASH);
+    }
+
+    private static String canonical(final Quad quad) {
+        return quad.getSubject().ntriplesString() + " " + quad.getPredicate().ntriplesString() + " "
+            + quad.getObject().ntriplesString() + " "
+            + quad.getGraphName().map(BlankNodeOrIRI::ntriplesString).orElse("");
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(UTF_8));
+        // a separator that cannot appear in the N-Triples form of a term keeps adjacent values apart
+        digest.update((byte) '\n');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available!", e);
+        }
+    }
+
+    private MementoHash() {
+        // not instantiable
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.Locale.ROOT;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+/**
+ * Describes how the Memento of a resource at a given time is found.
+ *
+ * <p>By default Mementos are found by filtering {@code mementodata}, which is clustered by creation and not by
+ * modification time, so that finding one Memento reads every version of a resource. Alternatively, the
+ * {@code mementotime} table records the creation of each Memento clustered by its modification time, so that the
+ * Memento at a given time is found by a single bounded slice and then read by its primary key.
+ *
+ * <p>An existing keyspace is moved to the table in three steps: run with {@link Mode#MIGRATING}, so that new
+ * Mementos are recorded in the table while lookups still filter {@code mementodata}; backfill the table with
+ * {@link org.trellisldp.ext.cassandra.query.rdf.MementoBackfill}; then switch to {@link Mode#TABLE}.
+ */
+public final class MementoIndex {
+
+    /** The configuration key for selecting how Mementos are found by time. */
+    public static final String CONFIG_CASSANDRA_MEMENTO_INDEX = "trellis.cassandra.memento-index";
+
+    /**
+     * How Mementos are recorded and found by time.
+     */
+    public enum Mode {
+        /** Filter {@code mementodata}; do not maintain the table. */
+        FILTER,
+        /** Filter {@code mementodata}, but also maintain the table. */
+        MIGRATING,
+        /** Find Mementos by, and maintain, the table. */
+        TABLE
+    }
+
+    private final Mode mode;
+
+    /**
+     * @param mode how Mementos are recorded and found by time
+     */
+    public MementoIndex(final Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return the index selected by {@value #CONFIG_CASSANDRA_MEMENTO_INDEX}
+     */
+    public static MementoIndex configured() {
+        return new MementoIndex(getConfig().getOptionalValue(CONFIG_CASSANDRA_MEMENTO_INDEX, String.class)
+            .map(m -> m.toUpperCase(ROOT)).map(Mode::valueOf).orElse(Mode.FILTER));
+    }
+
+    /**
+     * @return whether writing a Memento must also maintain the table
+     */
+    public boolean writesTable() {
+        return mode != Mode.FILTER;
+    }
+
+    /**
+     * @return whether Mementos are found by time from the table
+     */
+    public boolean readsTable() {
+        return mode == Mode.TABLE;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.util.Locale.ROOT;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import java.time.Instant;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes which Mementos of a resource are kept as they age, for
+ * {@link org.trellisldp.ext.cassandra.query.rdf.MementoCompactor}.
+ *
+ * <p>A policy is a list of tiers, youngest first, separated by commas. Each is written {@code GRANULARITY:PERIOD},
+ * where the period is an ISO-8601 period such as {@code P30D} or {@code P1Y}, and covers the Mementos younger than
+ * that period which no earlier tier covers. Of those, it keeps every Memento ({@link Granularity#ALL}) or only the
+ * newest in each hour, day, month or year. A last tier written without a period covers all older Mementos; if there
+ * is none, older Mementos are removed. For example, {@code ALL:P30D,DAILY:P1Y,MONTHLY} keeps every Memento for thirty
+ * days, then one a day for the rest of the year, then one a month.
+ *
+ * <p>A policy may also limit the number of Mementos kept for each resource. Either way, the newest Memento of a
+ * resource is always kept.
+ */
+public final class MementoRetention {
+
+    /** The configuration key for the policy by which Mementos are thinned as they age. */
+    public static final String CONFIG_CASSANDRA_MEMENTO_RETENTION = "trellis.cassandra.memento-retention";
+
+    /** The configuration key for the largest number of Mementos kept for each resource. Zero means no limit. */
+    public static final String CONFIG_CASSANDRA_MEMENTO_MAX_VERSIONS = "trellis.cassandra.memento-max-versions";
+
+    /**
+     * How finely the Mementos in a tier are kept.
+     */
+    public enum Granularity {
+        /** Keep every Memento. */
+        ALL,
+        /** Keep the newest Memento in each hour. */
+        HOURLY,
+        /** Keep the newest Memento in each day. */
+        DAILY,
+        /** Keep the newest Memento in each month. */
+        MONTHLY,
+        /** Keep the newest Memento in each year. */
+        YEARLY;
+
+        private Object bucket(final Instant time) {
+            final ZonedDateTime utc = time.atZone(UTC);
+            switch (this) {
+                case HOURLY:
+                    return utc.truncatedTo(HOURS);
+                case DAILY:
+                    return utc.truncatedTo(DAYS);
+                case MONTHLY:
+                    return YearMonth.from(utc);
+                case YEARLY:
+                    return Year.from(utc);
+                default:
+                    return time;
+            }
+        }
+    }
+
+    private final List<Granularity> granularities = new ArrayList<>();
+
+    private final List<Period> periods = new ArrayList<>();
+
+    private final int maxVersions;
+
+    /**
+     * @param policy the tiers of the policy, or an empty string to keep Mementos of any age
+     * @param maxVersions the largest number of Mementos kept for each resource, or zero for no limit
+     */
+    public MementoRetention(final String policy, final int maxVersions) {
+        if (maxVersions < 0) throw new IllegalArgumentException("Memento max versions < 0!");
+        this.maxVersions = maxVersions;
+        for (final String tier : policy.split(",")) {
+            if (tier.isBlank()) continue;
+            if (!periods.isEmpty() && periods.get(periods.size() - 1) == null) {
+                throw new IllegalArgumentException("Only the last Memento retention tier may omit its period: "
+                        + policy);
+            }
+            final String[] parts = tier.trim().split(":", 2);
+            granularities.add(Granularity.valueOf(parts[0].trim().toUpperCase(ROOT)));
+            periods.add(parts.length > 1 ? Period.parse(parts[1].trim()) : null);
+        }
+    }
+
+    /**
+     * @return the policy set by {@value #CONFIG_CASSANDRA_MEMENTO_RETENTION} and
+     *         {@value #CONFIG_CASSANDRA_MEMENTO_MAX_VERSIONS}
+     */
+    public static MementoRetention configured() {
+        return new MementoRetention(getConfig().getOptionalValue(CONFIG_CASSANDRA_MEMENTO_RETENTION, String.class)
+                .orElse(""), getConfig().getOptionalValue(CONFIG_CASSANDRA_MEMENTO_MAX_VERSIONS, Integer.class)
+                .orElse(0));
+    }
+
+    /**
+     * @return whether this policy removes any Mementos
+     */
+    public boolean isEnabled() {
+        return !granularities.isEmpty() || maxVersions > 0;
+    }
+
+    /**
+     * @param times the modification times of the Mementos of a resource, newest first
+     * @param now the time against which the age of each Memento is measured
+     * @return for each of {@code times}, whether that Memento is kept
+     */
+    public boolean[] retain(final List<Instant> times, final Instant now) {
+        final Sweep sweep = sweep(now);
+        final boolean[] keep = new boolean[times.size()];
+        for (int i = 0; i < times.size(); i++) {
+            keep[i] = sweep.keep(times.get(i));
+        }
+        return keep;
+    }
+
+    /**
+     * @param now the time against which the age of each Memento is measured
+     * @return a {@link Sweep} over the Mementos of one resource
+     */
+    public Sweep sweep(final Instant now) {
+        return new Sweep(now);
+    }
+
+    /**
+     * Decides which Mementos of one resource are kept one at a time, newest first, so that they need not all be held
+     * at once.
+     */
+    public final class Sweep {
+
+        private final Instant now;
+
+        // the bucket of the last Memento seen in each tier, the first Memento in each bucket being the newest
+        private final Map<Integer, Object> buckets = new HashMap<>();
+
+        private int seen;
+
+        private int kept;
+
+        private Sweep(final Instant now) {
+            this.now = now;
+        }
+
+        /**
+         * @param time the modification time of the next Memento of the resource, no later than those before it
+         * @return whether that Memento is kept
+         */
+        public boolean keep(final Instant time) {
+            final int tier = tierOf(time, now);
+            final Granularity granularity = tier < 0 ? null : granularityOf(tier);
+            final Object bucket = granularity != null ? granularity.bucket(time) : null;
+            final boolean newestInBucket = bucket != null && !bucket.equals(buckets.put(tier, bucket));
+            final boolean keep = seen++ == 0 || newestInBucket && (maxVersions == 0 || kept < maxVersions);
+            if (keep) kept++;
+            return keep;
+        }
+    }
+
+    private int tierOf(final Instant time, final Instant now) {
+        if (granularities.isEmpty()) return 0;
+        for (int tier = 0; tier < periods.size(); tier++) {
+            final Period period = periods.get(tier);
+            if (period == null || time.isAfter(now.atZone(UTC).minus(period).toInstant())) return tier;
+        }
+        return -1;
+    }
+
+    private Granularity granularityOf(final int tier) {
+        return granularities.isEmpty() ? Granularity.ALL : granularities.get(tier);
+    }
+}
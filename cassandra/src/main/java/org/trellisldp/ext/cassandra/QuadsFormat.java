@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.Locale.ROOT;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import org.apache.commons.rdf.api.Dataset;
+
+/**
+ * The serialization formats in which the RDF of a resource may be written to Cassandra.
+ *
+ * <p>Rows written in any format can always be read back: {@link CassandraIOUtils#parse(Row)} prefers the
+ * {@value #QUADS_BINARY} column when it is populated and falls back to the {@value #QUADS} column otherwise. Writing in
+ * either format clears the other column, where the table has one, so that RDF left by an earlier write in the other
+ * format is never read in place of the latest.
+ */
+public enum QuadsFormat {
+
+    /** N-Quads text, stored in the {@value #QUADS} column. */
+    NQUADS,
+
+    /**
+     * RDF Thrift, stored in the {@value #QUADS_BINARY} column. IRIs under
+     * {@link org.trellisldp.api.TrellisUtils#TRELLIS_DATA_PREFIX} are written in abbreviated form.
+     */
+    THRIFT;
+
+    /** The configuration key for selecting the format used when writing RDF. */
+    public static final String CONFIG_CASSANDRA_QUADS_FORMAT = "trellis.cassandra.quads-format";
+
+    /** The name of the text column holding N-Quads. */
+    public static final String QUADS = "quads";
+
+    /** The name of the blob column holding binary RDF. */
+    public static final String QUADS_BINARY = "quadsbinary";
+
+    /**
+     * @return the format selected by {@value #CONFIG_CASSANDRA_QUADS_FORMAT}, or {@link #NQUADS} if none is set
+     */
+    public static QuadsFormat configured() {
+        return getConfig().getOptionalValue(CONFIG_CASSANDRA_QUADS_FORMAT, String.class)
+            .map(format -> format.toUpperCase(ROOT)).map(QuadsFormat::valueOf).orElse(NQUADS);
+    }
+
+    /**
+     * The columns written with RDF in this format. Leaving out {@value #QUADS_BINARY} where the table has no such
+     * column means that a keyspace that has not yet been migrated to include it continues to work with
+     * {@link #NQUADS}.
+     *
+     * @param binaryColumn whether the table written has a {@value #QUADS_BINARY} column
+     * @return a comma-separated list of column names
+     */
+    public String columns(final boolean binaryColumn) {
+        return this == THRIFT || binaryColumn ? QUADS + ", " + QUADS_BINARY : QUADS;
+    }
+
+    /**
+     * @param binaryColumn whether the table written has a {@value #QUADS_BINARY} column
+     * @return bind markers matching {@link #columns(boolean)}
+     */
+    public String markers(final boolean binaryColumn) {
+        return this == THRIFT || binaryColumn ? "?, ?" : "?";
+    }
+
+    /**
+     * Bind a dataset to a statement prepared with {@link #columns(boolean)} and {@link #markers(boolean)}.
+     *
+     * @param statement the statement
+     * @param dataset the dataset, may be {@code null}
+     * @return the statement with the RDF columns bound
+     */
+    public BoundStatement bind(final BoundStatement statement, final Dataset dataset) {
+        if (this == THRIFT) {
+            // clear any N-Quads left behind by an earlier write so that the row has a single source of truth
+            return statement.setString(QUADS, null)
+                .setByteBuffer(QUADS_BINARY, CassandraIOUtils.serializeBinary(dataset));
+        }
+        final BoundStatement bound = statement.setString(QUADS, CassandraIOUtils.serialize(dataset));
+        // likewise clear any binary RDF, which would otherwise be read in preference to these N-Quads
+        return bound.getPreparedStatement().getVariableDefinitions().contains(QUADS_BINARY)
+            ? bound.setToNull(QUADS_BINARY)
+            : bound;
+    }
+}
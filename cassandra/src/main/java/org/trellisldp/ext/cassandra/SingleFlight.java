@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent lookups of the same key, so that callers arriving while a lookup is in flight share its
+ * result instead of starting their own.
+ *
+ * @param <K> the type of key
+ * @param <V> the type of value
+ */
+final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key the key to look up
+     * @param lookup the lookup to run if none is in flight for {@code key}
+     * @return the result of the lookup in flight for {@code key}; each caller receives its own stage, so that one
+     *         caller cannot complete or cancel the stage seen by another
+     */
+    CompletionStage<V> get(final K key, final Function<K, ? extends CompletionStage<V>> lookup) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) return existing.copy();
+        try {
+            lookup.apply(key).whenComplete((value, error) -> {
+                inFlight.remove(key, flight);
+                if (error != null) flight.completeExceptionally(error);
+                else flight.complete(value);
+            });
+        } catch (final RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight.copy();
+    }
+
+    /**
+     * Stop sharing any lookup in flight for a key, because it may have begun before a write to that key. Callers
+     * already waiting on it still receive its result, but later callers start a new lookup.
+     *
+     * @param key the key
+     */
+    void forget(final K key) {
+        inFlight.remove(key);
+    }
+}
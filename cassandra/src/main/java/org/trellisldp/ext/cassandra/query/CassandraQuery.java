@@ -15,7 +15,6 @@
  */
 package org.trellisldp.ext.cassandra.query;
 
-import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
@@ -28,6 +27,7 @@ import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
+import org.trellisldp.ext.cassandra.CassandraExecutors;
 
 /**
  * A context for queries run against Cassandra. All requests to Cassandra should go through a subclass.
@@ -48,10 +48,9 @@ public class CassandraQuery {
 
     /**
      * Worker threads that read and write from and to Cassandra. Reading and writing are thereby uncoupled from threads
-     * calling into this class.
+     * calling into this class. These are shared by every query; see {@link CassandraExecutors}.
      */
-    protected final Executor writeWorkers = newCachedThreadPool();
-    protected final Executor readBinaryWorkers = newCachedThreadPool();
+    protected final Executor writeWorkers = CassandraExecutors.writes();
 
 
      /**
@@ -86,6 +85,17 @@ public class CassandraQuery {
         return preparedStmtAsync;
     }
 
+    /**
+     * @param session a {@link CqlSession} to the Cassandra cluster, may be {@code null}
+     * @param table a table in the keyspace of {@code session}
+     * @param column a column that may have been added to that table since it was created
+     * @return whether the table has that column, as far as the schema known to {@code session} shows
+     */
+    protected static boolean hasColumn(final CqlSession session, final String table, final String column) {
+        return session != null && session.getKeyspace().flatMap(name -> session.getMetadata().getKeyspace(name))
+            .flatMap(keyspace -> keyspace.getTable(table)).flatMap(t -> t.getColumn(column)).isPresent();
+    }
+
     /**
      * @param statement the CQL statement to execute
      * @return the results of that statement
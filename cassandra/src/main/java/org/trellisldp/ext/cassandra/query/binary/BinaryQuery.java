@@ -15,6 +15,9 @@
  */
 package org.trellisldp.ext.cassandra.query.binary;
 
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.trellisldp.ext.cassandra.ChunkCompression.CONFIG_BINARY_COMPRESSION;
+
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 
@@ -22,8 +25,29 @@ import org.trellisldp.ext.cassandra.query.CassandraQuery;
 
 public abstract class BinaryQuery extends CassandraQuery {
 
+    /**
+     * The configuration key for recording the size, chunk count and digest of each binary in the
+     * {@code binarymeta} table when it is written.
+     */
+    public static final String CONFIG_CASSANDRA_BINARY_METADATA = "trellis.cassandra.binary-metadata";
+
+    /**
+     * The configuration key for storing the chunks of binaries by the hash of their content, so that identical chunks
+     * are stored once. This requires {@value #CONFIG_CASSANDRA_BINARY_METADATA}.
+     */
+    public static final String CONFIG_CASSANDRA_BINARY_DEDUP = "trellis.cassandra.binary-dedup";
+
     static final String BINARY_TABLENAME = "binarydata";
 
+    static final String CHUNKSTORE_TABLENAME = "chunkstore";
+
+    static final String CHUNKREFS_TABLENAME = "chunkrefs";
+
+    static final String METADATA_TABLENAME = "binarymeta";
+
+    /** The name of the column recording how a chunk was compressed, if it was. */
+    static final String COMPRESSION = "compression";
+
     BinaryQuery() {
         super();
     }
@@ -31,4 +55,25 @@ public abstract class BinaryQuery extends CassandraQuery {
     BinaryQuery(final CqlSession session, final String queryString, final ConsistencyLevel consistency) {
         super(session, queryString, consistency);
     }
+
+    /**
+     * @return whether binary metadata is configured to be recorded
+     */
+    static boolean metadataConfigured() {
+        return getConfig().getOptionalValue(CONFIG_CASSANDRA_BINARY_METADATA, Boolean.class).orElse(Boolean.FALSE);
+    }
+
+    /**
+     * @return whether chunks are configured to be compressed as they are written
+     */
+    static boolean compressionConfigured() {
+        return getConfig().getOptionalValue(CONFIG_BINARY_COMPRESSION, String.class).isPresent();
+    }
+
+    /**
+     * @return whether chunks are configured to be stored by the hash of their content
+     */
+    static boolean dedupConfigured() {
+        return getConfig().getOptionalValue(CONFIG_CASSANDRA_BINARY_DEDUP, Boolean.class).orElse(Boolean.FALSE);
+    }
 }
@@ -15,20 +15,35 @@
  */
 package org.trellisldp.ext.cassandra.query.binary;
 
+import static com.google.common.collect.Iterators.transform;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.StreamSupport.stream;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.trellisldp.ext.cassandra.ChunkCompression.CONFIG_BINARY_COMPRESSION;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.trellisldp.api.TrellisRuntimeException;
+import org.trellisldp.ext.cassandra.ChunkCache;
 import org.trellisldp.ext.cassandra.LazyChunkInputStream;
 
 /**
@@ -36,19 +51,128 @@ import org.trellisldp.ext.cassandra.LazyChunkInputStream;
  */
 public abstract class BinaryReadQuery extends BinaryQuery {
 
-    private static final String READ_CHUNK_QUERY = "SELECT chunk FROM " + BINARY_TABLENAME
+    /**
+     * The configuration key for the number of chunks fetched ahead of the reader of a binary. Zero disables
+     * read-ahead, so that each chunk is fetched only when the reader reaches it.
+     */
+    public static final String CONFIG_CASSANDRA_READ_AHEAD_CHUNKS = "trellis.cassandra.read-ahead-chunks";
+
+    /** The configuration key for the number of bytes that may be fetched ahead of the reader of a binary. */
+    public static final String CONFIG_CASSANDRA_READ_AHEAD_BUDGET = "trellis.cassandra.read-ahead-budget";
+
+    /** The default number of chunks fetched ahead of the reader of a binary. */
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = 4;
+
+    /** The default number of bytes that may be fetched ahead of the reader of a binary. */
+    public static final long DEFAULT_READ_AHEAD_BUDGET = 8L * 1024 * 1024;
+
+    /**
+     * The configuration key for the number of chunks fetched per page when the chunks of a binary are selected by a
+     * single query. Zero, the default, instead queries the indexes of the chunks and then fetches each chunk.
+     */
+    public static final String CONFIG_CASSANDRA_CHUNK_PAGE_SIZE = "trellis.cassandra.chunk-page-size";
+
+    private static final String READ_CHUNK_QUERY = " FROM " + BINARY_TABLENAME
                     + " WHERE identifier = :identifier and chunkIndex = :chunkIndex;";
 
+    private static final String READ_HASHED_CHUNK_QUERY = " FROM " + CHUNKSTORE_TABLENAME + " WHERE hash = :hash;";
+
     private final PreparedStatement readChunkStatement;
 
+    private final PreparedStatement readHashedChunkStatement;
+
+    private final PreparedStatement streamChunksStatement;
+
+    private final int chunkPageSize;
+
+    private final int readAheadChunks;
+
+    private final long readAheadBudget;
+
+    /**
+     * Chunks read recently on this node. This is shared by every query; see {@link ChunkCache}.
+     */
+    private final ChunkCache cache = ChunkCache.shared();
+
     BinaryReadQuery() {
         super();
         this.readChunkStatement = null;
+        this.readHashedChunkStatement = null;
+        this.streamChunksStatement = null;
+        this.chunkPageSize = 0;
+        this.readAheadChunks = 0;
+        this.readAheadBudget = 0;
     }
 
-    BinaryReadQuery(final CqlSession session, final String queryString, final ConsistencyLevel consistency) {
-        super(session, queryString, consistency);
-        this.readChunkStatement = session.prepare(READ_CHUNK_QUERY);
+    /**
+     * @param session the Cassandra session
+     * @param fromClause the {@code FROM} and {@code WHERE} clauses of a query selecting the chunks to read
+     * @param consistency the consistency level
+     */
+    BinaryReadQuery(final CqlSession session, final String fromClause, final ConsistencyLevel consistency) {
+        this(session, fromClause, consistency,
+                getConfig().getOptionalValue(CONFIG_CASSANDRA_READ_AHEAD_CHUNKS, Integer.class)
+                    .orElse(DEFAULT_READ_AHEAD_CHUNKS),
+                getConfig().getOptionalValue(CONFIG_CASSANDRA_READ_AHEAD_BUDGET, Long.class)
+                    .orElse(DEFAULT_READ_AHEAD_BUDGET),
+                getConfig().getOptionalValue(CONFIG_CASSANDRA_CHUNK_PAGE_SIZE, Integer.class).orElse(0));
+    }
+
+    BinaryReadQuery(final CqlSession session, final String fromClause, final ConsistencyLevel consistency,
+            final int readAheadChunks, final long readAheadBudget, final int chunkPageSize) {
+        super(session, "SELECT chunkIndex" + fromClause, consistency);
+        if (readAheadChunks < 0) throw new IllegalArgumentException("Read-ahead chunk count < 0!");
+        if (readAheadBudget < 0) throw new IllegalArgumentException("Read-ahead budget < 0!");
+        if (chunkPageSize < 0) throw new IllegalArgumentException("Chunk page size < 0!");
+        // chunks may have been compressed while compression was enabled, so their compression is read whether or not
+        // it still is, wherever it may have been recorded
+        final boolean compressed = hasColumn(session, BINARY_TABLENAME, COMPRESSION);
+        if (compressionConfigured() && !compressed) {
+            throw new IllegalStateException(CONFIG_BINARY_COMPRESSION + " is set, but " + BINARY_TABLENAME
+                            + " has no " + COMPRESSION + " column!");
+        }
+        final String columns = compressed ? "SELECT chunk, compression" : "SELECT chunk";
+        this.readChunkStatement = session.prepare(columns + READ_CHUNK_QUERY);
+        // chunks stored by hash are always written with their compression
+        this.readHashedChunkStatement = dedupConfigured()
+            ? session.prepare("SELECT chunk, compression" + READ_HASHED_CHUNK_QUERY)
+            : null;
+        this.streamChunksStatement = chunkPageSize > 0 ? session.prepare(columns + ", chunkIndex" + fromClause) : null;
+        this.chunkPageSize = chunkPageSize;
+        this.readAheadChunks = readAheadChunks;
+        this.readAheadBudget = readAheadBudget;
+    }
+
+    /**
+     * @return whether chunks are selected by a single, paged query, rather than by their indexes and then one by one.
+     *         This is not done when chunks are cached, so that cached chunks are not fetched again.
+     */
+    protected boolean streamsChunks() {
+        return streamChunksStatement != null && !cache.isEnabled();
+    }
+
+    /**
+     * Select the chunks of a binary by one query, paging through them {@value #CONFIG_CASSANDRA_CHUNK_PAGE_SIZE}
+     * chunks at a time. Each page is requested as soon as the reader reaches the one before it.
+     *
+     * @param id an {@link IRI} for a binary
+     * @param bind binds the values of the query selecting chunks
+     * @return An {@link InputStream} of bytes as requested. The {@code skip} method of this {@code InputStream} is
+     *         guaranteed to skip as many bytes as asked.
+     * @see #streamsChunks()
+     */
+    protected CompletionStage<InputStream> stream(final IRI id, final UnaryOperator<BoundStatement> bind) {
+        final long generation = cache.generation(id);
+        return session.executeAsync(bind.apply(streamChunksStatement.bind()).setPageSize(chunkPageSize)
+                        .setConsistencyLevel(consistency))
+            .thenApply(rows -> {
+                final ChunkPages pages = new ChunkPages(rows);
+                if (!pages.hasNext()) {
+                    throw new TrellisRuntimeException("Binary not found under IRI: " + id.getIRIString());
+                }
+                return new SequenceInputStream(transform(pages,
+                                row -> content(id, row.getInt("chunkIndex"), row, generation)));
+            });
     }
 
     //@formatter:off
@@ -59,82 +183,159 @@ public abstract class BinaryReadQuery extends BinaryQuery {
      *         guaranteed to skip as many bytes as asked.
      */
     protected InputStream retrieve(final IRI id, final BoundStatement statement) {
-        return stream(executeSyncRead(statement).spliterator(), false)
+        final long generation = cache.generation(id);
+        final int[] indexes = stream(executeSyncRead(statement).spliterator(), false)
                     .mapToInt(r -> r.getInt("chunkIndex"))
+                    .toArray();
+        final List<BoundStatement> chunks = IntStream.of(indexes)
                     .mapToObj(chunkIndex -> readChunkStatement.bind()
                                         .setInt("chunkIndex", chunkIndex)
                                         .set("identifier", id, IRI.class))
-                    .<InputStream>map(s -> new LazyChunkInputStream(session, s))
-                    .reduce(SequenceInputStream::new) // chunks now in one large stream
-                    .orElseThrow(() -> new TrellisRuntimeException("Binary not found under IRI: " + id.getIRIString()));
+                    .collect(toList());
+        return sequence(id, indexes, chunks, generation);
     }
     //@formatter:on
 
     /**
-     * An {@link InputStream} that sequentially streams two underlying streams. {@link #skip(long)} calls {@code skip}
-     * on the underlying streams before defaulting to using {@link IOUtils#skip(InputStream, long)}, and
-     * {@link #read(byte[], int, int)} also calls {@code read(byte[], int, int)} on the underlying streams. This is
-     * useful in particular with {@link ByteArrayInputStream}s, which have very fast
-     * {@link ByteArrayInputStream#skip(long)} and {@link ByteArrayInputStream#read(byte[], int, int)} implementations.
+     * @param id an {@link IRI} for a binary
+     * @param hashes the hashes of the chunks to read, in order, as recorded when the binary was stored by the hash of
+     *        its content
+     * @param firstIndex the chunk index of the first of {@code hashes}
+     * @return An {@link InputStream} of bytes as requested. The {@code skip} method of this {@code InputStream} is
+     *         guaranteed to skip as many bytes as asked.
+     */
+    protected InputStream retrieve(final IRI id, final List<ByteBuffer> hashes, final int firstIndex) {
+        if (readHashedChunkStatement == null) {
+            throw new TrellisRuntimeException("Binary under IRI " + id.getIRIString() + " is stored by hash, but "
+                            + CONFIG_CASSANDRA_BINARY_DEDUP + " is not enabled!");
+        }
+        final long generation = cache.generation(id);
+        final int[] indexes = IntStream.range(firstIndex, firstIndex + hashes.size()).toArray();
+        return sequence(id, indexes, hashes.stream()
+                        .map(hash -> readHashedChunkStatement.bind().setByteBuffer("hash", hash))
+                        .collect(toList()), generation);
+    }
+
+    //@formatter:off
+    private InputStream sequence(final IRI id, final int[] indexes, final List<BoundStatement> chunks,
+                    final long generation) {
+        if (chunks.isEmpty()) throw new TrellisRuntimeException("Binary not found under IRI: " + id.getIRIString());
+        final BiFunction<Integer, Row, InputStream> content = (i, row) -> content(id, indexes[i], row, generation);
+        final IntFunction<InputStream> fetch = readAheadChunks > 0
+                    ? new ChunkReadAhead(session, chunks, readAheadChunks, readAheadBudget, content)::chunk
+                    : i -> new LazyChunkInputStream(session, chunks.get(i), row -> content.apply(i, row));
+        final IntFunction<InputStream> chunk = cache.isEnabled() ? i -> {
+            final InputStream cached = cache.get(id, indexes[i]);
+            return cached != null ? cached : fetch.apply(i);
+        } : fetch;
+        return new SequenceInputStream(chunk, chunks.size()); // chunks now in one large stream
+    }
+    //@formatter:on
+
+    private InputStream content(final IRI id, final int chunkIndex, final Row row, final long generation) {
+        final String compression = row.getColumnDefinitions().contains(COMPRESSION) ? row.getString(COMPRESSION) : null;
+        // decompresses the chunk, keeping it as stored in the cache if that is enabled
+        return cache.put(id, chunkIndex, row.get("chunk", InputStream.class), compression, generation);
+    }
+
+    /**
+     * An {@link InputStream} that sequentially streams a series of underlying streams, opening each only when the
+     * previous one is exhausted. {@link #skip(long)} calls {@code skip} on the underlying streams before defaulting to
+     * using {@link IOUtils#skip(InputStream, long)}, and {@link #read(byte[], int, int)} and
+     * {@link #transferTo(OutputStream)} also delegate to the underlying streams. This is useful in particular with
+     * {@link ByteArrayInputStream}s, which have very fast {@link ByteArrayInputStream#skip(long)} and
+     * {@link ByteArrayInputStream#read(byte[], int, int)} implementations.
      *
+     * <p>Moving from one stream to the next is iterative, so neither the cost of a read nor the depth of the stack
+     * grows with the number of streams.
      */
     static class SequenceInputStream extends InputStream {
 
-        private final InputStream s1;
-        private final InputStream s2;
+        private final Iterator<InputStream> streams;
 
         /**
-         * Changes from {@link #s1} to {@link #s2} to {@code null} via {@link #next()}.
+         * Changes from one stream to the next, and finally to {@code null}, via {@link #next()}.
          */
         private InputStream current;
 
-        public SequenceInputStream(final InputStream s1, final InputStream s2) {
-            this.current = (this.s1 = s1);
-            this.s2 = s2;
+        /**
+         * @param streams the streams to read, in order
+         */
+        SequenceInputStream(final InputStream... streams) {
+            this(i -> streams[i], streams.length);
+        }
+
+        /**
+         * @param streams opens the stream at an index
+         * @param count the number of streams
+         */
+        SequenceInputStream(final IntFunction<InputStream> streams, final int count) {
+            this(IntStream.range(0, count).mapToObj(streams).iterator());
+        }
+
+        /**
+         * @param streams the streams to read, each opened only when it is reached
+         */
+        SequenceInputStream(final Iterator<InputStream> streams) {
+            this.streams = streams;
+            this.current = streams.hasNext() ? streams.next() : null;
         }
 
         @Override
         public long skip(final long n) throws IOException {
-            if (current == null || n <= 0) return 0;
             long toSkip = n;
-            toSkip -= current.skip(toSkip);
-            if (toSkip > 0) { // we ran out of bytes to skip from current
-                toSkip -= IOUtils.skip(current, toSkip); // read them instead
-                if (toSkip > 0) {
-                    next();
-                    toSkip -= skip(toSkip);
+            while (toSkip > 0 && current != null) {
+                toSkip -= current.skip(toSkip);
+                if (toSkip > 0) { // we ran out of bytes to skip from current
+                    toSkip -= IOUtils.skip(current, toSkip); // read them instead
+                    if (toSkip > 0) next();
                 }
             }
-            return n - toSkip;
+            return n > 0 ? n - toSkip : 0;
         }
 
         @Override
         public int read() throws IOException {
-            if (current == null) return -1;
-            final int take = current.read();
-            if (take == -1) {
+            while (current != null) {
+                final int take = current.read();
+                if (take != -1) return take;
                 next();
-                return read();
             }
-            return take;
+            return -1;
         }
 
         @Override
         public int read(final byte[] b, final int offset, final int length) throws IOException {
             if (offset < 0 || length < 0 || length > b.length - offset) throw new IndexOutOfBoundsException();
             if (length == 0) return 0;
-            if (current == null) return -1;
-            final int read = current.read(b, offset, length);
-            if (read <= 0) { // we couldn't get any bytes from current
+            while (current != null) {
+                final int read = current.read(b, offset, length);
+                if (read > 0) return read;
+                next(); // we couldn't get any bytes from current
+            }
+            return -1;
+        }
+
+        @Override
+        public long transferTo(final OutputStream out) throws IOException {
+            long transferred = 0;
+            while (current != null) {
+                transferred += current.transferTo(out);
                 next();
-                return read(b, offset, length);
             }
-            return read;
+            return transferred;
+        }
+
+        @Override
+        public void close() throws IOException {
+            final InputStream closing = current;
+            current = null;
+            if (closing != null) closing.close();
         }
 
         private void next() throws IOException {
-            if (current != null) current.close();
-            current = current == s1 ? s2 : null;
+            current.close();
+            current = streams.hasNext() ? streams.next() : null;
         }
     }
 }
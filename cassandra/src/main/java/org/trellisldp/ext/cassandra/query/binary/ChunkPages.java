@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Iterates over the rows of a paged query for the chunks of one binary. The next page is requested as soon as the
+ * reader reaches the current one, so that it is usually in memory by the time the reader reaches it in turn, while
+ * no more than two pages of chunks are held at once.
+ *
+ * <p>Not thread-safe!
+ */
+final class ChunkPages implements Iterator<Row> {
+
+    private Iterator<Row> rows;
+
+    private CompletableFuture<AsyncResultSet> nextPage;
+
+    /**
+     * @param firstPage the first page of results
+     */
+    ChunkPages(final AsyncResultSet firstPage) {
+        turnTo(firstPage);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!rows.hasNext() && nextPage != null) turnTo(await(nextPage));
+        return rows.hasNext();
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return rows.next();
+    }
+
+    private void turnTo(final AsyncResultSet page) {
+        this.rows = page.currentPage().iterator();
+        this.nextPage = page.hasMorePages() ? page.fetchNextPage().toCompletableFuture() : null;
+    }
+
+    private static AsyncResultSet await(final CompletableFuture<AsyncResultSet> page) {
+        try {
+            return page.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+}
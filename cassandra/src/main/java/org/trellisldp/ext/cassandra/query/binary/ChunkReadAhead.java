@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import static java.util.Objects.requireNonNull;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+
+import org.trellisldp.ext.cassandra.LazyFilterInputStream;
+
+/**
+ * Fetches the chunks of one binary stream ahead of the reader. When a chunk is first read, queries for up to
+ * {@code maxChunks} following chunks are issued asynchronously, so that they are usually in memory by the time the
+ * reader reaches them. The window is also limited so that the chunks fetched ahead fit within {@code budget} bytes,
+ * judged by the size of the first chunk read.
+ *
+ * <p>Not thread-safe!
+ */
+final class ChunkReadAhead {
+
+    private final CqlSession session;
+
+    private final List<BoundStatement> chunks;
+
+    private final CompletableFuture<?>[] pending;
+
+    private final int maxChunks;
+
+    private final long budget;
+
+    private final BiFunction<Integer, Row, InputStream> content;
+
+    /**
+     * How many chunks to fetch ahead, or -1 until a chunk has been read and its size is known.
+     */
+    private int window = -1;
+
+    /**
+     * The number of chunks for which a query has been issued.
+     */
+    private int issued;
+
+    /**
+     * @param session the Cassandra session
+     * @param chunks queries for each chunk of the binary, in order
+     * @param maxChunks the largest number of chunks to fetch ahead
+     * @param budget the largest number of bytes to fetch ahead
+     */
+    ChunkReadAhead(final CqlSession session, final List<BoundStatement> chunks, final int maxChunks,
+            final long budget) {
+        this(session, chunks, maxChunks, budget, (index, row) -> row.get("chunk", InputStream.class));
+    }
+
+    /**
+     * @param session the Cassandra session
+     * @param chunks queries for each chunk of the binary, in order
+     * @param maxChunks the largest number of chunks to fetch ahead
+     * @param budget the largest number of bytes to fetch ahead, as stored
+     * @param content reads the content of a chunk from its position in {@code chunks} and the row fetched for it
+     */
+    ChunkReadAhead(final CqlSession session, final List<BoundStatement> chunks, final int maxChunks,
+            final long budget, final BiFunction<Integer, Row, InputStream> content) {
+        this.session = session;
+        this.chunks = chunks;
+        this.pending = new CompletableFuture<?>[chunks.size()];
+        this.maxChunks = maxChunks;
+        this.budget = budget;
+        this.content = content;
+    }
+
+    /**
+     * @param index the index of a chunk
+     * @return a stream of that chunk, which is fetched, along with those that follow it, when first read
+     */
+    InputStream chunk(final int index) {
+        return new LazyFilterInputStream() {
+            @Override
+            protected InputStream initialize() {
+                return fetch(index);
+            }
+        };
+    }
+
+    private InputStream fetch(final int index) {
+        issueThrough(index + Math.max(window, 0));
+        final Row row = awaitChunk(index);
+        if (window < 0) {
+            // judged by the stored size, since that is what chunks fetched ahead hold in memory
+            window = windowFor(row.get("chunk", InputStream.class));
+            issueThrough(index + window);
+        }
+        return content.apply(index, row);
+    }
+
+    private int windowFor(final InputStream chunk) {
+        try {
+            final int size = chunk.available();
+            return size > 0 ? (int) Math.min(maxChunks, budget / size) : maxChunks;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void issueThrough(final int last) {
+        for (final int end = Math.min(last, chunks.size() - 1); issued <= end; issued++) {
+            pending[issued] = session.executeAsync(chunks.get(issued)).toCompletableFuture();
+        }
+    }
+
+    private Row awaitChunk(final int index) {
+        final CompletableFuture<?> result = pending[index];
+        // release the chunk so that it can be collected once the reader has moved past it
+        pending[index] = null;
+        try {
+            return requireNonNull(((AsyncResultSet) result.join()).one(), "Missing binary chunk!");
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import static com.datastax.oss.driver.api.core.DefaultConsistencyLevel.SERIAL;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.trellisldp.ext.cassandra.BinaryWriteConsistency;
+
+/**
+ * Stores binary chunks by the hash of their content, so that a chunk shared by several binaries is stored once.
+ * Each chunk has a reference count, and is deleted when the last binary that refers to it is purged.
+ *
+ * <p>Reference counts are changed only by lightweight transactions, each conditional on the count it replaces, so
+ * that concurrent changes on different nodes are serialized rather than read back from a possibly stale replica. A
+ * chunk is referenced before it is written: if another binary already refers to it and it has been written, it is not
+ * written again. The release of its last reference marks the count as zero, with the time of that release. A chunk so
+ * marked cannot be referenced again until it has been deleted, with that time as the timestamp of the deletion, and
+ * its count removed; any node that finds the mark finishes the deletion. A chunk written afresh after that must have
+ * been referenced after the release, so it outlives the deletion unless the clocks of the nodes involved disagree by
+ * more than the time between the two.
+ */
+@ApplicationScoped
+public class ChunkStore extends BinaryQuery {
+
+    private static final Logger LOGGER = getLogger(ChunkStore.class);
+
+    /** The number of times a change to a reference count is tried while other changes to it keep winning. */
+    private static final int MAX_ATTEMPTS = 32;
+
+    private final CompletionStage<PreparedStatement> countStmtAsync;
+
+    private final CompletionStage<PreparedStatement> createStmtAsync;
+
+    private final CompletionStage<PreparedStatement> swapStmtAsync;
+
+    private final CompletionStage<PreparedStatement> markStmtAsync;
+
+    private final CompletionStage<PreparedStatement> removeStmtAsync;
+
+    private final CompletionStage<PreparedStatement> deleteStmtAsync;
+
+    private final CompletionStage<PreparedStatement> existsStmtAsync;
+
+    /**
+     * For use with RESTeasy and CDI proxies.
+     *
+     * @apiNote This construtor is used by CDI runtimes that require a public, no-argument constructor.
+     *          It should not be invoked directly in user code.
+     */
+    public ChunkStore() {
+        super();
+        this.countStmtAsync = null;
+        this.createStmtAsync = null;
+        this.swapStmtAsync = null;
+        this.markStmtAsync = null;
+        this.removeStmtAsync = null;
+        this.deleteStmtAsync = null;
+        this.existsStmtAsync = null;
+    }
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     */
+    @Inject
+    public ChunkStore(final CqlSession session, @BinaryWriteConsistency final ConsistencyLevel consistency) {
+        this(session, consistency, dedupConfigured());
+    }
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param enabled whether chunks are stored by the hash of their content
+     */
+    public ChunkStore(final CqlSession session, final ConsistencyLevel consistency, final boolean enabled) {
+        // compression is always written, so that a chunk written again without it is never read as compressed
+        super(enabled ? session : null, "INSERT INTO " + CHUNKSTORE_TABLENAME
+                + " (hash, chunk, compression) VALUES (:hash, :chunk, :compression)", consistency);
+        final boolean prepare = session != null && enabled;
+        this.countStmtAsync = prepare ? session.prepareAsync("SELECT refs, released FROM " + CHUNKREFS_TABLENAME
+                + " WHERE hash = :hash") : null;
+        this.createStmtAsync = prepare ? session.prepareAsync("INSERT INTO " + CHUNKREFS_TABLENAME
+                + " (hash, refs) VALUES (:hash, 1) IF NOT EXISTS") : null;
+        this.swapStmtAsync = prepare ? session.prepareAsync("UPDATE " + CHUNKREFS_TABLENAME
+                + " SET refs = :refs WHERE hash = :hash IF refs = :expected") : null;
+        this.markStmtAsync = prepare ? session.prepareAsync("UPDATE " + CHUNKREFS_TABLENAME
+                + " SET refs = 0, released = :released WHERE hash = :hash IF refs = :expected") : null;
+        this.removeStmtAsync = prepare ? session.prepareAsync("DELETE FROM " + CHUNKREFS_TABLENAME
+                + " WHERE hash = :hash IF refs = 0") : null;
+        this.deleteStmtAsync = prepare ? session.prepareAsync("DELETE FROM " + CHUNKSTORE_TABLENAME
+                + " USING TIMESTAMP :timestamp WHERE hash = :hash") : null;
+        this.existsStmtAsync = prepare ? session.prepareAsync("SELECT hash FROM " + CHUNKSTORE_TABLENAME
+                + " WHERE hash = :hash") : null;
+    }
+
+    /**
+     * @return whether chunks are stored by the hash of their content
+     */
+    public boolean isEnabled() {
+        return countStmtAsync != null;
+    }
+
+    /**
+     * Reference a chunk, writing it if no other binary refers to it. If writing the chunk fails, the reference is
+     * released again.
+     *
+     * @param hash the hash of the content of the chunk
+     * @param chunk the bytes of the chunk, which must not be changed until the returned stage has completed
+     * @return whether and when the chunk has been stored
+     */
+    public CompletionStage<Void> put(final ByteBuffer hash, final ByteBuffer chunk) {
+        return put(hash, chunk, null);
+    }
+
+    /**
+     * Reference a chunk, writing it if no other binary refers to it. If writing the chunk fails, the reference is
+     * released again.
+     *
+     * @param hash the hash of the content of the chunk, before it was compressed
+     * @param chunk the stored bytes of the chunk, which must not be changed until the returned stage has completed
+     * @param compression how the chunk was compressed, or {@code null}
+     * @return whether and when the chunk has been stored
+     */
+    public CompletionStage<Void> put(final ByteBuffer hash, final ByteBuffer chunk, final String compression) {
+        // if referencing fails, it may still have been counted, so it is not released: the chunk may leak, but it
+        // cannot be deleted while another binary refers to it
+        return reference(hash, 1).thenCompose(refs -> (refs > 1 ? exists(hash) : completedFuture(false))
+                .thenCompose(stored -> stored ? completedFuture((Void) null) : write(hash, chunk, compression))
+                .handle((r, e) -> e == null ? completedFuture((Void) null) : releaseAfter(hash, e))
+                .thenCompose(identity()));
+    }
+
+    /**
+     * Release the reference taken by a failed {@link #put}, then fail with the error that ended it.
+     */
+    private CompletionStage<Void> releaseAfter(final ByteBuffer hash, final Throwable error) {
+        return release(hash).handle((r, e) -> {
+            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+        });
+    }
+
+    /**
+     * Release a reference to a chunk, deleting the chunk if no binary refers to it any longer.
+     *
+     * @param hash the hash of the content of the chunk
+     * @return whether and when the reference has been released
+     */
+    public CompletionStage<Void> release(final ByteBuffer hash) {
+        return release(hash, 1L, 1);
+    }
+
+    /**
+     * @param hashes the hashes of chunks to release, with repeats for chunks referenced more than once
+     * @return whether and when every reference has been released
+     */
+    public CompletionStage<Void> releaseAll(final List<ByteBuffer> hashes) {
+        // a chunk repeated within a binary is released once, by the number of its repeats, rather than contended for
+        return allOf(hashes.stream().collect(groupingBy(identity(), LinkedHashMap::new, counting())).entrySet().stream()
+                .map(refs -> release(refs.getKey(), refs.getValue(), 1).toCompletableFuture())
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * @return the number of references to the chunk once this one has been taken
+     */
+    private CompletionStage<Long> reference(final ByteBuffer hash, final int attempt) {
+        if (attempt > MAX_ATTEMPTS) return failedFuture(contended());
+        return references(hash).thenCompose(row -> {
+            if (row == null) {
+                return apply(createStmtAsync.thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash)))
+                    .thenCompose(created -> created ? completedFuture(1L) : reference(hash, attempt + 1));
+            }
+            final long refs = row.getLong("refs");
+            // a chunk that has lost its last reference must be deleted before it can be referenced afresh
+            if (refs < 1) return remove(hash, row.getLong("released")).thenCompose(r -> reference(hash, attempt + 1));
+            return swap(hash, refs, refs + 1)
+                .thenCompose(swapped -> swapped ? completedFuture(refs + 1) : reference(hash, attempt + 1));
+        });
+    }
+
+    private CompletionStage<Void> release(final ByteBuffer hash, final long count, final int attempt) {
+        if (attempt > MAX_ATTEMPTS) return failedFuture(contended());
+        return references(hash).thenCompose(row -> {
+            final long refs = row == null ? 0L : row.getLong("refs");
+            if (refs < count) LOGGER.warn("Released {} references to a chunk with {}", count, refs);
+            if (row == null) return completedFuture(null);
+            if (refs < 1) return remove(hash, row.getLong("released"));
+            if (refs > count) {
+                return swap(hash, refs, refs - count)
+                    .thenCompose(swapped -> swapped ? completedFuture(null) : release(hash, count, attempt + 1));
+            }
+            final long released = MILLISECONDS.toMicros(System.currentTimeMillis());
+            return apply(markStmtAsync.thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash)
+                        .setLong("released", released).setLong("expected", refs)))
+                .thenCompose(marked -> marked ? remove(hash, released) : release(hash, count, attempt + 1));
+        });
+    }
+
+    /**
+     * Delete a chunk that has lost its last reference, then its reference count. Any number of nodes may do this at
+     * once, since each deletes the chunk with the same timestamp.
+     *
+     * @param released the time, in microseconds, at which the last reference was released
+     */
+    private CompletionStage<Void> remove(final ByteBuffer hash, final long released) {
+        return deleteStmtAsync.thenApply(stmt -> stmt.bind().setLong("timestamp", released)
+                .setByteBuffer("hash", hash).setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenAccept(r -> LOGGER.debug("Deleted unreferenced chunk"))
+            .thenCompose(r -> apply(removeStmtAsync.thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash))))
+            .thenAccept(removed -> LOGGER.trace("Removed references to deleted chunk"));
+    }
+
+    private CompletionStage<Boolean> swap(final ByteBuffer hash, final long expected, final long refs) {
+        return apply(swapStmtAsync.thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash).setLong("refs", refs)
+                    .setLong("expected", expected)));
+    }
+
+    /**
+     * @return whether a conditional change to a reference count was applied
+     */
+    private CompletionStage<Boolean> apply(final CompletionStage<BoundStatement> statement) {
+        return statement.thenApply(stmt -> stmt.setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenApply(AsyncResultSet::wasApplied);
+    }
+
+    /**
+     * @return the reference count of a chunk, read serially so that it reflects every change already applied
+     */
+    private CompletionStage<Row> references(final ByteBuffer hash) {
+        return countStmtAsync.thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash).setConsistencyLevel(SERIAL))
+            .thenCompose(session::executeAsync)
+            .thenApply(AsyncResultSet::one);
+    }
+
+    private static IllegalStateException contended() {
+        return new IllegalStateException("Gave up changing references to a chunk after " + MAX_ATTEMPTS
+                + " conflicting changes!");
+    }
+
+    private CompletionStage<Boolean> exists(final ByteBuffer hash) {
+        return existsStmtAsync.thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash)
+                .setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenApply(rows -> rows.one() != null);
+    }
+
+    private CompletionStage<Void> write(final ByteBuffer hash, final ByteBuffer chunk, final String compression) {
+        return preparedStatementAsync().thenApply(stmt -> stmt.bind().setByteBuffer("hash", hash)
+                .setByteBuffer("chunk", chunk).setString(COMPRESSION, compression).setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenAccept(r -> LOGGER.debug("Stored chunk with {} compression", compression));
+    }
+}
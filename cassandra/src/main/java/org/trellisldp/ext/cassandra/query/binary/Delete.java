@@ -19,6 +19,10 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 
 import java.util.concurrent.CompletionStage;
 
@@ -38,6 +42,8 @@ public class Delete extends BinaryQuery {
 
     private static final Logger LOGGER = getLogger(Delete.class);
 
+    private final CompletionStage<PreparedStatement> metadataStmtAsync;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -46,6 +52,7 @@ public class Delete extends BinaryQuery {
      */
     public Delete() {
         super();
+        this.metadataStmtAsync = null;
     }
 
     /**
@@ -54,7 +61,19 @@ public class Delete extends BinaryQuery {
      */
     @Inject
     public Delete(final CqlSession session, @BinaryWriteConsistency final ConsistencyLevel consistency) {
+        this(session, consistency, metadataConfigured());
+    }
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param metadata whether binary metadata is recorded, and so must also be deleted
+     */
+    public Delete(final CqlSession session, final ConsistencyLevel consistency, final boolean metadata) {
         super(session, "DELETE FROM " + BINARY_TABLENAME + " WHERE identifier = :identifier;", consistency);
+        this.metadataStmtAsync = session != null && metadata
+            ? session.prepareAsync("DELETE FROM " + METADATA_TABLENAME + " WHERE identifier = :identifier;")
+            : null;
     }
 
     /**
@@ -62,8 +81,16 @@ public class Delete extends BinaryQuery {
      * @return whether and when it has been deleted
      */
     public CompletionStage<Void> execute(final IRI id) {
-        return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class))
+        final CompletionStage<BoundStatement> chunks = preparedStatementAsync()
+            .thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class));
+        if (metadataStmtAsync == null) {
+            return chunks.thenCompose(session::executeAsync)
+                .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+        }
+        return chunks.thenCombine(metadataStmtAsync, (stmt, metadata) ->
+                BatchStatement.newInstance(DefaultBatchType.LOGGED, stmt,
+                    metadata.bind().set("identifier", id, IRI.class)))
             .thenCompose(session::executeAsync)
-            .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+            .thenAccept(r -> LOGGER.debug("Executed query: {} with metadata", queryString));
     }
 }
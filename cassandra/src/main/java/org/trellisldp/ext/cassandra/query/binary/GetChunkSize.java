@@ -16,10 +16,12 @@
 package org.trellisldp.ext.cassandra.query.binary;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.util.concurrent.CompletionStage;
@@ -33,10 +35,16 @@ import org.trellisldp.ext.cassandra.BinaryReadConsistency;
 /**
  * A query to retrieve the chunk size metadata for a binary.
  *
+ * <p>If binary metadata is recorded, this is read from the {@code binarymeta} table, along with the size, chunk count
+ * and digest of the binary, the binary itself if it is small enough to have been stored inline, and the hashes of its
+ * chunks if they were stored by the hash of their content. Binaries written before that was recorded fall back to
+ * the chunk size in {@code binarydata}.
  */
 @ApplicationScoped
 public class GetChunkSize extends BinaryQuery {
 
+    private final CompletionStage<PreparedStatement> metadataStmtAsync;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -45,6 +53,7 @@ public class GetChunkSize extends BinaryQuery {
      */
     public GetChunkSize() {
         super();
+        this.metadataStmtAsync = null;
     }
 
     /**
@@ -53,15 +62,40 @@ public class GetChunkSize extends BinaryQuery {
      */
     @Inject
     public GetChunkSize(final CqlSession session, @BinaryReadConsistency final ConsistencyLevel consistency) {
+        this(session, consistency, metadataConfigured());
+    }
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param metadata whether binary metadata is recorded
+     */
+    public GetChunkSize(final CqlSession session, final ConsistencyLevel consistency, final boolean metadata) {
         super(session, "SELECT chunkSize FROM " + BINARY_TABLENAME + " WHERE identifier = :identifier LIMIT 1;",
                         consistency);
+        this.metadataStmtAsync = session != null && metadata
+            ? session.prepareAsync("SELECT size, chunkSize, chunkCount, digestAlgorithm, digest, inline, chunkHashes"
+                    + " FROM " + METADATA_TABLENAME + " WHERE identifier = :identifier;")
+            : null;
     }
 
     /**
      * @param id the {@link IRI} of the binary to retrieve
-     * @return a {@link Row} with the chunk size for this binary
+     * @return a {@link Row} with the chunk size for this binary and, if they were recorded, its {@code size},
+     *         {@code chunkCount}, {@code digestAlgorithm}, {@code digest}, if it was stored inline, its bytes as
+     *         {@code inline} and, if its chunks were stored by the hash of their content, their hashes as
+     *         {@code chunkHashes}
      */
     public CompletionStage<Row> execute(final IRI id) {
+        if (metadataStmtAsync == null) return executeChunkSize(id);
+        return metadataStmtAsync.thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                        .setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenApply(AsyncResultSet::one)
+            .thenCompose(row -> row != null ? completedFuture(row) : executeChunkSize(id));
+    }
+
+    private CompletionStage<Row> executeChunkSize(final IRI id) {
         return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class))
             .thenCompose(session::executeAsync)
             .thenApply(AsyncResultSet::one)
@@ -19,8 +19,12 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
@@ -39,6 +43,12 @@ public class Insert extends BinaryQuery implements Executor {
 
     private static final Logger LOGGER = getLogger(Insert.class);
 
+    private final CompletionStage<PreparedStatement> metadataStmtAsync;
+
+    private final boolean compression;
+
+    private final boolean compressionColumn;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -47,6 +57,9 @@ public class Insert extends BinaryQuery implements Executor {
      */
     public Insert() {
         super();
+        this.metadataStmtAsync = null;
+        this.compression = false;
+        this.compressionColumn = false;
     }
 
     /**
@@ -55,8 +68,58 @@ public class Insert extends BinaryQuery implements Executor {
      */
     @Inject
     public Insert(final CqlSession session, @BinaryWriteConsistency final ConsistencyLevel consistency) {
-        super(session, "INSERT INTO " + BINARY_TABLENAME + " (identifier, chunkSize, chunkIndex, chunk) VALUES "
+        this(session, consistency, metadataConfigured(), compressionConfigured());
+    }
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param metadata whether to record binary metadata
+     */
+    public Insert(final CqlSession session, final ConsistencyLevel consistency, final boolean metadata) {
+        this(session, consistency, metadata, false);
+    }
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param metadata whether to record binary metadata
+     * @param compression whether the compression of each chunk may be recorded with it
+     */
+    public Insert(final CqlSession session, final ConsistencyLevel consistency, final boolean metadata,
+            final boolean compression) {
+        super(session, compressionColumn(session, compression)
+                ? "INSERT INTO " + BINARY_TABLENAME + " (identifier, chunkSize, chunkIndex, chunk, compression) VALUES "
+                        + "(:identifier, :chunkSize, :chunkIndex, :chunk, :compression)"
+                : "INSERT INTO " + BINARY_TABLENAME + " (identifier, chunkSize, chunkIndex, chunk) VALUES "
                         + "(:identifier, :chunkSize, :chunkIndex, :chunk)", consistency);
+        this.compression = session != null && compression;
+        this.compressionColumn = compressionColumn(session, compression);
+        // every column is written, so that nothing is left of the way a binary replaced under the same IRI was stored
+        this.metadataStmtAsync = session != null && metadata
+            ? session.prepareAsync("INSERT INTO " + METADATA_TABLENAME
+                    + " (identifier, size, chunkSize, chunkCount, digestAlgorithm, digest, inline, chunkHashes) VALUES "
+                    + "(:identifier, :size, :chunkSize, :chunkCount, :digestAlgorithm, :digest, :inline, :chunkHashes)")
+            : null;
+    }
+
+    /**
+     * A chunk may replace a compressed one under the same IRI and index, so wherever {@code binarydata} has a
+     * {@value #COMPRESSION} column, every chunk is written with it, as {@code null} if the chunk is not compressed.
+     */
+    private static boolean compressionColumn(final CqlSession session, final boolean compression) {
+        return compression || hasColumn(session, BINARY_TABLENAME, COMPRESSION);
+    }
+
+    private BoundStatement uncompressed(final BoundStatement statement) {
+        return compressionColumn ? statement.setToNull(COMPRESSION) : statement;
+    }
+
+    /**
+     * @return whether this query records binary metadata
+     */
+    public boolean recordsMetadata() {
+        return metadataStmtAsync != null;
     }
 
     /**
@@ -72,10 +135,127 @@ public class Insert extends BinaryQuery implements Executor {
                         .setInt("chunkSize", chunkSize).setInt("chunkIndex", chunkIndex)
                         .set("chunk", chunk, InputStream.class)
                         .setConsistencyLevel(consistency))
+            .thenApply(this::uncompressed)
+            .thenCompose(session::executeAsync)
+            .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+    }
+
+    /**
+     * @param id the {@link IRI} of this binary
+     * @param chunkSize size of chunk to use for this binary
+     * @param chunkIndex which chunk this is
+     * @param chunk the bytes of this chunk, which are handed to the driver without copying and so must not be
+     *        changed until the returned stage has completed
+     * @return whether and when it has been inserted
+     */
+    public CompletionStage<Void> execute(final IRI id, final int chunkSize, final int chunkIndex,
+            final ByteBuffer chunk) {
+        return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                        .setInt("chunkSize", chunkSize).setInt("chunkIndex", chunkIndex)
+                        .setByteBuffer("chunk", chunk)
+                        .setConsistencyLevel(consistency))
+            .thenApply(this::uncompressed)
             .thenCompose(session::executeAsync)
             .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
     }
 
+    /**
+     * @param id the {@link IRI} of this binary
+     * @param chunkSize size of chunk to use for this binary
+     * @param chunkIndex which chunk this is
+     * @param chunk the compressed bytes of this chunk, which are handed to the driver without copying and so must
+     *        not be changed until the returned stage has completed
+     * @param compression how the chunk was compressed
+     * @return whether and when it has been inserted
+     */
+    public CompletionStage<Void> execute(final IRI id, final int chunkSize, final int chunkIndex,
+            final ByteBuffer chunk, final String compression) {
+        if (!this.compression) throw new IllegalStateException("Chunk compression is not recorded!");
+        return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                        .setInt("chunkSize", chunkSize).setInt("chunkIndex", chunkIndex)
+                        .setByteBuffer("chunk", chunk).setString(COMPRESSION, compression)
+                        .setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenAccept(r -> LOGGER.debug("Executed query: {} with {} compression", queryString, compression));
+    }
+
+    /**
+     * @return whether this query can record the compression of each chunk
+     */
+    public boolean recordsCompression() {
+        return compression;
+    }
+
+    /**
+     * Record the metadata of a binary, once all of its chunks have been inserted.
+     *
+     * @param id the {@link IRI} of this binary
+     * @param size the number of bytes in this binary
+     * @param chunkSize size of chunk used for this binary
+     * @param chunkCount the number of chunks in this binary
+     * @param digestAlgorithm the algorithm of {@code digest}, or {@code null}
+     * @param digest a digest of the bytes of this binary, or {@code null}
+     * @return whether and when it has been inserted
+     */
+    public CompletionStage<Void> executeMetadata(final IRI id, final long size, final int chunkSize,
+            final int chunkCount, final String digestAlgorithm, final byte[] digest) {
+        return executeMetadata(id, size, chunkSize, chunkCount, digestAlgorithm, digest, null);
+    }
+
+    /**
+     * Record the metadata of a binary, once all of its chunks have been inserted.
+     *
+     * @param id the {@link IRI} of this binary
+     * @param size the number of bytes in this binary
+     * @param chunkSize size of chunk used for this binary
+     * @param chunkCount the number of chunks in this binary
+     * @param digestAlgorithm the algorithm of {@code digest}, or {@code null}
+     * @param digest a digest of the bytes of this binary, or {@code null}
+     * @param chunkHashes the hashes of the chunks of this binary, in order, if they were stored by the hash of their
+     *        content, or {@code null}
+     * @return whether and when it has been inserted
+     */
+    public CompletionStage<Void> executeMetadata(final IRI id, final long size, final int chunkSize,
+            final int chunkCount, final String digestAlgorithm, final byte[] digest,
+            final List<ByteBuffer> chunkHashes) {
+        if (metadataStmtAsync == null) throw new IllegalStateException("Binary metadata is not recorded!");
+        return metadataStmtAsync.thenApply(stmt -> {
+            final BoundStatement bound = stmt.bind().set("identifier", id, IRI.class)
+                        .setLong("size", size).setInt("chunkSize", chunkSize).setInt("chunkCount", chunkCount)
+                        .setString("digestAlgorithm", digestAlgorithm)
+                        .setByteBuffer("digest", digest == null ? null : ByteBuffer.wrap(digest))
+                        .setToNull("inline")
+                        .setConsistencyLevel(consistency);
+            return chunkHashes == null ? bound.setToNull("chunkHashes")
+                : bound.setList("chunkHashes", chunkHashes, ByteBuffer.class);
+        })
+            .thenCompose(session::executeAsync)
+            .thenAccept(r -> LOGGER.debug("Recorded metadata for binary: {}", id));
+    }
+
+    /**
+     * Record a binary small enough to be stored inline, in its metadata row, instead of in chunks.
+     *
+     * @param id the {@link IRI} of this binary
+     * @param chunkSize size of chunk that would have been used for this binary
+     * @param content the bytes of this binary
+     * @param digestAlgorithm the algorithm of {@code digest}, or {@code null}
+     * @param digest a digest of the bytes of this binary, or {@code null}
+     * @return whether and when it has been inserted
+     */
+    public CompletionStage<Void> executeInline(final IRI id, final int chunkSize, final ByteBuffer content,
+            final String digestAlgorithm, final byte[] digest) {
+        if (metadataStmtAsync == null) throw new IllegalStateException("Binary metadata is not recorded!");
+        return metadataStmtAsync.thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                        .setLong("size", content.remaining()).setInt("chunkSize", chunkSize).setInt("chunkCount", 0)
+                        .setString("digestAlgorithm", digestAlgorithm)
+                        .setByteBuffer("digest", digest == null ? null : ByteBuffer.wrap(digest))
+                        .setByteBuffer("inline", content).setToNull("chunkHashes")
+                        .setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync)
+            .thenAccept(r -> LOGGER.debug("Recorded binary inline: {}", id));
+    }
+
     @Override
     public void execute(final Runnable command) {
         writeWorkers.execute(command);
@@ -20,6 +20,8 @@ import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.CompletionStage;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -51,7 +53,7 @@ public class Read extends BinaryReadQuery {
      */
     @Inject
     public Read(final CqlSession session, @BinaryReadConsistency final ConsistencyLevel consistency) {
-        super(session, "SELECT chunkIndex FROM " + BINARY_TABLENAME + " WHERE identifier = :identifier;", consistency);
+        super(session, " FROM " + BINARY_TABLENAME + " WHERE identifier = :identifier;", consistency);
     }
 
     /**
@@ -60,9 +62,23 @@ public class Read extends BinaryReadQuery {
      *         guaranteed to skip as many bytes as asked.
      *
      * @see BinaryReadQuery#retrieve(IRI, BoundStatement)
+     * @see BinaryReadQuery#stream(IRI, java.util.function.UnaryOperator)
      */
     public CompletionStage<InputStream> execute(final IRI id) {
+        if (streamsChunks()) return stream(id, stmt -> stmt.set("identifier", id, IRI.class));
         return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class))
             .thenApply(bound -> retrieve(id, bound));
     }
+
+    /**
+     * @param id the {@link IRI} for a binary
+     * @param hashes the hashes of the chunks of a binary stored by the hash of its content, in order
+     * @return An {@link InputStream} of bytes as requested. The {@code skip} method of this {@code InputStream} is
+     *         guaranteed to skip as many bytes as asked.
+     *
+     * @see BinaryReadQuery#retrieve(IRI, List, int)
+     */
+    public CompletionStage<InputStream> execute(final IRI id, final List<ByteBuffer> hashes) {
+        return preparedStatementAsync().thenApply(stmt -> retrieve(id, hashes, 0));
+    }
 }
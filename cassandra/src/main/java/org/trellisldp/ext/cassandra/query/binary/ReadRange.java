@@ -19,6 +19,8 @@ import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.CompletionStage;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -49,7 +51,7 @@ public class ReadRange extends BinaryReadQuery {
      */
     @Inject
     public ReadRange(final CqlSession session, @BinaryReadConsistency final ConsistencyLevel consistency) {
-        super(session, "SELECT chunkIndex FROM " + BINARY_TABLENAME
+        super(session, " FROM " + BINARY_TABLENAME
                         + " WHERE identifier = :identifier and chunkIndex >= :start and chunkIndex <= :end;",
                         consistency);
     }
@@ -62,10 +64,30 @@ public class ReadRange extends BinaryReadQuery {
      *         guaranteed to skip as many bytes as asked.
      *
      * @see BinaryReadQuery#retrieve(IRI, BoundStatement)
+     * @see BinaryReadQuery#stream(IRI, java.util.function.UnaryOperator)
      */
     public CompletionStage<InputStream> execute(final IRI id, final int first, final int last) {
+        if (streamsChunks()) {
+            return stream(id, stmt -> stmt.set("identifier", id, IRI.class).setInt("start", first).setInt("end", last));
+        }
         return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
                 .setInt("start", first).setInt("end", last))
             .thenApply(bound -> retrieve(id, bound));
     }
+
+    /**
+     * @param id the {@link IRI} of a binary to read
+     * @param hashes the hashes of the chunks of a binary stored by the hash of its content, in order
+     * @param first which chunk to begin reading on
+     * @param last which chunk to end reading on
+     * @return An {@link InputStream} of bytes as requested. The {@code skip} method of this {@code InputStream} is
+     *         guaranteed to skip as many bytes as asked.
+     *
+     * @see BinaryReadQuery#retrieve(IRI, List, int)
+     */
+    public CompletionStage<InputStream> execute(final IRI id, final List<ByteBuffer> hashes, final int first,
+            final int last) {
+        return preparedStatementAsync().thenApply(stmt -> retrieve(id,
+                    hashes.subList(Math.min(first, hashes.size()), (int) Math.min(last + 1L, hashes.size())), first));
+    }
 }
@@ -16,15 +16,23 @@
 package org.trellisldp.ext.cassandra.query.rdf;
 
 import static java.util.Collections.unmodifiableSet;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.stream.Collectors.toList;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -35,6 +43,7 @@ import org.apache.commons.rdf.api.Quad;
 import org.apache.commons.rdf.api.RDF;
 import org.trellisldp.api.RDFFactory;
 import org.trellisldp.ext.cassandra.AsyncResultSetUtils;
+import org.trellisldp.ext.cassandra.ContainmentIndex;
 import org.trellisldp.ext.cassandra.MutableReadConsistency;
 import org.trellisldp.vocabulary.LDP;
 
@@ -44,9 +53,19 @@ import org.trellisldp.vocabulary.LDP;
 @ApplicationScoped
 public class BasicContainment extends ResourceQuery {
 
+    /** The configuration key for the number of contained resources fetched at a time when streaming. */
+    public static final String CONFIG_CASSANDRA_CONTAINMENT_PAGE_SIZE = "trellis.cassandra.containment-page-size";
+
+    /** The default number of contained resources fetched at a time when streaming. */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
     private static final RDF rdfFactory = RDFFactory.getInstance();
     private static final Set<IRI> containerTypes;
 
+    private final int pageSize;
+
+    private final ContainmentIndex containmentIndex;
+
     static {
         final Set<IRI> types = new HashSet<>();
         types.add(LDP.Container);
@@ -64,6 +83,8 @@ public class BasicContainment extends ResourceQuery {
      */
     public BasicContainment() {
         super();
+        this.pageSize = DEFAULT_PAGE_SIZE;
+        this.containmentIndex = null;
     }
 
     /**
@@ -73,8 +94,36 @@ public class BasicContainment extends ResourceQuery {
      */
     @Inject
     public BasicContainment(final CqlSession session, @MutableReadConsistency final ConsistencyLevel consistency) {
-        super(session, "SELECT identifier AS contained, interactionModel AS type FROM " + BASIC_CONTAINMENT_TABLENAME
-                        + " WHERE container = :container ;", consistency);
+        this(session, consistency, getConfig().getOptionalValue(CONFIG_CASSANDRA_CONTAINMENT_PAGE_SIZE, Integer.class)
+                .orElse(DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * A class to query basic containment data, streaming it in pages of a given size.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param pageSize the number of contained resources to fetch at a time from {@link #stream(IRI)}
+     */
+    public BasicContainment(final CqlSession session, final ConsistencyLevel consistency, final int pageSize) {
+        this(session, consistency, pageSize, ContainmentIndex.configured());
+    }
+
+    /**
+     * A class to query basic containment data from a given index.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param pageSize the number of contained resources to fetch at a time from {@link #stream(IRI)}
+     * @param containmentIndex where containment is recorded
+     */
+    public BasicContainment(final CqlSession session, final ConsistencyLevel consistency, final int pageSize,
+            final ContainmentIndex containmentIndex) {
+        super(session, "SELECT identifier AS contained, interactionModel AS type FROM "
+                        + (containmentIndex.readsTable()
+                            ? CONTAINMENT_TABLENAME + " WHERE container = :container AND bucket = :bucket ;"
+                            : BASIC_CONTAINMENT_TABLENAME + " WHERE container = :container ;"), consistency);
+        if (pageSize < 1) throw new IllegalArgumentException("Containment page size < 1!");
+        this.pageSize = pageSize;
+        this.containmentIndex = containmentIndex;
     }
 
     /**
@@ -82,13 +131,58 @@ public class BasicContainment extends ResourceQuery {
      * @return a {@link ResultSet} of the resources contained in {@code id}
      */
     public CompletionStage<Stream<Quad>> execute(final IRI id) {
-        return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("container", id, IRI.class))
-            .thenCompose(session::executeAsync)
-            .thenApply(AsyncResultSetUtils::stream)
+        return rows(id, UnaryOperator.identity())
             .thenApply(rows -> rows.map(this::getContained))
             .thenApply(rows -> rows.map(con -> containmentQuad(id, con)));
     }
 
+    /**
+     * Stream the resources contained in a container without holding them all in memory. This blocks until the first
+     * page of results is available; each later page is fetched, using the driver's paging state, only when the
+     * stream has consumed the one before it.
+     *
+     * @param id the {@link IRI} of the container
+     * @return the containment quads for {@code id}
+     */
+    public Stream<Quad> stream(final IRI id) {
+        return streamAsync(id).toCompletableFuture().join();
+    }
+
+    /**
+     * Stream the resources contained in a container without holding them all in memory, once the first page of
+     * results is available.
+     *
+     * @param id the {@link IRI} of the container
+     * @return the containment quads for {@code id}, paged as by {@link #stream(IRI)}
+     */
+    public CompletionStage<Stream<Quad>> streamAsync(final IRI id) {
+        return rows(id, stmt -> stmt.setPageSize(pageSize))
+            .thenApply(rows -> rows.map(this::getContained).map(con -> containmentQuad(id, con)));
+    }
+
+    /**
+     * Query every partition holding the containment of {@code id}. With the containment table, all buckets are
+     * queried at once and their rows concatenated in bucket order once every first page has arrived.
+     */
+    private CompletionStage<Stream<Row>> rows(final IRI id, final UnaryOperator<BoundStatement> paging) {
+        if (!containmentIndex.readsTable()) {
+            return preparedStatementAsync()
+                .thenApply(stmt -> paging.apply(stmt.bind().set("container", id, IRI.class)))
+                .thenCompose(session::executeAsync)
+                .thenApply(AsyncResultSetUtils::stream);
+        }
+        final List<CompletableFuture<Stream<Row>>> buckets = IntStream.range(0, containmentIndex.getBuckets())
+            .mapToObj(bucket -> preparedStatementAsync()
+                    .thenApply(stmt -> paging.apply(stmt.bind().set("container", id, IRI.class)
+                            .setInt("bucket", bucket)))
+                    .thenCompose(session::executeAsync)
+                    .thenApply(AsyncResultSetUtils::stream)
+                    .toCompletableFuture())
+            .collect(toList());
+        return allOf(buckets.toArray(new CompletableFuture<?>[0])).thenApply(x -> buckets.stream()
+                .map(CompletableFuture::join).reduce(Stream::concat).orElseGet(Stream::empty));
+    }
+
     private IRI getContained(final Row r) {
         final IRI contained = r.get("contained", IRI.class);
         final IRI type = r.get("type", IRI.class);
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+
+import java.util.concurrent.CompletionStage;
+
+import org.eclipse.microprofile.config.Config;
+import org.slf4j.Logger;
+import org.trellisldp.ext.cassandra.CassandraExecutors;
+import org.trellisldp.ext.cassandra.ContainmentIndex;
+
+/**
+ * Fills the containment table from {@code mutabledata}, for keyspaces created before that table existed.
+ *
+ * <p>Each containment row is written with the write time of the resource row it was copied from, so a resource that
+ * is deleted while the backfill runs is not resurrected in the containment table. The backfill is idempotent and may
+ * be run again if it is interrupted. It should be run while the application is writing the containment table, i.e.
+ * in {@link ContainmentIndex.Mode#MIGRATING} mode, so that no write is missed.
+ */
+public class ContainmentBackfill extends ResourceQuery {
+
+    private static final Logger LOGGER = getLogger(ContainmentBackfill.class);
+
+    private final ContainmentIndex containmentIndex;
+
+    private final CompletionStage<PreparedStatement> containmentStmtAsync;
+
+    private final ThrottledWrites writes;
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param containmentIndex where containment is recorded
+     * @param pageSize the number of resources to read at a time
+     * @param concurrency the number of containment writes to have in flight at once
+     */
+    public ContainmentBackfill(final CqlSession session, final ConsistencyLevel consistency,
+            final ContainmentIndex containmentIndex, final int pageSize, final int concurrency) {
+        super(session, "SELECT identifier, container, interactionModel, WRITETIME(interactionModel) AS written FROM "
+                + MUTABLE_TABLENAME + " ;", consistency);
+        this.writes = new ThrottledWrites(session, consistency, pageSize, concurrency);
+        this.containmentIndex = containmentIndex;
+        this.containmentStmtAsync = session.prepareAsync("INSERT INTO " + CONTAINMENT_TABLENAME
+                + " (container, bucket, identifier, interactionModel) VALUES (?,?,?,?) USING TIMESTAMP ? ;");
+    }
+
+    /**
+     * @return the number of containment rows written
+     */
+    public CompletionStage<Long> execute() {
+        return preparedStatementAsync().thenCompose(scan -> containmentStmtAsync.thenCompose(insert ->
+                    supplyAsync(() -> backfill(scan, insert), CassandraExecutors.jobs())));
+    }
+
+    private long backfill(final PreparedStatement scan, final PreparedStatement insert) {
+        return writes.run(scan.bind(), row -> {
+            final String container = row.getString("container");
+            if (container == null) return null;
+            final String identifier = row.getString("identifier");
+            return insert.bind(container, containmentIndex.bucket(identifier), identifier,
+                    row.getString("interactionModel"), row.getLong("written"));
+        }, "containment rows");
+    }
+
+    /**
+     * Run the backfill against the keyspace described by the usual {@code trellis.cassandra.*} configuration.
+     *
+     * @param args ignored
+     */
+    public static void main(final String... args) {
+        final Config config = getConfig();
+        try (final CqlSession session = MaintenanceJobs.connect(config)) {
+            final ContainmentBackfill backfill = new ContainmentBackfill(session,
+                    MaintenanceJobs.writeConsistency(config), ContainmentIndex.configured(),
+                    MaintenanceJobs.backfillPageSize(config), MaintenanceJobs.backfillConcurrency(config));
+            final long count = backfill.execute().toCompletableFuture().join();
+            LOGGER.info("Backfill complete: wrote {} containment rows", count);
+        }
+    }
+}
@@ -19,6 +19,10 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 
 import java.util.concurrent.CompletionStage;
 
@@ -27,6 +31,7 @@ import javax.inject.Inject;
 
 import org.apache.commons.rdf.api.IRI;
 import org.slf4j.Logger;
+import org.trellisldp.ext.cassandra.ContainmentIndex;
 import org.trellisldp.ext.cassandra.MutableWriteConsistency;
 
 /**
@@ -37,6 +42,10 @@ public class Delete extends ResourceQuery {
 
     private static final Logger LOGGER = getLogger(Delete.class);
 
+    private final ContainmentIndex containmentIndex;
+
+    private final CompletionStage<PreparedStatement> containmentStmtAsync;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -45,6 +54,8 @@ public class Delete extends ResourceQuery {
      */
     public Delete() {
         super();
+        this.containmentIndex = null;
+        this.containmentStmtAsync = null;
     }
 
     /**
@@ -54,7 +65,23 @@ public class Delete extends ResourceQuery {
      */
     @Inject
     public Delete(final CqlSession session, @MutableWriteConsistency final ConsistencyLevel consistency) {
+        this(session, consistency, ContainmentIndex.configured());
+    }
+
+    /**
+     * A query that deletes a resource and, if the containment table is maintained, its containment.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param containmentIndex where containment is recorded
+     */
+    public Delete(final CqlSession session, final ConsistencyLevel consistency,
+            final ContainmentIndex containmentIndex) {
         super(session, "DELETE FROM " + MUTABLE_TABLENAME + " WHERE identifier = :identifier ;", consistency);
+        this.containmentIndex = containmentIndex;
+        this.containmentStmtAsync = session != null && containmentIndex.writesTable()
+            ? session.prepareAsync("DELETE FROM " + CONTAINMENT_TABLENAME
+                    + " WHERE container = ? AND bucket = ? AND identifier = ? ;")
+            : null;
     }
 
     /**
@@ -62,9 +89,25 @@ public class Delete extends ResourceQuery {
      * @return whether and when it has been deleted
      */
     public CompletionStage<Void> execute(final IRI id) {
-        return preparedStatementAsync().thenApply(stmt ->
-                stmt.bind().set("identifier", id, IRI.class).setConsistencyLevel(consistency))
+        return execute(id, null);
+    }
+
+    /**
+     * @param id the {@link IRI} of the resource to delete
+     * @param container the {@link IRI} of the resource's container, may be {@code null}
+     * @return whether and when it has been deleted
+     */
+    public CompletionStage<Void> execute(final IRI id, final IRI container) {
+        final CompletionStage<BoundStatement> resource = preparedStatementAsync().thenApply(stmt ->
+                stmt.bind().set("identifier", id, IRI.class).setConsistencyLevel(consistency));
+        if (containmentStmtAsync == null || container == null) {
+            return resource.thenCompose(session::executeAsync)
+                .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+        }
+        return resource.thenCombine(containmentStmtAsync, (stmt, containment) ->
+                BatchStatement.newInstance(DefaultBatchType.LOGGED, stmt,
+                    containment.bind(container, containmentIndex.bucket(id), id)).setConsistencyLevel(consistency))
             .thenCompose(session::executeAsync)
-            .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+            .thenAccept(r -> LOGGER.debug("Executed query: {} with containment", queryString));
     }
 }
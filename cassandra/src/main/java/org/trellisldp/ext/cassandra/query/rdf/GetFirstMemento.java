@@ -50,8 +50,8 @@ public class GetFirstMemento extends ResourceQuery {
      */
     @Inject
     public GetFirstMemento(final CqlSession session, @MutableReadConsistency final ConsistencyLevel consistency) {
-        super(session, "SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME + " WHERE identifier = :identifier LIMIT 1 ;",
-                        consistency);
+        super(session, "SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME
+                        + " WHERE identifier = :identifier ORDER BY created ASC LIMIT 1 ;", consistency);
     }
 
     /**
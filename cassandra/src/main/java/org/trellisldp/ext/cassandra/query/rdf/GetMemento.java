@@ -15,9 +15,13 @@
  */
 package org.trellisldp.ext.cassandra.query.rdf;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.time.Instant;
 import java.util.concurrent.CompletionStage;
@@ -26,6 +30,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import org.apache.commons.rdf.api.IRI;
+import org.trellisldp.ext.cassandra.MementoIndex;
 import org.trellisldp.ext.cassandra.MutableReadConsistency;
 
 /**
@@ -34,6 +39,8 @@ import org.trellisldp.ext.cassandra.MutableReadConsistency;
 @ApplicationScoped
 public class GetMemento extends ResourceQuery {
 
+    private final CompletionStage<PreparedStatement> readStmtAsync;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -42,6 +49,7 @@ public class GetMemento extends ResourceQuery {
      */
     public GetMemento() {
         super();
+        this.readStmtAsync = null;
     }
 
     /**
@@ -51,19 +59,46 @@ public class GetMemento extends ResourceQuery {
      */
     @Inject
     public GetMemento(final CqlSession session, @MutableReadConsistency final ConsistencyLevel consistency) {
-        super(session, "SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME
-                        + " WHERE identifier = :identifier AND mementomodified <= :time " + " LIMIT 1 ALLOW FILTERING;",
+        this(session, consistency, MementoIndex.configured());
+    }
+
+    /**
+     * A class that retrieves data for a Memento, finding it by time as configured.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param mementoIndex how Mementos are found by time
+     */
+    public GetMemento(final CqlSession session, final ConsistencyLevel consistency,
+            final MementoIndex mementoIndex) {
+        super(session, mementoIndex.readsTable()
+                        ? "SELECT created FROM " + MEMENTO_TIME_TABLENAME
+                            + " WHERE identifier = :identifier AND mementomodified <= :time LIMIT 1;"
+                        : "SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME
+                            + " WHERE identifier = :identifier AND mementomodified <= :time LIMIT 1 ALLOW FILTERING;",
                         consistency);
+        this.readStmtAsync = session != null && mementoIndex.readsTable()
+            ? session.prepareAsync("SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME
+                    + " WHERE identifier = :identifier AND created = :created;")
+            : null;
     }
 
     /**
      * @param id the {@link IRI} of the Memento to retrieve
      * @param time the time for which this Memento is valid
-     * @return the data for the Memento
+     * @return the data for the Memento, or no rows if the resource has no Memento at or before {@code time}
      */
     public CompletionStage<AsyncResultSet> execute(final IRI id, final Instant time) {
-        return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("time", time, Instant.class)
-                .set("identifier", id, IRI.class))
+        final CompletionStage<AsyncResultSet> found = preparedStatementAsync()
+            .thenApply(stmt -> stmt.bind().set("time", time, Instant.class).set("identifier", id, IRI.class))
             .thenCompose(session::executeAsync);
+        if (readStmtAsync == null) return found;
+        // the time index holds only the creation of the Memento, which is then read by its primary key
+        return found.thenCompose(index -> {
+            final Row row = index.one();
+            if (row == null) return completedFuture(index);
+            return readStmtAsync.thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                    .setUuid("created", row.getUuid("created")).setConsistencyLevel(consistency))
+                .thenCompose(session::executeAsync);
+        });
     }
 }
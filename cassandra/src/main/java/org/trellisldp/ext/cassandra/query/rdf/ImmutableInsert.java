@@ -16,6 +16,7 @@
 package org.trellisldp.ext.cassandra.query.rdf;
 
 import static org.slf4j.LoggerFactory.getLogger;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
@@ -29,8 +30,8 @@ import javax.inject.Inject;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.IRI;
 import org.slf4j.Logger;
-import org.trellisldp.ext.cassandra.CassandraIOUtils;
 import org.trellisldp.ext.cassandra.MutableWriteConsistency;
+import org.trellisldp.ext.cassandra.QuadsFormat;
 
 /**
  * A query to insert immutable data about a resource into Cassandra.
@@ -57,8 +58,21 @@ public class ImmutableInsert extends ResourceQuery {
      */
     @Inject
     public ImmutableInsert(final CqlSession session, @MutableWriteConsistency final ConsistencyLevel consistency) {
-        super(session, "INSERT INTO " + IMMUTABLE_TABLENAME + " (identifier, quads, created) VALUES (?,?,?)",
-                        consistency);
+        this(session, consistency, QuadsFormat.configured());
+    }
+
+    /**
+     * Create a query to insert immutable data into Cassandra, writing RDF in the given format.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param quadsFormat the format in which to write RDF
+     */
+    public ImmutableInsert(final CqlSession session, final ConsistencyLevel consistency,
+            final QuadsFormat quadsFormat) {
+        super(session, "INSERT INTO " + IMMUTABLE_TABLENAME + " (identifier, created, "
+                        + quadsFormat.columns(hasColumn(session, IMMUTABLE_TABLENAME, QUADS_BINARY)) + ") VALUES (?,?,"
+                        + quadsFormat.markers(hasColumn(session, IMMUTABLE_TABLENAME, QUADS_BINARY)) + ")",
+                        consistency, quadsFormat);
     }
 
     /**
@@ -69,7 +83,7 @@ public class ImmutableInsert extends ResourceQuery {
      */
     public CompletionStage<Void> execute(final IRI id, final Dataset data, final Instant time) {
         return preparedStatementAsync().thenApply(stmt ->
-                stmt.bind(id, CassandraIOUtils.serialize(data), time).setConsistencyLevel(consistency))
+                quadsFormat.bind(stmt.bind(id, time), data).setConsistencyLevel(consistency))
             .thenCompose(session::executeAsync)
             .thenAccept(r -> LOGGER.debug("Executed CQL write: {}", queryString));
     }
@@ -17,7 +17,6 @@ package org.trellisldp.ext.cassandra.query.rdf;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
-import com.datastax.oss.driver.api.core.cql.Row;
 
 import java.util.concurrent.CompletionStage;
 import java.util.stream.Stream;
@@ -31,6 +30,7 @@ import org.apache.commons.rdf.api.Quad;
 import org.trellisldp.ext.cassandra.AsyncResultSetUtils;
 import org.trellisldp.ext.cassandra.CassandraIOUtils;
 import org.trellisldp.ext.cassandra.MutableReadConsistency;
+import org.trellisldp.ext.cassandra.QuadsFormat;
 
 /**
  * A query to retrieve immutable data about a resource from Cassandra.
@@ -55,7 +55,20 @@ public class ImmutableRetrieve extends ResourceQuery {
      */
     @Inject
     public ImmutableRetrieve(final CqlSession session, @MutableReadConsistency final ConsistencyLevel consistency) {
-        super(session, "SELECT quads FROM " + IMMUTABLE_TABLENAME + "  WHERE identifier = :identifier ;", consistency);
+        this(session, consistency, QuadsFormat.configured());
+    }
+
+    /**
+     * Retrieve immutable data about a resource. RDF is read in whichever format it was written.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param quadsFormat the format in which RDF is written
+     */
+    public ImmutableRetrieve(final CqlSession session, final ConsistencyLevel consistency,
+            final QuadsFormat quadsFormat) {
+        // every RDF column the table has, so that rows written in either format are read
+        super(session, "SELECT * FROM " + IMMUTABLE_TABLENAME
+                        + " WHERE identifier = :identifier ;", consistency, quadsFormat);
     }
 
     /**
@@ -66,11 +79,6 @@ public class ImmutableRetrieve extends ResourceQuery {
         return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class))
             .thenCompose(session::executeAsync)
             .thenApply(AsyncResultSetUtils::stream)
-            .thenApply(row -> row.map(this::getDataset))
-            .thenApply(r -> r.map(CassandraIOUtils::parse).flatMap(Dataset::stream));
-    }
-
-    private String getDataset(final Row r) {
-        return r.getString("quads");
+            .thenApply(rows -> rows.map(CassandraIOUtils::parse).flatMap(Dataset::stream));
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static java.net.InetSocketAddress.createUnresolved;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
+
+import org.eclipse.microprofile.config.Config;
+
+/**
+ * Configuration shared by the maintenance jobs that are run from the command line: {@link ContainmentBackfill},
+ * {@link MementoBackfill} and {@link MementoCompactor}.
+ */
+public final class MaintenanceJobs {
+
+    /** The configuration key for the number of rows read at a time by a backfill. */
+    public static final String CONFIG_CASSANDRA_BACKFILL_PAGE_SIZE = "trellis.cassandra.backfill-page-size";
+
+    /** The configuration key for the number of writes a backfill may have in flight at once. */
+    public static final String CONFIG_CASSANDRA_BACKFILL_CONCURRENCY = "trellis.cassandra.backfill-concurrency";
+
+    /** The default number of rows read at a time by a backfill. */
+    public static final int DEFAULT_BACKFILL_PAGE_SIZE = 1000;
+
+    /** The default number of writes a backfill may have in flight at once. */
+    public static final int DEFAULT_BACKFILL_CONCURRENCY = 32;
+
+    /**
+     * @param config the configuration
+     * @return a session to the keyspace described by the usual {@code trellis.cassandra.*} configuration
+     */
+    static CqlSession connect(final Config config) {
+        return CqlSession.builder()
+                .withKeyspace(config.getOptionalValue("trellis.cassandra.keyspace", String.class).orElse("trellis"))
+                .withLocalDatacenter(config.getOptionalValue("trellis.cassandra.datacenter", String.class)
+                    .orElse("datacenter1"))
+                .addContactPoint(createUnresolved(config.getOptionalValue("trellis.cassandra.contact-address",
+                            String.class).orElse("localhost"),
+                        config.getOptionalValue("trellis.cassandra.contact-port", Integer.class).orElse(9042)))
+                .build();
+    }
+
+    /**
+     * @param config the configuration
+     * @return the consistency level with which RDF is written
+     */
+    static ConsistencyLevel writeConsistency(final Config config) {
+        return DefaultConsistencyLevel.valueOf(config.getOptionalValue("trellis.cassandra.rdf-write-consistency",
+                    String.class).orElse("ONE"));
+    }
+
+    /**
+     * @param config the configuration
+     * @return the number of rows a backfill reads at a time
+     */
+    static int backfillPageSize(final Config config) {
+        return config.getOptionalValue(CONFIG_CASSANDRA_BACKFILL_PAGE_SIZE, Integer.class)
+            .orElse(DEFAULT_BACKFILL_PAGE_SIZE);
+    }
+
+    /**
+     * @param config the configuration
+     * @return the number of writes a backfill may have in flight at once
+     */
+    static int backfillConcurrency(final Config config) {
+        return config.getOptionalValue(CONFIG_CASSANDRA_BACKFILL_CONCURRENCY, Integer.class)
+            .orElse(DEFAULT_BACKFILL_CONCURRENCY);
+    }
+
+    private MaintenanceJobs() {
+        // not instantiable
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+
+import java.time.Instant;
+import java.util.concurrent.CompletionStage;
+
+import org.eclipse.microprofile.config.Config;
+import org.slf4j.Logger;
+import org.trellisldp.ext.cassandra.CassandraExecutors;
+import org.trellisldp.ext.cassandra.MementoIndex;
+
+/**
+ * Fills the {@code mementotime} table from {@code mementodata}, for keyspaces created before that table existed.
+ *
+ * <p>Each row is written with the write time of the Memento it was copied from, so a Memento that is deleted while
+ * the backfill runs is not resurrected in the table. The backfill is idempotent and may be run again if it is
+ * interrupted. It should be run while the application is writing the table, i.e. in
+ * {@link MementoIndex.Mode#MIGRATING} mode, so that no Memento is missed.
+ */
+public class MementoBackfill extends ResourceQuery {
+
+    private static final Logger LOGGER = getLogger(MementoBackfill.class);
+
+    private final CompletionStage<PreparedStatement> timeStmtAsync;
+
+    private final ThrottledWrites writes;
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param pageSize the number of Mementos to read at a time
+     * @param concurrency the number of writes to have in flight at once
+     */
+    public MementoBackfill(final CqlSession session, final ConsistencyLevel consistency, final int pageSize,
+            final int concurrency) {
+        super(session, "SELECT identifier, mementomodified, created, WRITETIME(mementomodified) AS written FROM "
+                + MEMENTO_MUTABLE_TABLENAME + " ;", consistency);
+        this.writes = new ThrottledWrites(session, consistency, pageSize, concurrency);
+        this.timeStmtAsync = session.prepareAsync("INSERT INTO " + MEMENTO_TIME_TABLENAME
+                + " (identifier, mementomodified, created) VALUES (?,?,?) USING TIMESTAMP ? ;");
+    }
+
+    /**
+     * @return the number of rows written
+     */
+    public CompletionStage<Long> execute() {
+        return preparedStatementAsync().thenCompose(scan -> timeStmtAsync.thenCompose(insert ->
+                    supplyAsync(() -> backfill(scan, insert), CassandraExecutors.jobs())));
+    }
+
+    private long backfill(final PreparedStatement scan, final PreparedStatement insert) {
+        return writes.run(scan.bind(), row -> {
+            final Instant modified = row.get("mementomodified", Instant.class);
+            return modified == null ? null : insert.bind(row.getString("identifier"), modified,
+                    row.getUuid("created"), row.getLong("written"));
+        }, "Memento times");
+    }
+
+    /**
+     * Run the backfill against the keyspace described by the usual {@code trellis.cassandra.*} configuration.
+     *
+     * @param args ignored
+     */
+    public static void main(final String... args) {
+        final Config config = getConfig();
+        try (final CqlSession session = MaintenanceJobs.connect(config)) {
+            final MementoBackfill backfill = new MementoBackfill(session, MaintenanceJobs.writeConsistency(config),
+                    MaintenanceJobs.backfillPageSize(config), MaintenanceJobs.backfillConcurrency(config));
+            final long count = backfill.execute().toCompletableFuture().join();
+            LOGGER.info("Backfill complete: wrote {} Memento times", count);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.commons.rdf.api.IRI;
+import org.trellisldp.ext.cassandra.AsyncResultSetUtils;
+import org.trellisldp.ext.cassandra.MementoDelta;
+import org.trellisldp.ext.cassandra.MutableReadConsistency;
+
+/**
+ * Retrieve data for the most recent Mementos of a resource, newest first, from which a Memento stored as a delta can
+ * be rebuilt.
+ *
+ * @see Mementoize#CONFIG_CASSANDRA_MEMENTO_SNAPSHOT_INTERVAL
+ */
+@ApplicationScoped
+public class MementoChain extends ResourceQuery {
+
+    private final CompletionStage<PreparedStatement> beforeStmtAsync;
+
+    /**
+     * For use with RESTeasy and CDI proxies.
+     *
+     * @apiNote This construtor is used by CDI runtimes that require a public, no-argument constructor.
+     *          It should not be invoked directly in user code.
+     */
+    public MementoChain() {
+        super();
+        this.beforeStmtAsync = null;
+    }
+
+    /**
+     * Create an object that retrieves data for the most recent Mementos of a resource.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     */
+    @Inject
+    public MementoChain(final CqlSession session, @MutableReadConsistency final ConsistencyLevel consistency) {
+        super(session, "SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME
+                        + " WHERE identifier = :identifier LIMIT :limit ;", consistency);
+        this.beforeStmtAsync = session != null
+            ? session.prepareAsync("SELECT * FROM " + MEMENTO_MUTABLE_TABLENAME
+                        + " WHERE identifier = :identifier AND created <= :created LIMIT :limit ;")
+            : null;
+    }
+
+    /**
+     * @param id the {@link IRI} of the resource
+     * @param limit the largest number of Mementos to retrieve
+     * @return the data for the most recent Mementos, newest first
+     */
+    public CompletionStage<AsyncResultSet> execute(final IRI id, final int limit) {
+        return preparedStatementAsync().thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                        .setInt("limit", limit).setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync);
+    }
+
+    /**
+     * @param id the {@link IRI} of the resource
+     * @param created the creation of the newest Memento to retrieve
+     * @param limit the largest number of Mementos to retrieve
+     * @return the data for the Mementos created no later than {@code created}, newest first
+     */
+    public CompletionStage<AsyncResultSet> execute(final IRI id, final UUID created, final int limit) {
+        return beforeStmtAsync.thenApply(stmt -> stmt.bind().set("identifier", id, IRI.class)
+                        .setUuid("created", created).setInt("limit", limit).setConsistencyLevel(consistency))
+            .thenCompose(session::executeAsync);
+    }
+
+    /**
+     * @param id the {@link IRI} of the resource
+     * @param memento a Memento of that resource
+     * @return {@code memento} and those it is based on back to the nearest full snapshot, newest first, as from
+     *         {@link MementoDelta#chain}, or {@code null} if they are missing
+     */
+    public CompletionStage<List<Row>> chain(final IRI id, final Row memento) {
+        return chain(id, memento.getUuid("created"), MementoDelta.depth(memento) + 1);
+    }
+
+    private CompletionStage<List<Row>> chain(final IRI id, final UUID created, final int limit) {
+        return execute(id, created, limit).thenApply(AsyncResultSetUtils::stream)
+            .thenApply(rows -> rows.collect(toList()))
+            .thenCompose(rows -> {
+                // Mementos written concurrently with those in the chain may lie between them
+                final List<Row> chain = MementoDelta.chain(rows);
+                return chain == null && rows.size() == limit
+                    ? chain(id, created, limit * 2)
+                    : completedFuture(chain);
+            });
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static com.datastax.oss.driver.api.core.cql.DefaultBatchType.LOGGED;
+import static com.datastax.oss.driver.api.core.cql.DefaultBatchType.UNLOGGED;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.stream.Collectors.joining;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_BASE;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_DEPTH;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.REMOVED_QUADS;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.rdf.api.RDF;
+import org.eclipse.microprofile.config.Config;
+import org.slf4j.Logger;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.ext.cassandra.CassandraExecutors;
+import org.trellisldp.ext.cassandra.MementoDelta;
+import org.trellisldp.ext.cassandra.MementoIndex;
+import org.trellisldp.ext.cassandra.MementoRetention;
+import org.trellisldp.ext.cassandra.QuadsFormat;
+
+/**
+ * Thins the Mementos of every resource according to a {@link MementoRetention} policy, so that the partitions of
+ * {@code mementodata} stay bounded.
+ *
+ * <p>The compactor walks {@code mementodata} in token order, deciding which Mementos of each resource to keep as it
+ * reads them rather than holding whole partitions, and removes the Mementos that the policy does not keep in batches
+ * and at a limited rate, along with their entries in {@code mementotime}. A Memento that is kept but stored as a delta
+ * on one that is removed is first rewritten as a full snapshot, and nothing older is removed until it has been. The
+ * newest Memento of a resource is never removed, so the compactor may run while the application writes Mementos. It
+ * may be run again at any time, and an interrupted run may be resumed from the last token it logged.
+ */
+public class MementoCompactor extends ResourceQuery {
+
+    /** The configuration key for the number of Mementos read at a time by the compactor. */
+    public static final String CONFIG_CASSANDRA_COMPACTOR_PAGE_SIZE = "trellis.cassandra.compactor-page-size";
+
+    /** The configuration key for the largest number of Mementos the compactor removes in one batch. */
+    public static final String CONFIG_CASSANDRA_COMPACTOR_BATCH_SIZE = "trellis.cassandra.compactor-batch-size";
+
+    /** The configuration key for the largest number of Mementos the compactor removes each second. */
+    public static final String CONFIG_CASSANDRA_COMPACTOR_RATE = "trellis.cassandra.compactor-rate";
+
+    /** The configuration key for the token from which the compactor starts, to resume an interrupted run. */
+    public static final String CONFIG_CASSANDRA_COMPACTOR_START_TOKEN = "trellis.cassandra.compactor-start-token";
+
+    private static final Logger LOGGER = getLogger(MementoCompactor.class);
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    // the rate limit bounds the removals; this bounds the rewrites, and the removals waiting for them
+    private static final int IN_FLIGHT = 16;
+
+    private final MementoRetention retention;
+
+    private final MementoChain mementoChain;
+
+    private final CompletionStage<PreparedStatement> deleteStmtAsync;
+
+    private final CompletionStage<PreparedStatement> timeDeleteStmtAsync;
+
+    private final CompletionStage<PreparedStatement> snapshotStmtAsync;
+
+    private final int pageSize;
+
+    private final int batchSize;
+
+    private final double rate;
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param quadsFormat the format in which to rewrite RDF
+     * @param retention which Mementos to keep
+     * @param mementoIndex how Mementos are found by time
+     * @param pageSize the number of Mementos to read at a time
+     * @param batchSize the largest number of Mementos to remove in one batch
+     * @param rate the largest number of Mementos to remove each second
+     */
+    public MementoCompactor(final CqlSession session, final ConsistencyLevel consistency,
+            final QuadsFormat quadsFormat, final MementoRetention retention, final MementoIndex mementoIndex,
+            final int pageSize, final int batchSize, final double rate) {
+        super(session, "SELECT token(identifier) AS position, identifier, created, modified, mementomodified, "
+                + DELTA_DEPTH + ", " + DELTA_BASE + " FROM " + MEMENTO_MUTABLE_TABLENAME
+                + " WHERE token(identifier) >= :position ;",
+                consistency, quadsFormat);
+        if (pageSize < 1) throw new IllegalArgumentException("Compactor page size < 1!");
+        if (batchSize < 1) throw new IllegalArgumentException("Compactor batch size < 1!");
+        if (!(rate > 0)) throw new IllegalArgumentException("Compactor rate must be positive!");
+        this.retention = retention;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.rate = rate;
+        this.mementoChain = new MementoChain(session, consistency);
+        this.deleteStmtAsync = session.prepareAsync("DELETE FROM " + MEMENTO_MUTABLE_TABLENAME
+                + " WHERE identifier = ? AND created = ? ;");
+        this.timeDeleteStmtAsync = mementoIndex.writesTable()
+            ? session.prepareAsync("DELETE FROM " + MEMENTO_TIME_TABLENAME
+                    + " WHERE identifier = ? AND mementomodified = ? AND created = ? ;")
+            : completedFuture(null);
+        this.snapshotStmtAsync = session.prepareAsync("UPDATE " + MEMENTO_MUTABLE_TABLENAME + " SET "
+                + Arrays.stream(quadsFormat.columns(hasColumn(session, MEMENTO_MUTABLE_TABLENAME, QUADS_BINARY))
+                        .split(", ")).map(c -> c + " = :" + c).collect(joining(", "))
+                + ", " + DELTA_DEPTH + " = 0, " + REMOVED_QUADS + " = null, " + DELTA_BASE + " = null"
+                + " WHERE identifier = :identifier AND created = :created ;");
+    }
+
+    /**
+     * @param startToken the token from which to start
+     * @return the number of Mementos removed
+     */
+    public CompletionStage<Long> execute(final long startToken) {
+        return preparedStatementAsync().thenCompose(scan -> deleteStmtAsync.thenCompose(delete ->
+                    timeDeleteStmtAsync.thenCombine(snapshotStmtAsync, (timeDelete, snapshot) ->
+                        new Compaction(scan, delete, timeDelete, snapshot))))
+            .thenCompose(compaction -> supplyAsync(() -> compaction.run(startToken), CassandraExecutors.jobs()));
+    }
+
+    private final class Compaction {
+
+        private final PreparedStatement scan;
+        private final PreparedStatement delete;
+        private final PreparedStatement timeDelete;
+        private final PreparedStatement snapshot;
+        private final RateLimiter limiter = RateLimiter.create(rate);
+        private final Semaphore inFlight = new Semaphore(IN_FLIGHT);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong removed = new AtomicLong();
+        private final Instant now = Instant.now();
+
+        private Compaction(final PreparedStatement scan, final PreparedStatement delete,
+                final PreparedStatement timeDelete, final PreparedStatement snapshot) {
+            this.scan = scan;
+            this.delete = delete;
+            this.timeDelete = timeDelete;
+            this.snapshot = snapshot;
+        }
+
+        private long run(final long startToken) {
+            long resources = 0;
+            Versions versions = null;
+            for (final Row row : session.execute(scan.bind().setLong("position", startToken)
+                        .setPageSize(pageSize).setConsistencyLevel(consistency))) {
+                if (failure.get() != null) break;
+                // the rows of each resource arrive together, newest first
+                final String identifier = row.getString("identifier");
+                if (versions == null || !versions.identifier.equals(identifier)) {
+                    if (versions != null) {
+                        versions.flush();
+                        if (++resources % pageSize == 0) {
+                            LOGGER.info("Compacted {} resources, removing {} Mementos, up to token {}", resources,
+                                    removed.get(), row.getLong("position"));
+                        }
+                    }
+                    versions = new Versions(identifier);
+                }
+                versions.add(row);
+            }
+            if (versions != null && failure.get() == null) versions.flush();
+            inFlight.acquireUninterruptibly(IN_FLIGHT);
+            if (failure.get() != null) throw new CompletionException(failure.get());
+            return removed.get();
+        }
+
+        private CompletionStage<Boolean> snapshot(final String identifier, final Row delta) {
+            return mementoChain.chain(rdf.createIRI(identifier), delta).thenCompose(chain -> {
+                if (chain == null) {
+                    LOGGER.warn("Could not rebuild a Memento of {}, leaving its older Mementos in place", identifier);
+                    return completedFuture(false);
+                }
+                return session.executeAsync(quadsFormat.bind(snapshot.bind().setString("identifier", identifier)
+                            .setUuid("created", delta.getUuid("created")), MementoDelta.rebuild(chain))
+                        .setConsistencyLevel(consistency)).thenApply(r -> true);
+            }).exceptionally(e -> {
+                LOGGER.warn("Could not rewrite a Memento of {}, leaving its older Mementos in place", identifier, e);
+                return false;
+            });
+        }
+
+        /**
+         * The Mementos of one resource, compacted as they are read, so that only the deltas still waiting for the
+         * Memento they are based on and one batch of removals are held at a time.
+         */
+        private final class Versions {
+
+            private final String identifier;
+            private final MementoRetention.Sweep sweep = retention.sweep(now);
+            // kept deltas, by the creation of the Memento each is based on, until that Memento is read
+            private final Map<UUID, List<Row>> awaiting = new HashMap<>();
+            // a kept delta written without a recorded base, which is based on the next Memento read
+            private Row awaitingNext;
+            // whether the Mementos read so far may be removed, once the deltas kept on them have been rewritten
+            private CompletionStage<Boolean> removable = completedFuture(true);
+            private List<BatchableStatement<?>> batch = new ArrayList<>();
+            private int batched;
+
+            private Versions(final String identifier) {
+                this.identifier = identifier;
+            }
+
+            private void add(final Row version) {
+                final UUID created = version.getUuid("created");
+                final List<Row> dependents = awaiting.containsKey(created) ? awaiting.remove(created)
+                    : new ArrayList<>();
+                if (awaitingNext != null) dependents.add(awaitingNext);
+                awaitingNext = null;
+                if (sweep.keep(modified(version))) {
+                    if (MementoDelta.depth(version) > 0) {
+                        final UUID base = MementoDelta.base(version);
+                        if (base == null) {
+                            awaitingNext = version;
+                        } else {
+                            awaiting.computeIfAbsent(base, b -> new ArrayList<>()).add(version);
+                        }
+                    }
+                    return;
+                }
+                // a delta is rebuilt from the Memento it is based on, so one that outlives that Memento must stand
+                // alone before anything older is removed
+                dependents.forEach(this::snapshot);
+                batch.add(delete.bind(identifier, created));
+                final Instant mementoModified = version.get("mementomodified", Instant.class);
+                if (timeDelete != null && mementoModified != null) {
+                    batch.add(timeDelete.bind(identifier, mementoModified, created));
+                }
+                if (++batched == batchSize) flush();
+            }
+
+            private void snapshot(final Row delta) {
+                inFlight.acquireUninterruptibly();
+                final CompletionStage<Boolean> rewritten = Compaction.this.snapshot(identifier, delta)
+                    .whenComplete((r, e) -> inFlight.release());
+                removable = removable.thenCombine(rewritten, Boolean::logicalAnd);
+            }
+
+            private void flush() {
+                if (batched == 0) return;
+                final int mementos = batched;
+                // the time index lives in another table, so removing from both is only atomic in a logged batch
+                final BatchStatement statement = BatchStatement.newInstance(timeDelete != null ? LOGGED : UNLOGGED,
+                        batch).setConsistencyLevel(consistency);
+                batch = new ArrayList<>();
+                batched = 0;
+                limiter.acquire(mementos);
+                inFlight.acquireUninterruptibly();
+                removable.thenCompose(open -> open
+                            ? session.executeAsync(statement).thenApply(r -> mementos)
+                            : completedFuture(0))
+                    .whenComplete((count, e) -> {
+                        if (e != null) {
+                            failure.compareAndSet(null, e);
+                        } else {
+                            removed.addAndGet(count);
+                        }
+                        inFlight.release();
+                    });
+            }
+        }
+    }
+
+    private static Instant modified(final Row version) {
+        final Instant modified = version.get("modified", Instant.class);
+        return modified != null ? modified : Instant.ofEpochMilli(Uuids.unixTimestamp(version.getUuid("created")));
+    }
+
+    /**
+     * Run the compactor against the keyspace described by the usual {@code trellis.cassandra.*} configuration.
+     *
+     * @param args ignored
+     */
+    public static void main(final String... args) {
+        final Config config = getConfig();
+        final MementoRetention retention = MementoRetention.configured();
+        if (!retention.isEnabled()) {
+            LOGGER.warn("No Memento retention policy is configured, so there is nothing to compact");
+            return;
+        }
+        try (final CqlSession session = MaintenanceJobs.connect(config)) {
+            final MementoCompactor compactor = new MementoCompactor(session,
+                    MaintenanceJobs.writeConsistency(config), QuadsFormat.configured(), retention,
+                    MementoIndex.configured(),
+                    config.getOptionalValue(CONFIG_CASSANDRA_COMPACTOR_PAGE_SIZE, Integer.class).orElse(1000),
+                    config.getOptionalValue(CONFIG_CASSANDRA_COMPACTOR_BATCH_SIZE, Integer.class).orElse(50),
+                    config.getOptionalValue(CONFIG_CASSANDRA_COMPACTOR_RATE, Double.class).orElse(100.0));
+            final long count = compactor.execute(config.getOptionalValue(CONFIG_CASSANDRA_COMPACTOR_START_TOKEN,
+                        Long.class).orElse(Long.MIN_VALUE)).toCompletableFuture().join();
+            LOGGER.info("Compaction complete: removed {} Mementos", count);
+        }
+    }
+}
@@ -16,11 +16,17 @@
 package org.trellisldp.ext.cassandra.query.rdf;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.UUID;
 import java.util.concurrent.CompletionStage;
@@ -33,7 +39,9 @@ import org.slf4j.Logger;
 import org.trellisldp.api.BinaryMetadata;
 import org.trellisldp.api.Metadata;
 import org.trellisldp.ext.cassandra.CassandraIOUtils;
+import org.trellisldp.ext.cassandra.MementoIndex;
 import org.trellisldp.ext.cassandra.MutableWriteConsistency;
+import org.trellisldp.ext.cassandra.QuadsFormat;
 
 /**
  * A query that records a version of a resource as a Memento.
@@ -41,8 +49,42 @@ import org.trellisldp.ext.cassandra.MutableWriteConsistency;
 @ApplicationScoped
 public class Mementoize extends ResourceQuery {
 
+    /**
+     * The configuration key for the number of Mementos of a resource from one full snapshot to the next. The Mementos
+     * in between record only what changed since the Memento before them. One, the default, stores every Memento in
+     * full.
+     */
+    public static final String CONFIG_CASSANDRA_MEMENTO_SNAPSHOT_INTERVAL =
+        "trellis.cassandra.memento-snapshot-interval";
+
+    /** The name of the column holding the number of deltas between a Memento and the last full snapshot. */
+    public static final String DELTA_DEPTH = "deltadepth";
+
+    /** The name of the column holding, as N-Quads, the quads removed since the previous Memento. */
+    public static final String REMOVED_QUADS = "removedquads";
+
+    /** The name of the column holding the creation of the Memento on which a delta is based. */
+    public static final String DELTA_BASE = "deltabase";
+
+    /**
+     * The configuration key for recording a hash of the content of each Memento, so that a Memento that would repeat
+     * the one before it is not written. Default: {@code false}.
+     */
+    public static final String CONFIG_CASSANDRA_MEMENTO_CONTENT_HASH = "trellis.cassandra.memento-content-hash";
+
+    /** The name of the column holding the hash of the content of a Memento. */
+    public static final String CONTENT_HASH = "contenthash";
+
     private static final Logger LOGGER = getLogger(Mementoize.class);
 
+    private final CompletionStage<PreparedStatement> timeStmtAsync;
+
+    private final CompletionStage<PreparedStatement> deltaStmtAsync;
+
+    private final boolean contentHash;
+
+    private final boolean deltas;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -51,6 +93,10 @@ public class Mementoize extends ResourceQuery {
      */
     public Mementoize() {
         super();
+        this.timeStmtAsync = null;
+        this.deltaStmtAsync = null;
+        this.contentHash = false;
+        this.deltas = false;
     }
 
     /**
@@ -60,14 +106,53 @@ public class Mementoize extends ResourceQuery {
      */
     @Inject
     public Mementoize(final CqlSession session, @MutableWriteConsistency final ConsistencyLevel consistency) {
+        this(session, consistency, QuadsFormat.configured(), MementoIndex.configured(), graphNamesConfigured(),
+                snapshotIntervalConfigured() > 1, contentHashConfigured());
+    }
+
+    /**
+     * Create a query that generates a memento, writing RDF in the given format.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param quadsFormat the format in which to write RDF
+     * @param mementoIndex how Mementos are found by time
+     * @param graphNames whether to record the names of the graphs in each memento
+     * @param deltas whether Mementos may record only what changed since the Memento before them
+     * @param contentHash whether to record a hash of the content of each Memento
+     */
+    public Mementoize(final CqlSession session, final ConsistencyLevel consistency, final QuadsFormat quadsFormat,
+            final MementoIndex mementoIndex, final boolean graphNames, final boolean deltas,
+            final boolean contentHash) {
         super(session, "INSERT INTO " + MEMENTO_MUTABLE_TABLENAME
-                        + " (interactionModel, mimeType, container, quads, modified, binaryIdentifier, "
-                        + "created, identifier, mementomodified)" + " VALUES (?,?,?,?,?,?,?,?,?);", consistency);
+                        + " (interactionModel, mimeType, container, modified, binaryIdentifier, "
+                        + "created, identifier, mementomodified, "
+                        + rdfColumns(session, MEMENTO_MUTABLE_TABLENAME, quadsFormat, graphNames)
+                        + (contentHash ? ", " + CONTENT_HASH : "")
+                        + (deltas ? ", " + DELTA_DEPTH + ", " + DELTA_BASE + ", " + REMOVED_QUADS : "")
+                        + ") VALUES (?,?,?,?,?,?,?,?,"
+                        + rdfMarkers(session, MEMENTO_MUTABLE_TABLENAME, quadsFormat, graphNames)
+                        + (contentHash ? ", ?" : "") + (deltas ? ", ?, ?, ?" : "") + ");", consistency,
+                        quadsFormat, graphNames);
+        this.contentHash = contentHash;
+        this.deltas = deltas;
+        this.deltaStmtAsync = session != null && deltas
+            ? session.prepareAsync("INSERT INTO " + MEMENTO_MUTABLE_TABLENAME
+                    + " (interactionModel, mimeType, container, modified, binaryIdentifier, created, identifier, "
+                    + "mementomodified, " + DELTA_DEPTH + ", " + REMOVED_QUADS + ", " + DELTA_BASE + ", "
+                    + rdfColumns(session, MEMENTO_MUTABLE_TABLENAME, quadsFormat, graphNames)
+                    + (contentHash ? ", " + CONTENT_HASH : "") + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,"
+                    + rdfMarkers(session, MEMENTO_MUTABLE_TABLENAME, quadsFormat, graphNames)
+                    + (contentHash ? ", ?" : "") + ");")
+            : null;
+        this.timeStmtAsync = session != null && mementoIndex.writesTable()
+            ? session.prepareAsync("INSERT INTO " + MEMENTO_TIME_TABLENAME
+                    + " (identifier, mementomodified, created) VALUES (?,?,?);")
+            : null;
     }
 
     /**
      * Store a Memento. Note that the value for {@code modified} is truncated to seconds because Memento requires HTTP
-     * time management.
+     * time management. When Mementos are also recorded by time, both are written together in a logged batch.
      *
      * @param metadata metadata for this resource
      * @param modified the time at which this resource was last modified
@@ -77,13 +162,92 @@ public class Mementoize extends ResourceQuery {
      */
     public CompletionStage<Void> execute(final Metadata metadata, final Instant modified,
             final Dataset data, final UUID creation) {
-        return preparedStatementAsync().thenApply(stmt -> stmt.bind(metadata.getInteractionModel(),
+        return execute(metadata, modified, data, creation, null);
+    }
+
+    /**
+     * @param metadata metadata for this resource
+     * @param modified the time at which this resource was last modified
+     * @param data RDF for this resource
+     * @param creation a time-based (version 1) UUID for the moment this resource is created
+     * @param hash the hash of the content of this Memento, recorded if so configured, may be {@code null}
+     * @return whether and when it has been inserted
+     * @see #CONFIG_CASSANDRA_MEMENTO_CONTENT_HASH
+     */
+    public CompletionStage<Void> execute(final Metadata metadata, final Instant modified,
+            final Dataset data, final UUID creation, final ByteBuffer hash) {
+        return write(metadata, modified, creation, hash, preparedStatementAsync().thenApply(stmt -> bindRdf(
+                stmt.bind(metadata.getInteractionModel(),
+                    metadata.getBinary().flatMap(BinaryMetadata::getMimeType).orElse(null),
+                    metadata.getContainer().orElse(null), modified,
+                    metadata.getBinary().map(BinaryMetadata::getIdentifier).orElse(null),
+                    creation, metadata.getIdentifier(), modified.truncatedTo(SECONDS)), data)
+                .setConsistencyLevel(consistency))
+                // a snapshot may replace a delta written earlier in the same second
+                .thenApply(stmt -> deltas
+                    ? stmt.setInt(DELTA_DEPTH, 0).setToNull(DELTA_BASE).setToNull(REMOVED_QUADS)
+                    : stmt));
+    }
+
+    /**
+     * Store a Memento as the changes since an earlier one, which is recorded so that the Memento can be rebuilt even
+     * if others were written between the two.
+     *
+     * @param metadata metadata for this resource
+     * @param modified the time at which this resource was last modified
+     * @param data RDF for this resource, the graph names of which are recorded
+     * @param creation a time-based (version 1) UUID for the moment this resource is created
+     * @param base the creation of the earlier Memento on which this one is based
+     * @param added the quads added since the Memento on which this one is based
+     * @param removed the quads removed since the Memento on which this one is based
+     * @param depth the number of deltas, including this one, since the last full snapshot
+     * @param hash the hash of the content of this Memento, recorded if so configured, may be {@code null}
+     * @return whether and when it has been inserted
+     * @see #CONFIG_CASSANDRA_MEMENTO_SNAPSHOT_INTERVAL
+     */
+    public CompletionStage<Void> execute(final Metadata metadata, final Instant modified, final Dataset data,
+            final UUID creation, final UUID base, final Dataset added, final Dataset removed, final int depth,
+            final ByteBuffer hash) {
+        if (deltaStmtAsync == null) throw new IllegalStateException("Delta Mementos are not configured!");
+        return write(metadata, modified, creation, hash, deltaStmtAsync.thenApply(stmt -> bindRdf(
+                stmt.bind(metadata.getInteractionModel(),
                     metadata.getBinary().flatMap(BinaryMetadata::getMimeType).orElse(null),
-                    metadata.getContainer().orElse(null), CassandraIOUtils.serialize(data), modified,
+                    metadata.getContainer().orElse(null), modified,
                     metadata.getBinary().map(BinaryMetadata::getIdentifier).orElse(null),
-                    creation, metadata.getIdentifier(), modified.truncatedTo(SECONDS))
+                    creation, metadata.getIdentifier(), modified.truncatedTo(SECONDS), depth,
+                    CassandraIOUtils.serialize(removed), base), added, data)
+                .setConsistencyLevel(consistency)));
+    }
+
+    /**
+     * @return the number of Mementos from one full snapshot to the next, as configured
+     */
+    public static int snapshotIntervalConfigured() {
+        return getConfig().getOptionalValue(CONFIG_CASSANDRA_MEMENTO_SNAPSHOT_INTERVAL, Integer.class).orElse(1);
+    }
+
+    /**
+     * @return whether a hash of the content of each Memento is recorded, as configured
+     */
+    public static boolean contentHashConfigured() {
+        return getConfig().getOptionalValue(CONFIG_CASSANDRA_MEMENTO_CONTENT_HASH, Boolean.class)
+            .orElse(Boolean.FALSE);
+    }
+
+    private CompletionStage<Void> write(final Metadata metadata, final Instant modified, final UUID creation,
+            final ByteBuffer hash, final CompletionStage<BoundStatement> statement) {
+        final CompletionStage<BoundStatement> memento = contentHash
+            ? statement.thenApply(stmt -> stmt.setByteBuffer(CONTENT_HASH, hash))
+            : statement;
+        if (timeStmtAsync == null) {
+            return memento.thenCompose(session::executeAsync)
+                .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+        }
+        return memento.thenCombine(timeStmtAsync, (stmt, time) ->
+                BatchStatement.newInstance(DefaultBatchType.LOGGED, stmt,
+                        time.bind(metadata.getIdentifier(), modified.truncatedTo(SECONDS), creation))
                 .setConsistencyLevel(consistency))
             .thenCompose(session::executeAsync)
-            .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+            .thenAccept(r -> LOGGER.debug("Executed query: {} with time index", queryString));
     }
 }
@@ -19,6 +19,10 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -28,11 +32,13 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
 import org.slf4j.Logger;
 import org.trellisldp.api.BinaryMetadata;
 import org.trellisldp.api.Metadata;
-import org.trellisldp.ext.cassandra.CassandraIOUtils;
+import org.trellisldp.ext.cassandra.ContainmentIndex;
 import org.trellisldp.ext.cassandra.MutableWriteConsistency;
+import org.trellisldp.ext.cassandra.QuadsFormat;
 
 /**
  * A query to insert mutable data about a resource into Cassandra.
@@ -42,6 +48,10 @@ public class MutableInsert extends ResourceQuery {
 
     private static final Logger LOGGER = getLogger(MutableInsert.class);
 
+    private final ContainmentIndex containmentIndex;
+
+    private final CompletionStage<PreparedStatement> containmentStmtAsync;
+
     /**
      * For use with RESTeasy and CDI proxies.
      *
@@ -50,6 +60,8 @@ public class MutableInsert extends ResourceQuery {
      */
     public MutableInsert() {
         super();
+        this.containmentIndex = null;
+        this.containmentStmtAsync = null;
     }
 
     /**
@@ -59,12 +71,35 @@ public class MutableInsert extends ResourceQuery {
      */
     @Inject
     public MutableInsert(final CqlSession session, @MutableWriteConsistency final ConsistencyLevel consistency) {
+        this(session, consistency, QuadsFormat.configured(), ContainmentIndex.configured(), graphNamesConfigured());
+    }
+
+    /**
+     * A query that inserts mutable data into Cassandra, writing RDF in the given format.
+     * @param session the cassandra session
+     * @param consistency the consistency level
+     * @param quadsFormat the format in which to write RDF
+     * @param containmentIndex where containment is recorded
+     * @param graphNames whether to record the names of the graphs in each resource
+     */
+    public MutableInsert(final CqlSession session, final ConsistencyLevel consistency,
+            final QuadsFormat quadsFormat, final ContainmentIndex containmentIndex, final boolean graphNames) {
         super(session, "INSERT INTO " + MUTABLE_TABLENAME
-                    + " (interactionModel, mimeType, container, quads, modified, binaryIdentifier, created, identifier)"
-                    + " VALUES (?,?,?,?,?,?,?,?);", consistency);
+                    + " (interactionModel, mimeType, container, modified, binaryIdentifier, created, identifier, "
+                    + rdfColumns(session, MUTABLE_TABLENAME, quadsFormat, graphNames) + ") VALUES (?,?,?,?,?,?,?,"
+                    + rdfMarkers(session, MUTABLE_TABLENAME, quadsFormat, graphNames) + ");", consistency, quadsFormat,
+                    graphNames);
+        this.containmentIndex = containmentIndex;
+        this.containmentStmtAsync = session != null && containmentIndex.writesTable()
+            ? session.prepareAsync("INSERT INTO " + CONTAINMENT_TABLENAME
+                    + " (container, bucket, identifier, interactionModel) VALUES (?,?,?,?);")
+            : null;
     }
 
     /**
+     * When the containment table is maintained and the resource has a container, the resource and its containment
+     * are written together in a logged batch.
+     *
      * @param metadata the metadata for this resource
      * @param modified the time at which this resource was last modified
      * @param data RDF for this resource
@@ -73,13 +108,23 @@ public class MutableInsert extends ResourceQuery {
      */
     public CompletionStage<Void> execute(final Metadata metadata, final Instant modified, final Dataset data,
             final UUID creation) {
-        return preparedStatementAsync().thenApply(stmt ->
+        final CompletionStage<BoundStatement> resource = preparedStatementAsync().thenApply(stmt -> bindRdf(
                 stmt.bind(metadata.getInteractionModel(),
                     metadata.getBinary().flatMap(BinaryMetadata::getMimeType).orElse(null),
-                    metadata.getContainer().orElse(null), CassandraIOUtils.serialize(data), modified,
+                    metadata.getContainer().orElse(null), modified,
                     metadata.getBinary().map(BinaryMetadata::getIdentifier).orElse(null),
-                    creation, metadata.getIdentifier()).setConsistencyLevel(consistency))
+                    creation, metadata.getIdentifier()), data).setConsistencyLevel(consistency));
+        final IRI container = metadata.getContainer().orElse(null);
+        if (containmentStmtAsync == null || container == null) {
+            return resource.thenCompose(session::executeAsync)
+                .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+        }
+        final IRI identifier = metadata.getIdentifier();
+        return resource.thenCombine(containmentStmtAsync, (stmt, containment) ->
+                BatchStatement.newInstance(DefaultBatchType.LOGGED, stmt, containment.bind(container,
+                        containmentIndex.bucket(identifier), identifier, metadata.getInteractionModel()))
+                .setConsistencyLevel(consistency))
             .thenCompose(session::executeAsync)
-            .thenAccept(r -> LOGGER.debug("Executed query: {}", queryString));
+            .thenAccept(r -> LOGGER.debug("Executed query: {} with containment", queryString));
     }
 }
@@ -15,9 +15,17 @@
  */
 package org.trellisldp.ext.cassandra.query.rdf;
 
+import static org.eclipse.microprofile.config.ConfigProvider.getConfig;
+import static org.trellisldp.ext.cassandra.CassandraIOUtils.GRAPH_NAMES;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 
+import org.apache.commons.rdf.api.Dataset;
+import org.trellisldp.ext.cassandra.CassandraIOUtils;
+import org.trellisldp.ext.cassandra.QuadsFormat;
 import org.trellisldp.ext.cassandra.query.CassandraQuery;
 
 /**
@@ -29,15 +37,111 @@ abstract class ResourceQuery extends CassandraQuery {
 
     static final String MEMENTO_MUTABLE_TABLENAME = "mementodata";
 
+    static final String MEMENTO_TIME_TABLENAME = "mementotime";
+
     static final String IMMUTABLE_TABLENAME = "immutabledata";
 
     static final String BASIC_CONTAINMENT_TABLENAME = "basiccontainment";
 
+    static final String CONTAINMENT_TABLENAME = "containment";
+
+    /**
+     * The format in which this query writes RDF.
+     */
+    final QuadsFormat quadsFormat;
+
+    /**
+     * Whether this query records the names of the graphs it writes in {@value CassandraIOUtils#GRAPH_NAMES}.
+     */
+    final boolean graphNames;
+
     ResourceQuery() {
         super();
+        this.quadsFormat = QuadsFormat.NQUADS;
+        this.graphNames = false;
     }
 
     ResourceQuery(final CqlSession session, final String queryString, final ConsistencyLevel consistency) {
+        this(session, queryString, consistency, QuadsFormat.NQUADS);
+    }
+
+    ResourceQuery(final CqlSession session, final String queryString, final ConsistencyLevel consistency,
+            final QuadsFormat quadsFormat) {
+        this(session, queryString, consistency, quadsFormat, false);
+    }
+
+    ResourceQuery(final CqlSession session, final String queryString, final ConsistencyLevel consistency,
+            final QuadsFormat quadsFormat, final boolean graphNames) {
         super(session, queryString, consistency);
+        this.quadsFormat = quadsFormat;
+        this.graphNames = graphNames;
+    }
+
+    /**
+     * @return whether {@value CassandraIOUtils#CONFIG_CASSANDRA_GRAPH_NAMES} is enabled
+     */
+    static boolean graphNamesConfigured() {
+        return getConfig().getOptionalValue(CassandraIOUtils.CONFIG_CASSANDRA_GRAPH_NAMES, Boolean.class)
+            .orElse(Boolean.FALSE);
+    }
+
+    /**
+     * @param session the cassandra session, may be {@code null}
+     * @param table the table to which RDF is written
+     * @param quadsFormat the format in which RDF is written
+     * @param graphNames whether graph names are recorded
+     * @return the columns that hold the RDF of a resource, including {@value CassandraIOUtils#GRAPH_NAMES} wherever
+     *         the table has it, so that graph names recorded by an earlier write are cleared when they no longer are
+     */
+    static String rdfColumns(final CqlSession session, final String table, final QuadsFormat quadsFormat,
+            final boolean graphNames) {
+        final String columns = quadsFormat.columns(hasColumn(session, table, QUADS_BINARY));
+        return graphNamesColumn(session, table, graphNames) ? columns + ", " + GRAPH_NAMES : columns;
+    }
+
+    /**
+     * @param session the cassandra session, may be {@code null}
+     * @param table the table to which RDF is written
+     * @param quadsFormat the format in which RDF is written
+     * @param graphNames whether graph names are recorded
+     * @return bind markers matching {@link #rdfColumns}
+     */
+    static String rdfMarkers(final CqlSession session, final String table, final QuadsFormat quadsFormat,
+            final boolean graphNames) {
+        final String markers = quadsFormat.markers(hasColumn(session, table, QUADS_BINARY));
+        return graphNamesColumn(session, table, graphNames) ? markers + ", ?" : markers;
+    }
+
+    private static boolean graphNamesColumn(final CqlSession session, final String table, final boolean graphNames) {
+        return graphNames || hasColumn(session, table, GRAPH_NAMES);
+    }
+
+    /**
+     * Bind the RDF of a resource to a statement prepared with {@link #rdfColumns} and {@link #rdfMarkers}.
+     *
+     * @param statement the statement
+     * @param data the RDF, may be {@code null}
+     * @return the statement with the RDF columns bound
+     */
+    BoundStatement bindRdf(final BoundStatement statement, final Dataset data) {
+        return bindRdf(statement, data, data);
+    }
+
+    /**
+     * Bind some RDF to a statement prepared with {@link #rdfColumns} and {@link #rdfMarkers}, recording the graph
+     * names of other RDF.
+     *
+     * @param statement the statement
+     * @param data the RDF to write, may be {@code null}
+     * @param graphsOf the RDF whose graph names are to be recorded, may be {@code null}
+     * @return the statement with the RDF columns bound
+     */
+    BoundStatement bindRdf(final BoundStatement statement, final Dataset data, final Dataset graphsOf) {
+        final BoundStatement bound = quadsFormat.bind(statement, data);
+        if (graphNames) return bound.setSet(GRAPH_NAMES, CassandraIOUtils.graphNames(graphsOf), String.class);
+        // reads trust recorded graph names, so any recorded by an earlier write must not outlive this one
+        return bound.getPreparedStatement().getVariableDefinitions().contains(GRAPH_NAMES)
+            ? bound.setToNull(GRAPH_NAMES)
+            : bound;
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+
+/**
+ * Scans a table a page at a time, making a write for each row read while keeping a bounded number of writes in
+ * flight. Reading waits while that bound is reached. The first write to fail ends the scan, and is thrown once the
+ * writes still in flight have finished.
+ */
+final class ThrottledWrites {
+
+    private static final Logger LOGGER = getLogger(ThrottledWrites.class);
+
+    private final CqlSession session;
+
+    private final ConsistencyLevel consistency;
+
+    private final int pageSize;
+
+    private final int concurrency;
+
+    /**
+     * @param session the cassandra session
+     * @param consistency the consistency level of both the scan and the writes
+     * @param pageSize the number of rows to read at a time
+     * @param concurrency the number of writes to have in flight at once
+     */
+    ThrottledWrites(final CqlSession session, final ConsistencyLevel consistency, final int pageSize,
+            final int concurrency) {
+        if (pageSize < 1) throw new IllegalArgumentException("Backfill page size < 1!");
+        if (concurrency < 1) throw new IllegalArgumentException("Backfill concurrency < 1!");
+        this.session = session;
+        this.consistency = consistency;
+        this.pageSize = pageSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Run a scan, blocking until it and every write it made have finished.
+     *
+     * @param scan the scan
+     * @param write the write for a row, or {@code null} if nothing is to be written for it
+     * @param written what is written, to report progress
+     * @return the number of writes made
+     */
+    long run(final BoundStatement scan, final Function<Row, BoundStatement> write, final String written) {
+        final Semaphore inFlight = new Semaphore(concurrency);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        long count = 0;
+        for (final Row row : session.execute(scan.setPageSize(pageSize).setConsistencyLevel(consistency))) {
+            if (failure.get() != null) break;
+            final BoundStatement statement = write.apply(row);
+            if (statement == null) continue;
+            inFlight.acquireUninterruptibly();
+            session.executeAsync(statement.setConsistencyLevel(consistency))
+                .whenComplete((r, e) -> {
+                    if (e != null) failure.compareAndSet(null, e);
+                    inFlight.release();
+                });
+            if (++count % pageSize == 0) LOGGER.info("Backfilled {} {}", count, written);
+        }
+        inFlight.acquireUninterruptibly(concurrency);
+        if (failure.get() != null) throw new CompletionException(failure.get());
+        return count;
+    }
+}
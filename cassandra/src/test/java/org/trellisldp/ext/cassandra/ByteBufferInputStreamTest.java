@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
@@ -87,4 +88,23 @@ class ByteBufferInputStreamTest {
         for (int i : testByteArray)
             assertEquals(i, stream.read());
     }
+
+    @Test
+    void transferToWorks() throws IOException {
+        final ByteBufferInputStream stream = new ByteBufferInputStream(ByteBuffer.wrap(testByteArray));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stream.skip(2);
+        assertEquals(5, stream.transferTo(out));
+        assertArrayEquals(new byte[] { 3, 4, 3, 2, 1 }, out.toByteArray());
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    void transferToWorksWithoutArray() throws IOException {
+        final ByteBufferInputStream stream = new ByteBufferInputStream(testData());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(7, stream.transferTo(out));
+        assertArrayEquals(testByteArray, out.toByteArray());
+        assertEquals(0, stream.available());
+    }
 }
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.trellisldp.api.BinaryMetadata.builder;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.Binary;
+import org.trellisldp.api.DefaultIdentifierService;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.ext.cassandra.query.binary.ChunkStore;
+import org.trellisldp.ext.cassandra.query.binary.Delete;
+import org.trellisldp.ext.cassandra.query.binary.GetChunkSize;
+import org.trellisldp.ext.cassandra.query.binary.Insert;
+import org.trellisldp.ext.cassandra.query.binary.Read;
+
+@ExtendWith(MockitoExtension.class)
+class CassandraBinaryServiceTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private static final int CHUNK_SIZE = 4;
+
+    private final IRI id = rdf.createIRI("trellis:data/binary");
+
+    private final List<CompletableFuture<Void>> inserts = new CopyOnWriteArrayList<>();
+
+    @Mock
+    private Insert mockInsert;
+
+    @Mock
+    private Delete mockDelete;
+
+    @Mock
+    private GetChunkSize mockGet;
+
+    @Mock
+    private ChunkStore mockChunkStore;
+
+    @Mock
+    private Read mockRead;
+
+    @Mock
+    private Row mockRow;
+
+    @Mock
+    private ColumnDefinitions mockColumns;
+
+    private CassandraBinaryService service(final int concurrency, final long budget) {
+        return service(concurrency, budget, 0);
+    }
+
+    private CassandraBinaryService service(final int concurrency, final long budget, final int inlineThreshold) {
+        when(mockInsert.execute(eq(id), eq(CHUNK_SIZE), anyInt(), any(ByteBuffer.class))).thenAnswer(inv -> {
+            final CompletableFuture<Void> insert = new CompletableFuture<>();
+            inserts.add(insert);
+            return insert;
+        });
+        return new CassandraBinaryService(new DefaultIdentifierService(), null, mockInsert, mockDelete, null, null,
+                null, null, CHUNK_SIZE, concurrency, budget, "SHA-256", inlineThreshold);
+    }
+
+    private static InputStream bytes(final int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    @Test
+    void boundedInFlight() {
+        final CompletableFuture<Void> upload = service(2, Long.MAX_VALUE)
+            .setContent(builder(id).build(), bytes(10 * CHUNK_SIZE)).toCompletableFuture();
+        verify(mockInsert, timeout(1000)).execute(eq(id), eq(CHUNK_SIZE), eq(1), any(ByteBuffer.class));
+        verify(mockInsert, after(100).never()).execute(eq(id), eq(CHUNK_SIZE), eq(2), any(ByteBuffer.class));
+        assertFalse(upload.isDone(), "Upload should wait for inserts in flight!");
+
+        inserts.get(0).complete(null);
+        verify(mockInsert, timeout(1000)).execute(eq(id), eq(CHUNK_SIZE), eq(2), any(ByteBuffer.class));
+        while (!upload.isDone()) {
+            inserts.forEach(insert -> insert.complete(null));
+        }
+        upload.join();
+        // ten full chunks and an empty chunk are read, but the trailing empty chunk is not written
+        assertEquals(10, inserts.size(), "Wrong number of chunks written!");
+    }
+
+    @Test
+    void budgetLimitsInFlight() {
+        final CompletableFuture<Void> upload = service(8, CHUNK_SIZE).setContent(builder(id).build(), bytes(10))
+            .toCompletableFuture();
+        verify(mockInsert, timeout(1000)).execute(eq(id), eq(CHUNK_SIZE), eq(0), any(ByteBuffer.class));
+        verify(mockInsert, after(100).never()).execute(eq(id), eq(CHUNK_SIZE), eq(1), any(ByteBuffer.class));
+        while (!upload.isDone()) {
+            inserts.forEach(insert -> insert.complete(null));
+        }
+        upload.join();
+        assertEquals(3, inserts.size(), "Wrong number of chunks written!");
+    }
+
+    @Test
+    void emptyBinary() {
+        final CompletableFuture<Void> upload = service(2, Long.MAX_VALUE).setContent(builder(id).build(), bytes(0))
+            .toCompletableFuture();
+        verify(mockInsert, timeout(1000)).execute(eq(id), eq(CHUNK_SIZE), eq(0), any(ByteBuffer.class));
+        inserts.get(0).complete(null);
+        upload.join();
+        assertEquals(1, inserts.size(), "An empty binary should be written as one empty chunk!");
+    }
+
+    @Test
+    void failedInsertPurges() {
+        when(mockDelete.execute(id)).thenReturn(completedFuture(null));
+        final RuntimeException error = new RuntimeException("Expected");
+        final CompletableFuture<Void> upload = service(2, Long.MAX_VALUE)
+            .setContent(builder(id).build(), bytes(10 * CHUNK_SIZE)).toCompletableFuture();
+        verify(mockInsert, timeout(1000)).execute(eq(id), eq(CHUNK_SIZE), eq(1), any(ByteBuffer.class));
+        inserts.get(1).completeExceptionally(error);
+        inserts.get(0).complete(null);
+        final CompletionException e = assertThrows(CompletionException.class, upload::join, "Upload should fail!");
+        assertSame(error, e.getCause(), "Wrong cause of failure!");
+        verify(mockDelete).execute(id);
+        inserts.forEach(insert -> assertTrue(insert.isDone(), "Purge should wait for every insert in flight!"));
+    }
+
+    @Test
+    void failedReadPurges() {
+        when(mockDelete.execute(id)).thenReturn(completedFuture(null));
+        final InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Expected");
+            }
+        };
+        final CompletableFuture<Void> upload = new CassandraBinaryService(new DefaultIdentifierService(), null,
+                mockInsert, mockDelete, null, null, null, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "none", 0)
+            .setContent(builder(id).build(), failing).toCompletableFuture();
+        final CompletionException e = assertThrows(CompletionException.class, upload::join, "Upload should fail!");
+        assertEquals("Expected", e.getCause().getCause().getMessage(), "Wrong cause of failure!");
+        verify(mockDelete).execute(id);
+        verify(mockInsert, never()).execute(any(IRI.class), anyInt(), anyInt(), any(ByteBuffer.class));
+    }
+
+    @Test
+    void metadataRecorded() throws NoSuchAlgorithmException {
+        final byte[] content = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        when(mockInsert.recordsMetadata()).thenReturn(true);
+        when(mockInsert.executeMetadata(eq(id), eq(10L), eq(CHUNK_SIZE), eq(3), eq("SHA-256"),
+                    aryEq(MessageDigest.getInstance("SHA-256").digest(content)), isNull()))
+            .thenReturn(completedFuture(null));
+        final CompletableFuture<Void> upload = service(8, Long.MAX_VALUE)
+            .setContent(builder(id).build(), new ByteArrayInputStream(content)).toCompletableFuture();
+        while (!upload.isDone()) {
+            inserts.forEach(insert -> insert.complete(null));
+        }
+        upload.join();
+        assertEquals(3, inserts.size(), "Wrong number of chunks written!");
+    }
+
+    @Test
+    void metadataRead() {
+        final byte[] digest = new byte[] { 1, 2, 3 };
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockRow));
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains("size")).thenReturn(true);
+        when(mockRow.getInt("chunkSize")).thenReturn(CHUNK_SIZE);
+        when(mockRow.getLong("size")).thenReturn(10L);
+        when(mockRow.getInt("chunkCount")).thenReturn(3);
+        when(mockRow.getString("digestAlgorithm")).thenReturn("SHA-256");
+        when(mockRow.getByteBuffer("digest")).thenReturn(ByteBuffer.wrap(digest));
+        final Binary binary = new CassandraBinaryService(new DefaultIdentifierService(), mockGet, null, null, null,
+                null, null, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "SHA-256", 0).get(id).toCompletableFuture().join();
+        final CassandraBinary cassandraBinary = (CassandraBinary) binary;
+        assertEquals(Long.valueOf(10), cassandraBinary.getSize().orElse(null), "Wrong size!");
+        assertEquals(Integer.valueOf(3), cassandraBinary.getChunkCount().orElse(null), "Wrong chunk count!");
+        assertEquals(Base64.getEncoder().encodeToString(digest), cassandraBinary.getDigest("sha-256").orElse(null),
+                "Wrong digest!");
+        assertFalse(cassandraBinary.getDigest("MD5").isPresent(), "No MD5 digest was recorded!");
+    }
+
+    @Test
+    void legacyBinaryRead() {
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockRow));
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockRow.getInt("chunkSize")).thenReturn(CHUNK_SIZE);
+        final CassandraBinary binary = (CassandraBinary) new CassandraBinaryService(new DefaultIdentifierService(),
+                mockGet, null, null, null, null, null, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "SHA-256", 0).get(id)
+            .toCompletableFuture().join();
+        assertFalse(binary.getSize().isPresent(), "Legacy binaries have no recorded size!");
+        assertFalse(binary.getDigest("SHA-256").isPresent(), "Legacy binaries have no recorded digest!");
+    }
+
+    @Test
+    void badDigestAlgorithm() {
+        assertThrows(IllegalArgumentException.class, () -> new CassandraBinaryService(new DefaultIdentifierService(),
+                    null, null, null, null, null, null, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "NOT-A-DIGEST", 0),
+                "Unknown digest algorithms should be rejected!");
+    }
+
+    @Test
+    void smallBinaryInline() throws NoSuchAlgorithmException {
+        final byte[] content = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        when(mockInsert.recordsMetadata()).thenReturn(true);
+        when(mockInsert.executeInline(eq(id), eq(CHUNK_SIZE), eq(ByteBuffer.wrap(content)), eq("SHA-256"),
+                    aryEq(MessageDigest.getInstance("SHA-256").digest(content)))).thenReturn(completedFuture(null));
+        final CassandraBinaryService service = new CassandraBinaryService(new DefaultIdentifierService(), null,
+                mockInsert, mockDelete, null, null, null, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "SHA-256", 10);
+        service.setContent(builder(id).build(), new ByteArrayInputStream(content)).toCompletableFuture().join();
+        verify(mockInsert, never()).execute(any(IRI.class), anyInt(), anyInt(), any(ByteBuffer.class));
+    }
+
+    @Test
+    void largeBinaryNotInline() throws NoSuchAlgorithmException {
+        final byte[] content = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        when(mockInsert.recordsMetadata()).thenReturn(true);
+        when(mockInsert.executeMetadata(eq(id), eq(10L), eq(CHUNK_SIZE), eq(3), eq("SHA-256"),
+                    aryEq(MessageDigest.getInstance("SHA-256").digest(content)), isNull()))
+            .thenReturn(completedFuture(null));
+        final CompletableFuture<Void> upload = service(8, Long.MAX_VALUE, 9)
+            .setContent(builder(id).build(), new ByteArrayInputStream(content)).toCompletableFuture();
+        while (!upload.isDone()) {
+            inserts.forEach(insert -> insert.complete(null));
+        }
+        upload.join();
+        assertEquals(3, inserts.size(), "Wrong number of chunks written!");
+    }
+
+    @Test
+    void inlineRead() throws IOException {
+        final byte[] content = new byte[] { 1, 2, 3, 4, 5 };
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockRow));
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains("size")).thenReturn(true);
+        when(mockRow.getInt("chunkSize")).thenReturn(CHUNK_SIZE);
+        when(mockRow.getByteBuffer("inline")).thenReturn(ByteBuffer.wrap(content));
+        final CassandraBinary binary = (CassandraBinary) new CassandraBinaryService(new DefaultIdentifierService(),
+                mockGet, null, null, null, null, null, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "SHA-256", 10).get(id)
+            .toCompletableFuture().join();
+        assertEquals(Long.valueOf(5), binary.getSize().orElse(null), "Wrong size!");
+        try (InputStream stream = binary.getContent()) {
+            assertArrayEquals(content, stream.readAllBytes(), "Wrong content!");
+        }
+        try (InputStream stream = binary.getContent(1, 2)) {
+            assertArrayEquals(new byte[] { 2, 3 }, stream.readAllBytes(), "Wrong range!");
+        }
+        try (InputStream stream = binary.getContent(3, 10)) {
+            assertArrayEquals(new byte[] { 4, 5 }, stream.readAllBytes(), "Wrong range past the end!");
+        }
+    }
+
+    private CassandraBinaryService dedupService() {
+        when(mockInsert.recordsMetadata()).thenReturn(true);
+        when(mockChunkStore.isEnabled()).thenReturn(true);
+        return new CassandraBinaryService(new DefaultIdentifierService(), mockGet, mockInsert, mockDelete, mockRead,
+                null, mockChunkStore, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "SHA-256", 0);
+    }
+
+    private static ByteBuffer hash(final byte[] chunk) throws NoSuchAlgorithmException {
+        return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(chunk));
+    }
+
+    @Test
+    void dedupStoresChunksByHash() throws NoSuchAlgorithmException {
+        final byte[] content = new byte[] { 1, 2, 3, 4, 1, 2, 3, 4 };
+        final ByteBuffer hash = hash(new byte[] { 1, 2, 3, 4 });
+        final CassandraBinaryService service = dedupService();
+        when(mockGet.execute(id)).thenReturn(completedFuture(null));
+        when(mockChunkStore.put(eq(hash), any(ByteBuffer.class))).thenReturn(completedFuture(null));
+        when(mockInsert.executeMetadata(eq(id), eq(8L), eq(CHUNK_SIZE), eq(2), eq("SHA-256"),
+                    aryEq(MessageDigest.getInstance("SHA-256").digest(content)), eq(List.of(hash, hash))))
+            .thenReturn(completedFuture(null));
+        service.setContent(builder(id).build(), new ByteArrayInputStream(content)).toCompletableFuture().join();
+        verify(mockChunkStore, times(2)).put(eq(hash), any(ByteBuffer.class));
+        verify(mockInsert, never()).execute(any(IRI.class), anyInt(), anyInt(), any(ByteBuffer.class));
+    }
+
+    @Test
+    void dedupFailureReleasesStoredChunks() throws NoSuchAlgorithmException {
+        final RuntimeException error = new RuntimeException("Expected");
+        final ByteBuffer first = hash(new byte[] { 1, 2, 3, 4 });
+        final CassandraBinaryService service = dedupService();
+        when(mockGet.execute(id)).thenReturn(completedFuture(null));
+        when(mockChunkStore.put(eq(first), any(ByteBuffer.class))).thenReturn(completedFuture(null));
+        when(mockChunkStore.put(eq(hash(new byte[] { 5, 6, 7, 8 })), any(ByteBuffer.class)))
+            .thenReturn(failedFuture(error));
+        when(mockDelete.execute(id)).thenReturn(completedFuture(null));
+        when(mockChunkStore.releaseAll(List.of(first))).thenReturn(completedFuture(null));
+        final CompletableFuture<Void> upload = service.setContent(builder(id).build(),
+                new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 })).toCompletableFuture();
+        final CompletionException e = assertThrows(CompletionException.class, upload::join, "Upload should fail!");
+        assertSame(error, e.getCause(), "Wrong cause of failure!");
+        verify(mockDelete).execute(id);
+        verify(mockChunkStore).releaseAll(List.of(first));
+    }
+
+    @Test
+    void overwriteReleasesReplacedChunks() throws NoSuchAlgorithmException {
+        final List<ByteBuffer> replaced = List.of(hash(new byte[] { 9, 9, 9, 9 }), hash(new byte[] { 9 }));
+        final ByteBuffer hash = hash(new byte[] { 1, 2, 3, 4 });
+        final CassandraBinaryService service = dedupService();
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockRow));
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains("chunkHashes")).thenReturn(true);
+        when(mockRow.getList("chunkHashes", ByteBuffer.class)).thenReturn(replaced);
+        when(mockChunkStore.put(eq(hash), any(ByteBuffer.class))).thenReturn(completedFuture(null));
+        final CompletableFuture<Void> metadata = new CompletableFuture<>();
+        when(mockInsert.executeMetadata(eq(id), eq(4L), eq(CHUNK_SIZE), eq(1), eq("SHA-256"), any(byte[].class),
+                    eq(List.of(hash)))).thenReturn(metadata);
+        when(mockChunkStore.releaseAll(replaced)).thenReturn(completedFuture(null));
+        final CompletableFuture<Void> upload = service.setContent(builder(id).build(),
+                new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 })).toCompletableFuture();
+        verify(mockInsert, timeout(1000)).executeMetadata(eq(id), eq(4L), eq(CHUNK_SIZE), eq(1), eq("SHA-256"),
+                any(byte[].class), eq(List.of(hash)));
+        verify(mockChunkStore, never()).releaseAll(replaced);
+
+        metadata.complete(null);
+        upload.join();
+        verify(mockChunkStore).releaseAll(replaced);
+    }
+
+    @Test
+    void dedupRequiresMetadata() {
+        when(mockChunkStore.isEnabled()).thenReturn(true);
+        assertThrows(IllegalArgumentException.class, () -> new CassandraBinaryService(new DefaultIdentifierService(),
+                    null, mockInsert, null, null, null, mockChunkStore, null, CHUNK_SIZE, 2, Long.MAX_VALUE, "SHA-256",
+                    0),
+                "Storing chunks by hash without metadata should be rejected!");
+    }
+
+    @Test
+    void hashedRead() throws NoSuchAlgorithmException {
+        final List<ByteBuffer> hashes = List.of(hash(new byte[] { 1, 2, 3, 4 }), hash(new byte[] { 5 }));
+        final InputStream content = new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 });
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockRow));
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains("size")).thenReturn(true);
+        when(mockColumns.contains("chunkHashes")).thenReturn(true);
+        when(mockRow.getInt("chunkSize")).thenReturn(CHUNK_SIZE);
+        when(mockRow.getLong("size")).thenReturn(5L);
+        when(mockRow.getList("chunkHashes", ByteBuffer.class)).thenReturn(hashes);
+        when(mockRead.execute(id, hashes)).thenReturn(completedFuture(content));
+        final CassandraBinary binary = (CassandraBinary) dedupService().get(id).toCompletableFuture().join();
+        assertEquals(Integer.valueOf(2), binary.getChunkCount().orElse(null), "Wrong chunk count!");
+        assertSame(content, binary.getContent(), "Content should be read by the hashes of its chunks!");
+    }
+
+    @Test
+    void purgeReleasesChunks() throws NoSuchAlgorithmException {
+        final List<ByteBuffer> hashes = List.of(hash(new byte[] { 1, 2, 3, 4 }), hash(new byte[] { 5 }));
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockRow));
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains("chunkHashes")).thenReturn(true);
+        when(mockRow.getList("chunkHashes", ByteBuffer.class)).thenReturn(hashes);
+        when(mockDelete.execute(id)).thenReturn(completedFuture(null));
+        when(mockChunkStore.releaseAll(hashes)).thenReturn(completedFuture(null));
+        dedupService().purgeContent(id).toCompletableFuture().join();
+        verify(mockDelete).execute(id);
+        verify(mockChunkStore).releaseAll(hashes);
+    }
+
+    private CassandraBinaryService compressingService() {
+        when(mockInsert.recordsCompression()).thenReturn(true);
+        return new CassandraBinaryService(new DefaultIdentifierService(), null, mockInsert, mockDelete, null, null,
+                null, new ChunkCompression(ChunkCompression.DEFLATE, "text/*"), 1024, 2, Long.MAX_VALUE, "none", 0);
+    }
+
+    @Test
+    void compressibleChunksCompressed() {
+        final byte[] content = new byte[2048];
+        Arrays.fill(content, (byte) 'a');
+        final List<byte[]> written = new CopyOnWriteArrayList<>();
+        final CassandraBinaryService service = compressingService();
+        when(mockInsert.execute(eq(id), eq(1024), anyInt(), any(ByteBuffer.class), eq(ChunkCompression.DEFLATE)))
+            .thenAnswer(inv -> {
+                final ByteBuffer chunk = inv.getArgument(3, ByteBuffer.class).duplicate();
+                try (InputStream stream = ChunkCompression.decompress(new ByteBufferInputStream(chunk),
+                            ChunkCompression.DEFLATE)) {
+                    written.add(stream.readAllBytes());
+                }
+                return completedFuture(null);
+            });
+        service.setContent(builder(id).mimeType("text/plain; charset=UTF-8").build(),
+                new ByteArrayInputStream(content)).toCompletableFuture().join();
+        assertEquals(2, written.size(), "Wrong number of chunks written!");
+        written.forEach(chunk -> assertArrayEquals(Arrays.copyOf(content, 1024), chunk, "Wrong chunk content!"));
+        verify(mockInsert, never()).execute(any(IRI.class), anyInt(), anyInt(), any(ByteBuffer.class));
+    }
+
+    @Test
+    void otherTypesNotCompressed() {
+        final CassandraBinaryService service = compressingService();
+        when(mockInsert.execute(eq(id), eq(1024), anyInt(), any(ByteBuffer.class)))
+            .thenReturn(completedFuture(null));
+        service.setContent(builder(id).mimeType("image/png").build(), bytes(2048)).toCompletableFuture().join();
+        verify(mockInsert, times(2)).execute(eq(id), eq(1024), anyInt(), any(ByteBuffer.class));
+        verify(mockInsert, never()).execute(any(IRI.class), anyInt(), anyInt(), any(ByteBuffer.class), any());
+    }
+
+    @Test
+    void compressionRequiresRecording() {
+        assertThrows(IllegalArgumentException.class, () -> new CassandraBinaryService(new DefaultIdentifierService(),
+                    null, mockInsert, null, null, null, null, new ChunkCompression(ChunkCompression.DEFLATE, "text/*"),
+                    CHUNK_SIZE, 2, Long.MAX_VALUE, "none", 0),
+                "Compressing chunks where it cannot be recorded should be rejected!");
+    }
+}
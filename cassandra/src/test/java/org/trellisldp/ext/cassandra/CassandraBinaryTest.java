@@ -85,4 +85,28 @@ class CassandraBinaryTest {
         content.read(result);
         assertArrayEquals(copyOfRange(bytes, 3, 6), result, "Wrong bytes!");
     }
+
+    @Test
+    void contentBeyondTwoGibibytes() throws IOException {
+        final int chunkLength = 1 << 20;
+        final long from = (5000L << 20) + 2;
+        final byte[] bytes = new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+        when(mockReadRange.execute(testId, 5000, 5000)).thenReturn(completedFuture(new ByteArrayInputStream(bytes)));
+        final CassandraBinary testCassandraBinary = new CassandraBinary(testId, mockRead, mockReadRange, chunkLength);
+        try (InputStream content = testCassandraBinary.getContent(from, from + 3)) {
+            assertArrayEquals(copyOfRange(bytes, 2, 6), content.readAllBytes(), "Wrong bytes!");
+        }
+    }
+
+    @Test
+    void invertedRange() throws IOException {
+        final InputStream testInputStream = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+        when(mockReadRange.execute(any(), anyInt(), anyInt())).thenReturn(completedFuture(testInputStream));
+        final CassandraBinary testCassandraBinary = new CassandraBinary(testId, mockRead, mockReadRange, testChunkSize);
+        try (InputStream content = testCassandraBinary.getContent(2L, 1L)) {
+            assertEquals(-1, content.read(), "Inverted range should be empty!");
+        }
+        assertThrows(IllegalArgumentException.class, () -> testCassandraBinary.getContent(-1L, 1L),
+                "Negative offset should be rejected!");
+    }
 }
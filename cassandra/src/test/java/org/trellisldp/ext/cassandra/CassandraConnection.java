@@ -32,6 +32,7 @@ import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.slf4j.Logger;
 import org.trellisldp.api.IdentifierService;
+import org.trellisldp.ext.cassandra.query.binary.ChunkStore;
 import org.trellisldp.ext.cassandra.query.binary.GetChunkSize;
 import org.trellisldp.ext.cassandra.query.binary.Insert;
 import org.trellisldp.ext.cassandra.query.binary.Read;
@@ -43,6 +44,7 @@ import org.trellisldp.ext.cassandra.query.rdf.GetFirstMemento;
 import org.trellisldp.ext.cassandra.query.rdf.GetMemento;
 import org.trellisldp.ext.cassandra.query.rdf.ImmutableInsert;
 import org.trellisldp.ext.cassandra.query.rdf.ImmutableRetrieve;
+import org.trellisldp.ext.cassandra.query.rdf.MementoChain;
 import org.trellisldp.ext.cassandra.query.rdf.Mementoize;
 import org.trellisldp.ext.cassandra.query.rdf.Mementos;
 import org.trellisldp.ext.cassandra.query.rdf.MutableInsert;
@@ -51,7 +53,9 @@ import org.trellisldp.ext.cassandra.query.rdf.Touch;
 class CassandraConnection implements AfterAllCallback, BeforeAllCallback {
 
     private static final String[] CLEANOUT_QUERIES = new String[] { "TRUNCATE metadata ; ", "TRUNCATE mutabledata ; ",
-            "TRUNCATE immutabledata ;", "TRUNCATE binarydata ;", "TRUNCATE mementodata ;" };
+            "TRUNCATE immutabledata ;", "TRUNCATE binarydata ;", "TRUNCATE mementodata ;", "TRUNCATE containment ;",
+            "TRUNCATE binarymeta ;", "TRUNCATE chunkstore ;", "TRUNCATE chunkrefs ;",
+            "TRUNCATE mementotime ;" };
 
     private static final DefaultConsistencyLevel testConsistency = ONE;
 
@@ -59,7 +63,7 @@ class CassandraConnection implements AfterAllCallback, BeforeAllCallback {
 
     private static final String keyspace = "trellis";
 
-    private CqlSession session;
+    CqlSession session;
 
     CassandraResourceService resourceService;
 
@@ -90,17 +94,20 @@ class CassandraConnection implements AfterAllCallback, BeforeAllCallback {
                         new MutableInsert(session, testConsistency),
                         new Touch(session, testConsistency),
                         new ImmutableRetrieve(session, testConsistency),
-                        new BasicContainment(session, testConsistency));
+                        new BasicContainment(session, testConsistency),
+                        new CassandraResourceCache());
         resourceService.initializeRoot();
         this.mementoService = new CassandraMementoService(new Mementos(session, testConsistency),
                         new Mementoize(session, testConsistency), new GetMemento(session, testConsistency),
-                        new GetFirstMemento(session, testConsistency));
+                        new GetFirstMemento(session, testConsistency), new MementoChain(session, testConsistency));
         this.binaryService = new CassandraBinaryService((IdentifierService) null,
                         new GetChunkSize(session, testConsistency),
                         new Insert(session, testConsistency),
                         new org.trellisldp.ext.cassandra.query.binary.Delete(session, testConsistency),
                         new Read(session, testConsistency),
-                        new ReadRange(session, testConsistency));
+                        new ReadRange(session, testConsistency),
+                        new ChunkStore(session, testConsistency),
+                        new ChunkCompression());
         if (cleanBefore) cleanOut();
     }
 
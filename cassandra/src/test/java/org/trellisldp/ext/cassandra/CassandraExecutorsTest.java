@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+class CassandraExecutorsTest {
+
+    @Test
+    void sharedPools() {
+        assertSame(CassandraExecutors.writes(), CassandraExecutors.writes(), "Write pool should be shared!");
+        assertSame(CassandraExecutors.reads(), CassandraExecutors.reads(), "Read pool should be shared!");
+        assertNotSame(CassandraExecutors.reads(), CassandraExecutors.writes(), "Reads and writes should not share!");
+        assertNotSame(CassandraExecutors.uploads(), CassandraExecutors.writes(),
+                "Uploads and writes should not share!");
+        assertNotSame(CassandraExecutors.jobs(), CassandraExecutors.writes(), "Jobs and writes should not share!");
+        assertNotSame(CassandraExecutors.jobs(), CassandraExecutors.reads(), "Jobs and reads should not share!");
+    }
+
+    @Test
+    void saturatedPoolRejects() throws InterruptedException {
+        final CassandraExecutors.Pool pool = new CassandraExecutors.Pool("test", 1, 1, false);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> {
+                running.countDown();
+                await(release);
+            });
+            running.await();
+            pool.execute(() -> { });
+            assertEquals(1, pool.getActiveCount(), "Wrong active count!");
+            assertEquals(1, pool.getQueueSize(), "Wrong queue size!");
+            assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }), "Task should be rejected!");
+            assertEquals(1L, pool.getRejectedCount(), "Wrong rejected count!");
+            assertEquals(2, pool.getCapacity(), "Wrong capacity!");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void virtualPoolIsBounded() throws InterruptedException {
+        final CassandraExecutors.Pool pool = new CassandraExecutors.Pool("test", 1, 1, true);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> await(release));
+            pool.execute(() -> await(release));
+            assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }), "Task should be rejected!");
+            assertEquals(1L, pool.getRejectedCount(), "Wrong rejected count!");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void badLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new CassandraExecutors.Pool("test", 0, 1, false));
+        assertThrows(IllegalArgumentException.class, () -> new CassandraExecutors.Pool("test", 1, 0, false));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
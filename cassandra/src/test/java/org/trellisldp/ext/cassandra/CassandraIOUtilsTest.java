@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.trellisldp.api.TrellisUtils.TRELLIS_DATA_PREFIX;
+import static org.trellisldp.ext.cassandra.CassandraIOUtils.GRAPH_NAMES;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+import static org.trellisldp.vocabulary.RDF.type;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.LDP;
+import org.trellisldp.vocabulary.Trellis;
+
+@ExtendWith(MockitoExtension.class)
+class CassandraIOUtilsTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    @Mock
+    private Row mockRow;
+
+    @Mock
+    private ColumnDefinitions mockColumns;
+
+    @Test
+    void roundTripThrift() {
+        final Dataset dataset = testDataset();
+        final ByteBuffer bytes = CassandraIOUtils.serializeBinary(dataset);
+        assertEquals(dataset.stream().filter(q -> !q.getGraphName().filter(Trellis.PreferServerManaged::equals)
+                    .isPresent()).collect(toSet()),
+                CassandraIOUtils.parse(bytes).stream().collect(toSet()), "Thrift did not round-trip!");
+    }
+
+    @Test
+    void emptyDatasets() {
+        assertNull(CassandraIOUtils.serializeBinary(rdf.createDataset()), "Empty dataset should not be stored!");
+        assertNull(CassandraIOUtils.serializeBinary(null), "Null dataset should not be stored!");
+        assertEquals(0L, CassandraIOUtils.parse((ByteBuffer) null).size(), "Missing bytes should parse as empty!");
+    }
+
+    @Test
+    void parseBinaryColumn() {
+        final Dataset dataset = testDataset();
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(QUADS_BINARY)).thenReturn(true);
+        when(mockRow.isNull(QUADS_BINARY)).thenReturn(false);
+        when(mockRow.getByteBuffer(QUADS_BINARY)).thenReturn(CassandraIOUtils.serializeBinary(dataset));
+        assertEquals(2L, CassandraIOUtils.parse(mockRow).size(), "Wrong number of quads from binary column!");
+    }
+
+    @Test
+    void parseLegacyColumn() {
+        final Dataset dataset = testDataset();
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(QUADS_BINARY)).thenReturn(true);
+        when(mockRow.isNull(QUADS_BINARY)).thenReturn(true);
+        when(mockRow.getString(QUADS)).thenReturn(CassandraIOUtils.serialize(dataset));
+        assertEquals(2L, CassandraIOUtils.parse(mockRow).size(), "Wrong number of quads from text column!");
+    }
+
+    @Test
+    void parseUnmigratedRow() {
+        final Dataset dataset = testDataset();
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(QUADS_BINARY)).thenReturn(false);
+        when(mockRow.getString(QUADS)).thenReturn(CassandraIOUtils.serialize(dataset));
+        assertEquals(2L, CassandraIOUtils.parse(mockRow).size(), "Wrong number of quads from unmigrated row!");
+    }
+
+    @Test
+    void graphNamesExcludeServerManaged() {
+        final Dataset dataset = testDataset();
+        dataset.add(Trellis.PreferAccessControl, rdf.createIRI(TRELLIS_DATA_PREFIX + "resource"), DC.title,
+                rdf.createLiteral("An ACL"));
+        assertEquals(Set.of(Trellis.PreferUserManaged.getIRIString(), Trellis.PreferAccessControl.getIRIString()),
+                CassandraIOUtils.graphNames(dataset), "Wrong graph names!");
+        assertTrue(CassandraIOUtils.graphNames((Dataset) null).isEmpty(), "Null dataset should have no graphs!");
+    }
+
+    @Test
+    void graphNamesFromRow() {
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(GRAPH_NAMES)).thenReturn(true);
+        when(mockRow.isNull(GRAPH_NAMES)).thenReturn(false);
+        when(mockRow.getSet(GRAPH_NAMES, String.class)).thenReturn(Set.of(Trellis.PreferAccessControl.getIRIString()));
+        assertEquals(Set.of(Trellis.PreferAccessControl), CassandraIOUtils.graphNames(mockRow).orElseThrow(),
+                "Wrong graph names from row!");
+    }
+
+    @Test
+    void graphNamesMissingFromRow() {
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(GRAPH_NAMES)).thenReturn(false);
+        assertFalse(CassandraIOUtils.graphNames(mockRow).isPresent(), "Unmigrated row should have no graph names!");
+    }
+
+    private static Dataset testDataset() {
+        final IRI id = rdf.createIRI(TRELLIS_DATA_PREFIX + "resource");
+        final Dataset dataset = rdf.createDataset();
+        dataset.add(Trellis.PreferUserManaged, id, DC.title, rdf.createLiteral("A title"));
+        dataset.add(Trellis.PreferUserManaged, id, DC.relation, rdf.createIRI(TRELLIS_DATA_PREFIX + "other"));
+        dataset.add(Trellis.PreferServerManaged, id, type, LDP.RDFSource);
+        return dataset;
+    }
+}
@@ -15,11 +15,19 @@
  */
 package org.trellisldp.ext.cassandra;
 
+import static com.datastax.oss.driver.api.core.DefaultConsistencyLevel.ONE;
+import static java.time.temporal.ChronoUnit.SECONDS;
 import static java.util.UUID.randomUUID;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.trellisldp.api.Metadata.builder;
 
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+
 import java.time.Instant;
+import java.util.Optional;
 import java.util.SortedSet;
 
 import org.apache.commons.rdf.api.Dataset;
@@ -28,6 +36,11 @@ import org.apache.commons.rdf.api.Quad;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.trellisldp.api.Metadata;
+import org.trellisldp.api.Resource;
+import org.trellisldp.ext.cassandra.query.rdf.GetFirstMemento;
+import org.trellisldp.ext.cassandra.query.rdf.GetMemento;
+import org.trellisldp.ext.cassandra.query.rdf.MementoChain;
+import org.trellisldp.ext.cassandra.query.rdf.Mementoize;
 import org.trellisldp.vocabulary.DC;
 import org.trellisldp.vocabulary.LDP;
 import org.trellisldp.vocabulary.Trellis;
@@ -69,8 +82,68 @@ class CassandraMementoServiceIT extends CassandraServiceIT {
 
     }
 
+    @Test
+    void coalescedMementos() {
+        final IRI id = createIRI("http://example.com/testing/" + randomUUID());
+        final CqlSession session = connection.session;
+        final Mementoize mementoize = new Mementoize(session, ONE, QuadsFormat.NQUADS,
+                new MementoIndex(MementoIndex.Mode.TABLE), false, true, false);
+        final GetMemento getMemento = new GetMemento(session, ONE);
+        final GetFirstMemento getFirstMemento = new GetFirstMemento(session, ONE);
+        final MementoChain mementoChain = new MementoChain(session, ONE);
+        final CassandraMementoService deltas = new CassandraMementoService(null, mementoize, getMemento,
+                getFirstMemento, mementoChain, true, 3, false, true);
+        // as written by a node configured to store every Memento in full
+        final CassandraMementoService snapshots = new CassandraMementoService(null, mementoize, getMemento,
+                getFirstMemento, mementoChain, true, 1, false, true);
+        final Instant second = Instant.now().truncatedTo(SECONDS).minusSeconds(10);
+
+        deltas.put(version(id, second.plusMillis(200), "A title")).toCompletableFuture().join();
+        deltas.put(version(id, second.plusMillis(700), "Another title")).toCompletableFuture().join();
+        assertEquals(1L, count(session, "mementodata", id), "Writes in one second should share one Memento!");
+        assertEquals(1L, count(session, "mementotime", id), "Writes in one second should share one time!");
+        assertTrue(hasTitle(deltas.get(id, second).toCompletableFuture().join(), "Another title"),
+                "Last write in a second should win!");
+
+        final Instant next = second.plusSeconds(1);
+        deltas.put(version(id, next.plusMillis(200), "A third title")).toCompletableFuture().join();
+        final Row delta = mementoRow(session, id, next);
+        assertEquals(1, delta.getInt("deltadepth"), "Second Memento should be a delta!");
+        assertFalse(delta.isNull("removedquads"), "Delta should record the quads it removed!");
+        snapshots.put(version(id, next.plusMillis(700), "A fourth title")).toCompletableFuture().join();
+        final Row snapshot = mementoRow(session, id, next);
+        assertEquals(0, snapshot.getInt("deltadepth"), "Snapshot should reset the delta depth!");
+        assertTrue(snapshot.isNull("deltabase"), "Snapshot should have no base!");
+        assertTrue(snapshot.isNull("removedquads"), "Snapshot should keep no removed quads of the delta!");
+        assertEquals(2L, count(session, "mementodata", id), "Snapshot should replace the delta in the same second!");
+        assertTrue(hasTitle(deltas.get(id, next).toCompletableFuture().join(), "A fourth title"),
+                "Wrong coalesced Memento!");
+    }
+
     @Test
     void testNoArgCtor() {
         assertDoesNotThrow(() -> new CassandraMementoService());
     }
+
+    private Resource version(final IRI id, final Instant modified, final String title) {
+        final Dataset quads = rdfFactory.createDataset();
+        quads.add(Trellis.PreferUserManaged, id, DC.title, rdfFactory.createLiteral(title));
+        return new CassandraResource(builder(id).interactionModel(LDP.RDFSource).build(), modified, quads);
+    }
+
+    private boolean hasTitle(final Resource memento, final String title) {
+        return memento.dataset().contains(Optional.of(Trellis.PreferUserManaged), memento.getIdentifier(), DC.title,
+                rdfFactory.createLiteral(title));
+    }
+
+    private static long count(final CqlSession session, final String table, final IRI id) {
+        return session.execute(SimpleStatement.newInstance("SELECT count(*) FROM " + table
+                    + " WHERE identifier = ?", id.getIRIString()).setConsistencyLevel(ONE)).one().getLong(0);
+    }
+
+    private static Row mementoRow(final CqlSession session, final IRI id, final Instant second) {
+        return session.execute(SimpleStatement.newInstance("SELECT deltadepth, deltabase, removedquads FROM mementodata"
+                    + " WHERE identifier = ? AND created = ?", id.getIRIString(), Uuids.startOf(second.toEpochMilli()))
+                .setConsistencyLevel(ONE)).one();
+    }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.trellisldp.api.TrellisUtils.TRELLIS_DATA_PREFIX;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_BASE;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_DEPTH;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.REMOVED_QUADS;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.Metadata;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.api.Resource;
+import org.trellisldp.ext.cassandra.query.rdf.GetMemento;
+import org.trellisldp.ext.cassandra.query.rdf.MementoChain;
+import org.trellisldp.ext.cassandra.query.rdf.Mementoize;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.LDP;
+import org.trellisldp.vocabulary.Trellis;
+
+@ExtendWith(MockitoExtension.class)
+class CassandraMementoServiceTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private static final IRI ID = rdf.createIRI(TRELLIS_DATA_PREFIX + "resource");
+
+    @Mock
+    private Mementoize mockMementoize;
+
+    @Mock
+    private GetMemento mockGetMemento;
+
+    private final MementoChain mementoChain = spy(new MementoChain());
+
+    // the Mementos of the resource as stored, newest first
+    private final List<Row> stored = new ArrayList<>();
+
+    // the keys of the Mementos of the resource as recorded by time
+    private final Set<List<Object>> times = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mockMementoize.execute(any(), any(), any(), any())).thenAnswer(inv ->
+                store(inv.getArgument(1), inv.getArgument(3), inv.getArgument(2), null, 0, null));
+        lenient().when(mockMementoize.execute(any(), any(), any(), any(), any())).thenAnswer(inv ->
+                store(inv.getArgument(1), inv.getArgument(3), inv.getArgument(2), null, 0, null));
+        lenient().when(mockMementoize.execute(any(), any(), any(), any(), any(), any(), any(), anyInt(), any()))
+            .thenAnswer(inv -> store(inv.getArgument(1), inv.getArgument(3), inv.getArgument(5), inv.getArgument(6),
+                        inv.getArgument(7), inv.getArgument(4)));
+        lenient().doAnswer(inv -> completedFuture(results(stored.stream().limit(inv.getArgument(1, Integer.class))
+                        .collect(toList())))).when(mementoChain).execute(eq(ID), anyInt());
+        lenient().doAnswer(inv -> completedFuture(results(stored.stream()
+                        .filter(row -> row.getUuid("created").timestamp()
+                                <= inv.getArgument(1, UUID.class).timestamp())
+                        .limit(inv.getArgument(2, Integer.class)).collect(toList()))))
+            .when(mementoChain).execute(eq(ID), any(UUID.class), anyInt());
+    }
+
+    @Test
+    void interleavedWrites() {
+        final CassandraMementoService service = service(false);
+        final Dataset v1 = version("A title");
+        final Dataset v2 = version("Another title");
+        final Dataset v3 = version("A third title");
+        service.put(resource(Instant.ofEpochSecond(1), v1)).toCompletableFuture().join();
+        final Row first = stored.get(0);
+
+        // both writers read the Mementos before either has written its own
+        doReturn(completedFuture(results(List.of(first)))).when(mementoChain).execute(eq(ID), anyInt());
+        service.put(resource(Instant.ofEpochSecond(2), v2)).toCompletableFuture().join();
+        service.put(resource(Instant.ofEpochSecond(3), v3)).toCompletableFuture().join();
+
+        assertEquals(3, stored.size(), "Wrong number of Mementos!");
+        assertEquals(first.getUuid("created"), MementoDelta.base(stored.get(0)), "Wrong base for third Memento!");
+        assertEquals(first.getUuid("created"), MementoDelta.base(stored.get(1)), "Wrong base for second Memento!");
+        assertEquals(quads(v3), quads(read(service, stored.get(0))), "Wrong third Memento!");
+        assertEquals(quads(v2), quads(read(service, stored.get(1))), "Wrong second Memento!");
+    }
+
+    @Test
+    void writeNotBasedOnLaterMemento() {
+        final CassandraMementoService service = service(false);
+        final Dataset v1 = version("A title");
+        service.put(resource(Instant.ofEpochSecond(1), v1)).toCompletableFuture().join();
+        final Row first = stored.get(0);
+        // written concurrently by a writer whose Memento is created after this one, but stored first
+        stored.add(0, row(Instant.ofEpochSecond(3), uuid(Instant.now().plusSeconds(60)), MementoDelta.added(v1, v1),
+                MementoDelta.removed(v1, v1), 1, first.getUuid("created")));
+
+        final Dataset v2 = version("Another title");
+        service.put(resource(Instant.ofEpochSecond(2), v2)).toCompletableFuture().join();
+
+        final Row second = stored.get(1);
+        assertEquals(first.getUuid("created"), MementoDelta.base(second), "Delta should be based on an older Memento!");
+        assertEquals(quads(v2), quads(read(service, second)), "Wrong second Memento!");
+    }
+
+    @Test
+    void coalescedWritesShareOneKey() {
+        final CassandraMementoService service = service(1, true);
+        final Instant second = Instant.ofEpochSecond(10);
+        service.put(resource(second.plusMillis(200), version("A title"))).toCompletableFuture().join();
+        service.put(resource(second.plusMillis(700), version("Another title"))).toCompletableFuture().join();
+
+        assertEquals(1, stored.size(), "Writes in one second should share one Memento!");
+        assertEquals(uuid(second), stored.get(0).getUuid("created"), "Wrong key for coalesced Memento!");
+        assertEquals(Set.of(List.of(second, uuid(second))), times, "Writes in one second should share one time!");
+    }
+
+    @Test
+    void lastCoalescedWriteWins() {
+        final CassandraMementoService service = service(1, true);
+        final Instant second = Instant.ofEpochSecond(10);
+        final Dataset last = version("Another title");
+        service.put(resource(second.plusMillis(200), version("A title"))).toCompletableFuture().join();
+        service.put(resource(second.plusMillis(700), last)).toCompletableFuture().join();
+
+        assertEquals(quads(last), quads(read(service, stored.get(0))), "Last write in a second should win!");
+    }
+
+    @Test
+    void coalescedSnapshotReplacesDelta() {
+        final CassandraMementoService service = service(3, true);
+        final Dataset v3 = version("A third title");
+        service.put(resource(Instant.ofEpochSecond(1), version("A title"))).toCompletableFuture().join();
+        service.put(resource(Instant.ofEpochSecond(2).plusMillis(200), version("Another title")))
+            .toCompletableFuture().join();
+        assertEquals(1, MementoDelta.depth(stored.get(0)), "Second Memento should be a delta!");
+
+        // a read that finds no Mementos leads to a snapshot
+        doReturn(completedFuture(results(List.of()))).when(mementoChain).execute(eq(ID), anyInt());
+        service.put(resource(Instant.ofEpochSecond(2).plusMillis(700), v3)).toCompletableFuture().join();
+
+        assertEquals(2, stored.size(), "Snapshot should replace the delta in the same second!");
+        assertEquals(0, MementoDelta.depth(stored.get(0)), "Snapshot should reset the delta depth!");
+        assertNull(MementoDelta.base(stored.get(0)), "Snapshot should have no base!");
+        assertEquals(quads(v3), quads(read(service, stored.get(0))), "Wrong coalesced Memento!");
+    }
+
+    @Test
+    void coalescedDeltaNotBasedOnReplacedMemento() {
+        final CassandraMementoService service = service(3, true);
+        final Dataset v3 = version("A third title");
+        service.put(resource(Instant.ofEpochSecond(1), version("A title"))).toCompletableFuture().join();
+        final Row first = stored.get(0);
+        service.put(resource(Instant.ofEpochSecond(2).plusMillis(200), version("Another title")))
+            .toCompletableFuture().join();
+        service.put(resource(Instant.ofEpochSecond(2).plusMillis(700), v3)).toCompletableFuture().join();
+
+        assertEquals(2, stored.size(), "Delta should replace the delta in the same second!");
+        assertEquals(first.getUuid("created"), MementoDelta.base(stored.get(0)),
+                "Delta should not be based on the Memento it replaces!");
+        assertEquals(1, MementoDelta.depth(stored.get(0)), "Wrong delta depth!");
+        assertEquals(quads(v3), quads(read(service, stored.get(0))), "Wrong coalesced Memento!");
+    }
+
+    private CassandraMementoService service(final boolean coalesce) {
+        return service(3, coalesce);
+    }
+
+    private CassandraMementoService service(final int snapshotInterval, final boolean coalesce) {
+        return new CassandraMementoService(null, mockMementoize, mockGetMemento, null, mementoChain, true,
+                snapshotInterval, false, coalesce);
+    }
+
+    private Dataset read(final CassandraMementoService service, final Row memento) {
+        final Instant modified = memento.get("modified", Instant.class);
+        when(mockGetMemento.execute(ID, modified)).thenReturn(completedFuture(results(List.of(memento))));
+        return service.get(ID, modified).toCompletableFuture().join().dataset();
+    }
+
+    private CompletableFuture<Void> store(final Instant modified, final UUID created, final Dataset quads,
+            final Dataset removed, final int depth, final UUID base) {
+        times.add(List.of(modified.truncatedTo(SECONDS), created));
+        stored.removeIf(row -> created.equals(row.getUuid("created")));
+        stored.add(row(modified, created, quads, removed, depth, base));
+        stored.sort(Comparator.comparing((Row row) -> row.getUuid("created").timestamp()).reversed());
+        return completedFuture(null);
+    }
+
+    private static Resource resource(final Instant modified, final Dataset data) {
+        return new CassandraResource(Metadata.builder(ID).interactionModel(LDP.RDFSource).build(), modified, data);
+    }
+
+    private static Dataset version(final String title) {
+        final Dataset dataset = rdf.createDataset();
+        dataset.add(Trellis.PreferUserManaged, ID, DC.title, rdf.createLiteral(title));
+        dataset.add(Trellis.PreferUserManaged, ID, DC.relation, rdf.createIRI(TRELLIS_DATA_PREFIX + "other"));
+        return dataset;
+    }
+
+    private static Set<Quad> quads(final Dataset dataset) {
+        return dataset.stream().collect(toSet());
+    }
+
+    private static UUID uuid(final Instant time) {
+        return Uuids.startOf(time.toEpochMilli());
+    }
+
+    private static AsyncResultSet results(final List<Row> rows) {
+        final AsyncResultSet results = mock(AsyncResultSet.class);
+        lenient().when(results.currentPage()).thenReturn(rows);
+        lenient().when(results.remaining()).thenReturn(rows.size());
+        lenient().when(results.one()).thenReturn(rows.isEmpty() ? null : rows.get(0));
+        return results;
+    }
+
+    private static Row row(final Instant modified, final UUID created, final Dataset quads, final Dataset removed,
+            final int depth, final UUID base) {
+        final Row row = mock(Row.class);
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        lenient().when(row.getColumnDefinitions()).thenReturn(columns);
+        lenient().when(columns.contains(DELTA_DEPTH)).thenReturn(true);
+        lenient().when(columns.contains(DELTA_BASE)).thenReturn(true);
+        lenient().when(row.get("modified", Instant.class)).thenReturn(modified);
+        lenient().when(row.getUuid("created")).thenReturn(created);
+        lenient().when(row.getInt(DELTA_DEPTH)).thenReturn(depth);
+        lenient().when(row.isNull(DELTA_BASE)).thenReturn(base == null);
+        lenient().when(row.getUuid(DELTA_BASE)).thenReturn(base);
+        lenient().when(row.getString(QUADS)).thenReturn(CassandraIOUtils.serialize(quads));
+        lenient().when(row.getString(REMOVED_QUADS)).thenReturn(removed != null
+                ? CassandraIOUtils.serialize(removed) : null);
+        return row;
+    }
+}
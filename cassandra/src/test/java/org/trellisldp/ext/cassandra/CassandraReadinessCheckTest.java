@@ -16,6 +16,7 @@
 package org.trellisldp.ext.cassandra;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -24,9 +25,12 @@ import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
 
+import java.util.Map;
+
 import org.eclipse.microprofile.health.HealthCheck;
 import org.eclipse.microprofile.health.HealthCheckResponse;
 import org.junit.jupiter.api.Test;
+import org.trellisldp.api.RDFFactory;
 
 class CassandraReadinessCheckTest {
 
@@ -59,4 +63,33 @@ class CassandraReadinessCheckTest {
         assertEquals(HealthCheckResponse.Status.DOWN, check.call().getStatus(),
                 "Connection doesn't report as unhealthy!");
     }
+
+    @Test
+    void testReportsCacheStatistics() {
+        final CqlSession mockSession = mock(CqlSession.class);
+        final ResultSet mockResultSet = mock(ResultSet.class);
+        final Row mockRow = mock(Row.class);
+        when(mockSession.execute(anyString())).thenReturn(mockResultSet);
+        when(mockResultSet.one()).thenReturn(mockRow);
+        final CassandraResourceCache cache = new CassandraResourceCache(10, 60);
+        cache.get(RDFFactory.getInstance().createIRI("trellis:data/missing"));
+
+        final Map<String, Object> data = new CassandraReadinessCheck(mockSession, cache).call().getData()
+            .orElseThrow();
+        assertEquals(0L, data.get("resourceCacheHits"), "Wrong hit count reported!");
+        assertEquals(1L, data.get("resourceCacheMisses"), "Wrong miss count reported!");
+        assertEquals(0L, data.get("resourceCacheEvictions"), "Wrong eviction count reported!");
+        assertEquals(0L, data.get("resourceCacheSize"), "Wrong size reported!");
+    }
+
+    @Test
+    void testNoCacheStatisticsWhenDisabled() {
+        final CqlSession mockSession = mock(CqlSession.class);
+        final ResultSet mockResultSet = mock(ResultSet.class);
+        when(mockSession.execute(anyString())).thenReturn(mockResultSet);
+        when(mockResultSet.one()).thenReturn(mock(Row.class));
+
+        final HealthCheck check = new CassandraReadinessCheck(mockSession, new CassandraResourceCache(0, 60));
+        assertFalse(check.call().getData().isPresent(), "A disabled cache should report no statistics!");
+    }
 }
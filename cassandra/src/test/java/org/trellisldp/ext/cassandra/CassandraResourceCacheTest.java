@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.time.Instant.now;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.trellisldp.api.Metadata;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.api.Resource;
+import org.trellisldp.vocabulary.LDP;
+
+class CassandraResourceCacheTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private final IRI id = rdf.createIRI("trellis:data/resource");
+
+    private final Resource resource = new CassandraResource(Metadata.builder(id).interactionModel(LDP.RDFSource)
+            .build(), now(), rdf.createDataset());
+
+    @Test
+    void disabledByDefault() {
+        final CassandraResourceCache cache = new CassandraResourceCache();
+        assertFalse(cache.isEnabled(), "Cache should be disabled by default!");
+        cache.put(id, resource, cache.generation(id));
+        assertNull(cache.get(id), "Disabled cache should not hold resources!");
+    }
+
+    @Test
+    void hitsAndMisses() {
+        final CassandraResourceCache cache = new CassandraResourceCache(10, 60);
+        assertNull(cache.get(id), "Cache should start empty!");
+        cache.put(id, resource, cache.generation(id));
+        assertSame(resource, cache.get(id), "Resource should have been cached!");
+        assertEquals(1L, cache.getHitCount(), "Wrong hit count!");
+        assertEquals(1L, cache.getMissCount(), "Wrong miss count!");
+        assertEquals(1L, cache.getSize(), "Wrong size!");
+    }
+
+    @Test
+    void evictions() {
+        final CassandraResourceCache cache = new CassandraResourceCache(1, 60);
+        cache.put(id, resource, cache.generation(id));
+        final IRI other = rdf.createIRI("trellis:data/other");
+        cache.put(other, resource, cache.generation(other));
+        assertEquals(1L, cache.getEvictionCount(), "Wrong eviction count!");
+    }
+
+    @Test
+    void invalidation() {
+        final CassandraResourceCache cache = new CassandraResourceCache(10, 60);
+        cache.put(id, resource, cache.generation(id));
+        cache.invalidate(id);
+        assertNull(cache.get(id), "Resource should have been invalidated!");
+    }
+
+    @Test
+    void readOverlappingWriteNotCached() {
+        final CassandraResourceCache cache = new CassandraResourceCache(10, 60);
+        final long generation = cache.generation(id);
+        cache.invalidate(id);
+        cache.put(id, resource, generation);
+        assertNull(cache.get(id), "A read that overlapped a write should not be cached!");
+    }
+
+    @Test
+    void writeToOtherResourceStillCached() {
+        final CassandraResourceCache cache = new CassandraResourceCache(10, 60);
+        final long generation = cache.generation(id);
+        cache.invalidate(rdf.createIRI("trellis:data/other"));
+        cache.put(id, resource, generation);
+        assertSame(resource, cache.get(id), "A write to another resource should not prevent caching!");
+    }
+}
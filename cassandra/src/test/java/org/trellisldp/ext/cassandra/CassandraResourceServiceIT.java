@@ -15,9 +15,16 @@
  */
 package org.trellisldp.ext.cassandra;
 
+import static com.datastax.oss.driver.api.core.DefaultConsistencyLevel.ONE;
+import static java.util.UUID.randomUUID;
 import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.trellisldp.api.Metadata.builder;
+import static org.trellisldp.ext.cassandra.QuadsFormat.NQUADS;
+import static org.trellisldp.ext.cassandra.QuadsFormat.THRIFT;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
 
 import java.time.Instant;
 import java.util.Set;
@@ -30,12 +37,64 @@ import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.trellisldp.api.Metadata;
 import org.trellisldp.api.Resource;
 import org.trellisldp.api.ResourceService;
+import org.trellisldp.ext.cassandra.query.rdf.Get;
+import org.trellisldp.ext.cassandra.query.rdf.ImmutableInsert;
+import org.trellisldp.ext.cassandra.query.rdf.ImmutableRetrieve;
+import org.trellisldp.ext.cassandra.query.rdf.MutableInsert;
 import org.trellisldp.test.ResourceServiceTests;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.LDP;
 import org.trellisldp.vocabulary.Trellis;
 
 @EnabledIfSystemProperty(named = "trellis.test.cassandra", matches = "true")
 class CassandraResourceServiceIT extends CassandraServiceIT implements ResourceServiceTests {
 
+    @Test
+    void switchingQuadsFormats() {
+        final CqlSession session = connection.session;
+        final IRI id = createIRI("http://example.com/id/" + randomUUID());
+        final Metadata meta = builder(id).interactionModel(LDP.RDFSource).build();
+        final ContainmentIndex containment = new ContainmentIndex(ContainmentIndex.Mode.VIEW, 1);
+        final Dataset first = titled(id, "A title");
+        final Dataset second = titled(id, "Another title");
+
+        new MutableInsert(session, ONE, THRIFT, containment, false).execute(meta, Instant.now(), first,
+                Uuids.timeBased()).toCompletableFuture().join();
+        new MutableInsert(session, ONE, NQUADS, containment, false).execute(meta, Instant.now(), second,
+                Uuids.timeBased()).toCompletableFuture().join();
+        assertEquals(second.stream().collect(toSet()), CassandraIOUtils.parse(new Get(session, ONE).execute(id)
+                    .toCompletableFuture().join().one()).stream().collect(toSet()),
+                "N-Quads written after RDF Thrift should be read!");
+
+        new ImmutableInsert(session, ONE, THRIFT).execute(id, first, Instant.now()).toCompletableFuture().join();
+        final Set<Quad> audit = new ImmutableRetrieve(session, ONE, NQUADS).execute(id).toCompletableFuture().join()
+            .collect(toSet());
+        assertEquals(first.stream().collect(toSet()), audit, "RDF Thrift should be read when writing N-Quads!");
+    }
+
+    @Test
+    void disablingGraphNames() {
+        final CqlSession session = connection.session;
+        final IRI id = createIRI("http://example.com/id/" + randomUUID());
+        final Metadata meta = builder(id).interactionModel(LDP.RDFSource).build();
+        final ContainmentIndex containment = new ContainmentIndex(ContainmentIndex.Mode.VIEW, 1);
+
+        new MutableInsert(session, ONE, NQUADS, containment, true).execute(meta, Instant.now(),
+                titled(id, "A title"), Uuids.timeBased()).toCompletableFuture().join();
+        assertTrue(CassandraIOUtils.graphNames(new Get(session, ONE).execute(id).toCompletableFuture().join().one())
+                .isPresent(), "Graph names should be recorded!");
+        new MutableInsert(session, ONE, NQUADS, containment, false).execute(meta, Instant.now(),
+                titled(id, "Another title"), Uuids.timeBased()).toCompletableFuture().join();
+        assertFalse(CassandraIOUtils.graphNames(new Get(session, ONE).execute(id).toCompletableFuture().join().one())
+                .isPresent(), "Graph names recorded before they were disabled should be cleared!");
+    }
+
+    private Dataset titled(final IRI id, final String title) {
+        final Dataset dataset = rdfFactory.createDataset();
+        dataset.add(Trellis.PreferUserManaged, id, DC.title, rdfFactory.createLiteral(title));
+        return dataset;
+    }
+
     @Test
     void basicActions() {
         final IRI id = createIRI("http://example.com/id/foo");
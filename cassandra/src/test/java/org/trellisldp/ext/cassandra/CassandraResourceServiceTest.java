@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.api.Resource;
+import org.trellisldp.ext.cassandra.query.rdf.BasicContainment;
+import org.trellisldp.ext.cassandra.query.rdf.Get;
+import org.trellisldp.ext.cassandra.query.rdf.Touch;
+import org.trellisldp.vocabulary.LDP;
+
+@ExtendWith(MockitoExtension.class)
+class CassandraResourceServiceTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private final IRI id = rdf.createIRI("trellis:data/resource");
+
+    @Mock
+    private Get mockGet;
+
+    @Mock
+    private BasicContainment mockContainment;
+
+    @Mock
+    private Touch mockTouch;
+
+    @Mock
+    private AsyncResultSet mockResults;
+
+    @Mock
+    private Row mockRow;
+
+    @Mock
+    private ColumnDefinitions mockColumns;
+
+    private CassandraResourceService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CassandraResourceService(null, mockGet, null, null, mockTouch, null, mockContainment,
+                new CassandraResourceCache(10, 60));
+        lenient().when(mockResults.one()).thenReturn(mockRow);
+        lenient().when(mockRow.get("modified", Instant.class)).thenReturn(Instant.now());
+        lenient().when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        lenient().when(mockColumns.contains(QUADS_BINARY)).thenReturn(false);
+    }
+
+    @Test
+    void containmentQueriedAlongsideResource() {
+        final CompletableFuture<AsyncResultSet> results = new CompletableFuture<>();
+        when(mockGet.execute(id)).thenReturn(results);
+        when(mockContainment.execute(id)).thenReturn(completedFuture(Stream.of(containmentQuad())));
+        when(mockRow.get("interactionModel", IRI.class)).thenReturn(LDP.BasicContainer);
+
+        final CompletableFuture<? extends Resource> resource = service.get(id).toCompletableFuture();
+        verify(mockContainment).execute(id);
+        results.complete(mockResults);
+        assertEquals(1L, resource.join().stream(LDP.PreferContainment).count(), "Containment missing!");
+    }
+
+    @Test
+    void resourcesCachedUntilWritten() {
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockResults));
+        when(mockContainment.execute(id)).thenReturn(completedFuture(Stream.empty()));
+        when(mockRow.get("interactionModel", IRI.class)).thenReturn(LDP.RDFSource);
+        when(mockTouch.execute(any(), eq(id))).thenReturn(completedFuture(null));
+
+        final Resource first = service.get(id).toCompletableFuture().join();
+        assertSame(first, service.get(id).toCompletableFuture().join(), "Resource should have been cached!");
+        verify(mockGet, times(1)).execute(id);
+
+        service.touch(id).toCompletableFuture().join();
+        assertNotSame(first, service.get(id).toCompletableFuture().join(), "Touch should invalidate the cache!");
+        verify(mockGet, times(2)).execute(id);
+    }
+
+    @Test
+    void containmentNotQueriedForKnownNonContainers() {
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockResults));
+        when(mockContainment.execute(id)).thenReturn(completedFuture(Stream.empty()));
+        when(mockRow.get("interactionModel", IRI.class)).thenReturn(LDP.RDFSource);
+        when(mockTouch.execute(any(), eq(id))).thenReturn(completedFuture(null));
+
+        assertEquals(LDP.RDFSource, service.get(id).toCompletableFuture().join().getInteractionModel(),
+                "Wrong interaction model!");
+        service.touch(id).toCompletableFuture().join();
+        assertEquals(LDP.RDFSource, service.get(id).toCompletableFuture().join().getInteractionModel(),
+                "Wrong interaction model!");
+        verify(mockContainment, times(1)).execute(any());
+    }
+
+    @Test
+    void containmentQueriedWhenHintIsStale() {
+        when(mockGet.execute(id)).thenReturn(completedFuture(mockResults));
+        when(mockContainment.execute(id)).thenReturn(completedFuture(Stream.empty()),
+                completedFuture(Stream.of(containmentQuad())));
+        when(mockRow.get("interactionModel", IRI.class)).thenReturn(LDP.RDFSource, LDP.BasicContainer);
+        when(mockTouch.execute(any(), eq(id))).thenReturn(completedFuture(null));
+
+        service.get(id).toCompletableFuture().join();
+        service.touch(id).toCompletableFuture().join();
+        final Resource resource = service.get(id).toCompletableFuture().join();
+        assertEquals(1L, resource.stream(LDP.PreferContainment).count(), "Containment missing!");
+    }
+
+    private Quad containmentQuad() {
+        return rdf.createQuad(LDP.PreferContainment, id, LDP.contains, rdf.createIRI("trellis:data/resource/child"));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.time.Instant.now;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.trellisldp.api.Metadata;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.LDP;
+import org.trellisldp.vocabulary.Trellis;
+
+class CassandraResourceTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private final IRI id = rdf.createIRI("trellis:data/resource");
+
+    private final AtomicInteger retrievals = new AtomicInteger();
+
+    private CassandraResource resource;
+
+    @BeforeEach
+    void setUp() {
+        final Dataset dataset = rdf.createDataset();
+        dataset.add(Trellis.PreferUserManaged, id, DC.title, rdf.createLiteral("A title"));
+        resource = new CassandraResource(Metadata.builder(id).interactionModel(LDP.RDFSource).build(), now(),
+                dataset);
+        retrievals.set(0);
+        resource.defer(Trellis.PreferAudit, () -> {
+            retrievals.incrementAndGet();
+            return completedFuture(Stream.of(rdf.createQuad(Trellis.PreferAudit, id, DC.description,
+                            rdf.createLiteral("Audit"))));
+        });
+    }
+
+    @Test
+    void deferredGraphNotRetrievedForOtherGraphs() {
+        assertEquals(1L, resource.stream(singleton(Trellis.PreferUserManaged)).count(), "Wrong number of triples!");
+        assertEquals(0, retrievals.get(), "Deferred graph should not have been retrieved!");
+    }
+
+    @Test
+    void deferredGraphRetrievedWhenRequested() {
+        assertEquals(1L, resource.stream(singleton(Trellis.PreferAudit)).count(), "Wrong number of triples!");
+        assertEquals(1, retrievals.get(), "Deferred graph should have been retrieved once!");
+    }
+
+    @Test
+    void deferredGraphRetrievedOnlyWhenConsumed() {
+        final Stream<Quad> quads = resource.stream();
+        assertEquals(0, retrievals.get(), "Deferred graph should not be retrieved before the stream is consumed!");
+        assertEquals(3L, quads.count(), "Wrong number of quads!");
+        assertEquals(1, retrievals.get(), "Deferred graph should have been retrieved once!");
+    }
+
+    @Test
+    void deferredGraphIncludedInFullStream() {
+        assertTrue(resource.stream().anyMatch(quad -> quad.getGraphName().filter(Trellis.PreferAudit::equals)
+                    .isPresent()), "Deferred graph missing from stream!");
+    }
+
+    @Test
+    void deferredStageAwaitedOnlyWhenConsumed() {
+        final CompletableFuture<Stream<Quad>> pending = new CompletableFuture<>();
+        resource.defer(Trellis.PreferAudit, () -> pending);
+        final Stream<Triple> triples = resource.stream(singleton(Trellis.PreferAudit));
+        pending.completeExceptionally(new IllegalStateException("Expected"));
+        assertThrows(IllegalStateException.class, triples::count, "Failure of deferred graph should surface as is!");
+    }
+
+    @Test
+    void datasetParsedOnlyWhenRequested() {
+        final AtomicInteger parses = new AtomicInteger();
+        final CassandraResource lazy = new CassandraResource(Metadata.builder(id).interactionModel(LDP.RDFSource)
+                .build(), now(), () -> {
+                    parses.incrementAndGet();
+                    final Dataset dataset = rdf.createDataset();
+                    dataset.add(Trellis.PreferUserManaged, id, DC.title, rdf.createLiteral("A title"));
+                    return dataset;
+                });
+        assertEquals(LDP.RDFSource, lazy.getInteractionModel(), "Wrong interaction model!");
+        final Stream<Quad> quads = lazy.stream();
+        assertEquals(0, parses.get(), "Dataset should not be parsed before it is needed!");
+        assertEquals(2L, quads.count(), "Wrong number of quads!");
+        assertEquals(1L, lazy.dataset().size(), "Wrong dataset size!");
+        assertEquals(1, parses.get(), "Dataset should be parsed only once!");
+    }
+
+    @Test
+    void deferredGraphMergedOnceIntoDataset() {
+        assertEquals(2L, resource.dataset().size(), "Deferred graph missing from dataset!");
+        assertEquals(2L, resource.dataset().size(), "Deferred graph merged twice!");
+        assertEquals(1, retrievals.get(), "Deferred graph should have been retrieved once!");
+        final long audit = resource.stream().map(Quad::getGraphName)
+            .filter(graph -> graph.filter(Trellis.PreferAudit::equals).isPresent()).count();
+        assertEquals(1L, audit, "Deferred graph duplicated after merge!");
+    }
+
+    @Test
+    void streamUnchangedByLaterMerge() {
+        final Stream<Quad> quads = resource.stream();
+        assertEquals(2L, resource.dataset().size(), "Deferred graph missing from dataset!");
+        assertEquals(3L, quads.count(), "Deferred graph duplicated in a stream built before the merge!");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkBufferPoolTest {
+
+    @Test
+    void buffersReused() {
+        final ChunkBufferPool pool = new ChunkBufferPool(1024, true);
+        final ByteBuffer first = pool.acquire(100);
+        assertTrue(first.isDirect(), "Buffer should be direct!");
+        assertEquals(100, first.capacity(), "Wrong capacity!");
+        first.put((byte) 1);
+        pool.release(first);
+        assertEquals(100, pool.getIdleBytes(), "Released buffer should be idle!");
+
+        final ByteBuffer second = pool.acquire(100);
+        assertSame(first, second, "Buffer should have been reused!");
+        assertEquals(0, second.position(), "Reused buffer should be cleared!");
+        assertEquals(1, pool.getAllocationCount(), "Wrong allocation count!");
+        assertEquals(100, pool.getAllocatedBytes(), "Wrong allocated bytes!");
+        assertEquals(1, pool.getReuseCount(), "Wrong reuse count!");
+        assertEquals(0, pool.getIdleBytes(), "Reused buffer should not be idle!");
+    }
+
+    @Test
+    void buffersReusedOnlyAtSameCapacity() {
+        final ChunkBufferPool pool = new ChunkBufferPool(1024, false);
+        pool.release(pool.acquire(100));
+        assertFalse(pool.acquire(200).isDirect(), "Buffer should be on the heap!");
+        assertEquals(2, pool.getAllocationCount(), "Wrong allocation count!");
+        assertEquals(0, pool.getReuseCount(), "Wrong reuse count!");
+    }
+
+    @Test
+    void idleBytesBounded() {
+        final ChunkBufferPool pool = new ChunkBufferPool(150, true);
+        final ByteBuffer first = pool.acquire(100);
+        final ByteBuffer second = pool.acquire(100);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(100, pool.getIdleBytes(), "Idle buffers should be bounded!");
+    }
+
+    @Test
+    void badSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ChunkBufferPool(-1, true), "Size should be checked!");
+    }
+
+    @Test
+    void fill() throws IOException {
+        final ByteBuffer buffer = ChunkBufferPool.fill(new ByteArrayInputStream(new byte[] {1, 2, 3}),
+                ByteBuffer.allocateDirect(2));
+        assertEquals(2, buffer.remaining(), "Buffer should be full!");
+        assertEquals(1, buffer.get(), "Wrong first byte!");
+
+        final ByteBuffer partial = ChunkBufferPool.fill(new ByteArrayInputStream(new byte[] {1, 2, 3}),
+                ByteBuffer.allocateDirect(8));
+        assertEquals(3, partial.remaining(), "Buffer should hold the whole stream!");
+        assertEquals(0, ChunkBufferPool.fill(new ByteArrayInputStream(new byte[0]), ByteBuffer.allocate(8))
+                .remaining(), "Buffer should be empty!");
+    }
+
+    @Test
+    void fillHeapBufferInPlace() throws IOException {
+        final ByteBuffer backing = ByteBuffer.allocate(6);
+        backing.position(2);
+        final ByteBuffer slice = backing.slice();
+        final ByteBuffer buffer = ChunkBufferPool.fill(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}), slice);
+        assertSame(slice, buffer, "The buffer given should be filled!");
+        assertEquals(4, buffer.remaining(), "Buffer should be full!");
+        assertEquals(1, backing.get(2), "Bytes should be read in place at the buffer's offset!");
+        assertEquals(0, backing.get(1), "Bytes before the buffer should be untouched!");
+    }
+
+    @Test
+    void fillFromChannel() throws IOException {
+        final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        assertEquals(2, ChunkBufferPool.fill(channel, ByteBuffer.allocateDirect(2)).remaining(),
+                "Buffer should be full!");
+        final ByteBuffer rest = ChunkBufferPool.fill(channel, ByteBuffer.allocateDirect(2));
+        assertEquals(1, rest.remaining(), "Buffer should hold the rest of the channel!");
+        assertEquals(3, rest.get(), "Wrong last byte!");
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.trellisldp.ext.cassandra.ChunkCompression.DEFLATE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.trellisldp.api.RDFFactory;
+
+class ChunkCacheTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private final IRI id = rdf.createIRI("trellis:data/binary");
+
+    private final IRI other = rdf.createIRI("trellis:data/other");
+
+    private final byte[] content = "Some binary content".getBytes();
+
+    @Test
+    void disabled() throws IOException {
+        final ChunkCache cache = new ChunkCache(0);
+        assertFalse(cache.isEnabled(), "Cache should be disabled!");
+        try (InputStream chunk = cache.put(id, 0, stored(content), null, cache.generation(id))) {
+            assertArrayEquals(content, chunk.readAllBytes(), "Chunk should be read through a disabled cache!");
+        }
+        assertNull(cache.get(id, 0), "Disabled cache should not hold chunks!");
+        assertThrows(IllegalArgumentException.class, () -> new ChunkCache(-1), "Negative size should be rejected!");
+    }
+
+    @Test
+    void hitsAndMisses() throws IOException {
+        final ChunkCache cache = new ChunkCache(1024);
+        assertNull(cache.get(id, 0), "Cache should start empty!");
+        try (InputStream chunk = cache.put(id, 0, stored(content), null, cache.generation(id))) {
+            assertArrayEquals(content, chunk.readAllBytes(), "Wrong content from a fetched chunk!");
+        }
+        for (int i = 0; i < 3; i++) {
+            try (InputStream chunk = cache.get(id, 0)) {
+                assertArrayEquals(content, chunk.readAllBytes(), "Wrong content from a cached chunk!");
+            }
+        }
+        assertNull(cache.get(id, 1), "Other chunks should not have been cached!");
+        assertEquals(3L, cache.getHitCount(), "Wrong hit count!");
+        assertEquals(2L, cache.getMissCount(), "Wrong miss count!");
+        assertEquals(0.6, cache.getHitRate(), 0.001, "Wrong hit rate!");
+        assertEquals(1L, cache.getSize(), "Wrong size!");
+    }
+
+    @Test
+    void evictions() {
+        final ChunkCache cache = new ChunkCache(4096);
+        final byte[] chunk = new byte[100];
+        for (int i = 0; i < 100; i++) cache.put(id, i, stored(chunk), null, cache.generation(id));
+        assertTrue(cache.getEvictionCount() > 0, "Chunks should have been evicted!");
+        assertTrue(cache.getSize() <= 40, "Cache should not hold more bytes than its size!");
+        assertNotNull(cache.get(id, 99), "Most recently used chunk should not have been evicted!");
+    }
+
+    @Test
+    void chunkNearCacheSize() throws IOException {
+        // the cache is not divided into segments, each with a share of its size that such a chunk would exceed
+        final byte[] large = new byte[3000];
+        large[0] = 1;
+        final ChunkCache cache = new ChunkCache(4096);
+        cache.put(id, 0, stored(large), null, cache.generation(id));
+        try (InputStream chunk = cache.get(id, 0)) {
+            assertNotNull(chunk, "A chunk that fits in the cache should be cached!");
+            assertArrayEquals(large, chunk.readAllBytes(), "Wrong content from a large cached chunk!");
+        }
+        assertEquals(0L, cache.getEvictionCount(), "Nothing should have been evicted!");
+    }
+
+    @Test
+    void chunkLargerThanCache() throws IOException {
+        final byte[] large = new byte[4097];
+        final ChunkCache cache = new ChunkCache(4096);
+        try (InputStream chunk = cache.put(id, 0, stored(large), null, cache.generation(id))) {
+            assertArrayEquals(large, chunk.readAllBytes(), "A chunk too large to cache should still be read!");
+        }
+        assertNull(cache.get(id, 0), "A chunk larger than the cache should not be cached!");
+    }
+
+    @Test
+    void invalidate() {
+        final ChunkCache cache = new ChunkCache(1024);
+        cache.put(id, 0, stored(content), null, cache.generation(id));
+        cache.put(id, 1, stored(content), null, cache.generation(id));
+        cache.put(other, 0, stored(content), null, cache.generation(other));
+        cache.invalidate(id);
+        assertNull(cache.get(id, 0), "Invalidated chunk should not be cached!");
+        assertNull(cache.get(id, 1), "Every chunk of the binary should be invalidated!");
+        assertNotNull(cache.get(other, 0), "Other binaries should still be cached!");
+    }
+
+    @Test
+    void staleReadNotCached() throws IOException {
+        final ChunkCache cache = new ChunkCache(1024);
+        final long generation = cache.generation(id);
+        cache.invalidate(id);
+        try (InputStream chunk = cache.put(id, 0, stored(content), null, generation)) {
+            assertArrayEquals(content, chunk.readAllBytes(), "Stale chunk should still be read!");
+        }
+        assertNull(cache.get(id, 0), "Chunk read before an invalidation should not be cached!");
+    }
+
+    @Test
+    void compressedChunk() throws IOException {
+        final byte[] text = new byte[4096];
+        Arrays.fill(text, (byte) 'x');
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(compressed)) {
+            deflate.write(text);
+        }
+        final ChunkCache cache = new ChunkCache(text.length - 1);
+        try (InputStream chunk = cache.put(id, 0, stored(compressed.toByteArray()), DEFLATE, cache.generation(id))) {
+            assertArrayEquals(text, chunk.readAllBytes(), "Wrong content from a fetched compressed chunk!");
+        }
+        try (InputStream chunk = cache.get(id, 0)) {
+            assertNotNull(chunk, "Compressed chunk should be cached as stored!");
+            assertArrayEquals(text, chunk.readAllBytes(), "Wrong content from a cached compressed chunk!");
+        }
+    }
+
+    @Test
+    void writeToOtherBinaryStillCached() {
+        final ChunkCache cache = new ChunkCache(1024);
+        final long generation = cache.generation(id);
+        cache.invalidate(other);
+        cache.put(id, 0, stored(content), null, generation);
+        assertNotNull(cache.get(id, 0), "A write to another binary should not prevent caching!");
+    }
+
+    private static InputStream stored(final byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+}
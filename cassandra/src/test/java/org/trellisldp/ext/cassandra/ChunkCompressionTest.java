@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.trellisldp.ext.cassandra.ChunkCompression.DEFLATE;
+import static org.trellisldp.ext.cassandra.ChunkCompression.NONE;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.trellisldp.api.TrellisRuntimeException;
+
+class ChunkCompressionTest {
+
+    private final ChunkCompression compression = new ChunkCompression(DEFLATE, "text/*, application/json");
+
+    @Test
+    void appliesToAllowedTypes() {
+        assertTrue(compression.appliesTo("text/plain"), "Wildcard subtype should match!");
+        assertTrue(compression.appliesTo("Text/CSV; charset=UTF-8"), "Parameters and case should be ignored!");
+        assertTrue(compression.appliesTo("application/json"), "Listed type should match!");
+        assertFalse(compression.appliesTo("application/jsonx"), "Only the listed type should match!");
+        assertFalse(compression.appliesTo("image/png"), "Unlisted type should not match!");
+        assertFalse(compression.appliesTo(null), "Binaries without a type should not be compressed!");
+    }
+
+    @Test
+    void disabled() {
+        final ChunkCompression none = new ChunkCompression(NONE, "text/*");
+        assertFalse(none.isEnabled(), "Compression should be disabled!");
+        assertNull(none.getAlgorithm(), "Disabled compression has no algorithm!");
+        assertFalse(none.appliesTo("text/plain"), "Nothing should be compressed when disabled!");
+    }
+
+    @Test
+    void unknownAlgorithm() {
+        assertThrows(IllegalArgumentException.class, () -> new ChunkCompression("zstd", "text/*"),
+                "Unsupported algorithms should be rejected!");
+        assertThrows(TrellisRuntimeException.class,
+                () -> ChunkCompression.decompress(new ByteArrayInputStream(new byte[0]), "zstd"),
+                "Unknown recorded compression should be rejected!");
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        final byte[] content = new byte[4096];
+        Arrays.fill(content, (byte) 'x');
+        final ByteBuffer chunk = ByteBuffer.wrap(content);
+        final ByteBuffer compressed = ByteBuffer.allocateDirect(content.length);
+        final Deflater deflater = compression.newDeflater();
+        try {
+            assertTrue(ChunkCompression.compress(deflater, chunk, compressed), "Repetitive chunk should shrink!");
+        } finally {
+            deflater.end();
+        }
+        assertEquals(content.length, chunk.remaining(), "Chunk should not be consumed!");
+        assertTrue(compressed.remaining() < content.length, "Compressed chunk should be smaller!");
+        try (InputStream stream = ChunkCompression.decompress(new ByteBufferInputStream(compressed), DEFLATE)) {
+            assertArrayEquals(content, stream.readAllBytes(), "Wrong content after decompression!");
+        }
+    }
+
+    @Test
+    void incompressibleChunkNotCompressed() {
+        final byte[] content = new byte[4096];
+        new Random(42).nextBytes(content);
+        final Deflater deflater = compression.newDeflater();
+        try {
+            assertFalse(ChunkCompression.compress(deflater, ByteBuffer.wrap(content),
+                        ByteBuffer.allocate(content.length)), "Random chunk should not shrink!");
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Test
+    void uncompressedPassesThrough() {
+        final InputStream chunk = new ByteArrayInputStream(new byte[] { 1 });
+        assertSame(chunk, ChunkCompression.decompress(chunk, null), "Uncompressed chunk should be returned as is!");
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.ext.cassandra.ContainmentIndex.Mode;
+
+class ContainmentIndexTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    @Test
+    void defaultsToView() {
+        final ContainmentIndex index = ContainmentIndex.configured();
+        assertFalse(index.writesTable(), "Containment table should not be written by default!");
+        assertFalse(index.readsTable(), "Containment table should not be read by default!");
+        assertEquals(ContainmentIndex.DEFAULT_BUCKETS, index.getBuckets(), "Wrong default bucket count!");
+    }
+
+    @Test
+    void migratingWritesButDoesNotRead() {
+        final ContainmentIndex index = new ContainmentIndex(Mode.MIGRATING, 4);
+        assertTrue(index.writesTable(), "Containment table should be written while migrating!");
+        assertFalse(index.readsTable(), "Containment table should not be read while migrating!");
+    }
+
+    @Test
+    void bucketsAreStableAndInRange() {
+        final ContainmentIndex index = new ContainmentIndex(Mode.TABLE, 7);
+        for (int i = 0; i < 1000; i++) {
+            final IRI child = rdf.createIRI("trellis:data/container/child" + i);
+            final int bucket = index.bucket(child);
+            assertTrue(bucket >= 0 && bucket < 7, "Bucket out of range!");
+            assertEquals(bucket, index.bucket(child.getIRIString()), "Bucket should not depend on representation!");
+        }
+    }
+
+    @Test
+    void bucketsAreUsed() {
+        final ContainmentIndex index = new ContainmentIndex(Mode.TABLE, 4);
+        final boolean[] used = new boolean[4];
+        for (int i = 0; i < 100; i++) {
+            used[index.bucket("trellis:data/container/child" + i)] = true;
+        }
+        for (final boolean bucket : used) {
+            assertTrue(bucket, "Children should be spread over every bucket!");
+        }
+    }
+
+    @Test
+    void badBucketCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ContainmentIndex(Mode.TABLE, 0));
+    }
+}
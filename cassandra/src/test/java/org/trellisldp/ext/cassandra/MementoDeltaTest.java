@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.trellisldp.api.TrellisUtils.TRELLIS_DATA_PREFIX;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_BASE;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_DEPTH;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.REMOVED_QUADS;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.Trellis;
+
+class MementoDeltaTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private static final IRI ID = rdf.createIRI(TRELLIS_DATA_PREFIX + "resource");
+
+    @Test
+    void depthOfSnapshots() {
+        assertEquals(0, MementoDelta.depth(null), "Missing Memento should be a snapshot!");
+        final Row unmigrated = mock(Row.class);
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        lenient().when(unmigrated.getColumnDefinitions()).thenReturn(columns);
+        assertEquals(0, MementoDelta.depth(unmigrated), "Unmigrated Memento should be a snapshot!");
+        assertEquals(0, MementoDelta.depth(snapshot(version("A title"))), "Wrong depth for snapshot!");
+        assertEquals(2, MementoDelta.depth(delta(version("A title"), version("A title"), 2)), "Wrong delta depth!");
+    }
+
+    @Test
+    void chainEndsAtSnapshot() {
+        final Dataset v1 = version("A title");
+        final Row older = snapshot(v1);
+        final Row first = snapshot(v1);
+        final Row second = delta(v1, v1, 1);
+        final Row third = delta(v1, v1, 2);
+        assertEquals(List.of(third, second, first), MementoDelta.chain(List.of(third, second, first, older)),
+                "Wrong chain!");
+        assertEquals(List.of(first), MementoDelta.chain(List.of(first, older)), "Snapshot should be its own chain!");
+        assertNull(MementoDelta.chain(List.of(third, second)), "Chain without a snapshot should be missing!");
+    }
+
+    @Test
+    void chainFollowsBases() {
+        final Dataset v1 = version("A title");
+        final Dataset v2 = version("Another title");
+        final Dataset v3 = version("A third title");
+        final Row first = based(snapshot(v1), Uuids.startOf(1000), null);
+        // written concurrently, so that both are based on the snapshot
+        final Row second = based(delta(v1, v2, 1), Uuids.startOf(2000), Uuids.startOf(1000));
+        final Row third = based(delta(v1, v3, 1), Uuids.startOf(3000), Uuids.startOf(1000));
+
+        assertEquals(Uuids.startOf(1000), MementoDelta.base(third), "Wrong base!");
+        assertNull(MementoDelta.base(first), "Snapshot should have no base!");
+        assertEquals(List.of(third, first), MementoDelta.chain(List.of(third, second, first)),
+                "Chain should skip a concurrent Memento!");
+        assertEquals(v3.stream().collect(toSet()), MementoDelta.rebuild(List.of(third, first)).stream()
+                .collect(toSet()), "Wrong third version!");
+        assertNull(MementoDelta.chain(List.of(third, second)), "Chain without its base should be missing!");
+    }
+
+    @Test
+    void chainWithoutBasesIsContiguous() {
+        final Dataset v1 = version("A title");
+        final Row unmigrated = delta(v1, v1, 1);
+        assertNull(MementoDelta.base(unmigrated), "Delta without a recorded base should have none!");
+        final Row first = based(snapshot(v1), Uuids.startOf(1000), null);
+        final Row second = based(delta(v1, v1, 1), Uuids.startOf(2000), null);
+        assertEquals(List.of(unmigrated, second, first), MementoDelta.chain(List.of(unmigrated, second, first)),
+                "Wrong chain!");
+    }
+
+    @Test
+    void rebuildFromDeltas() {
+        final Dataset v1 = version("A title");
+        v1.add(Trellis.PreferUserManaged, ID, DC.relation, rdf.createIRI(TRELLIS_DATA_PREFIX + "other"));
+        final Dataset v2 = version("Another title");
+        v2.add(Trellis.PreferUserManaged, ID, DC.relation, rdf.createIRI(TRELLIS_DATA_PREFIX + "other"));
+        final Dataset v3 = version("Another title");
+
+        final Row first = snapshot(v1);
+        final Row second = delta(v1, v2, 1);
+        final Row third = delta(v2, v3, 2);
+
+        assertEquals(1L, MementoDelta.added(v1, v2).size(), "Wrong number of added quads!");
+        assertEquals(1L, MementoDelta.removed(v1, v2).size(), "Wrong number of removed quads!");
+        assertEquals(v2.stream().collect(toSet()), MementoDelta.rebuild(List.of(second, first)).stream()
+                .collect(toSet()), "Wrong second version!");
+        assertEquals(v3.stream().collect(toSet()), MementoDelta.rebuild(List.of(third, second, first)).stream()
+                .collect(toSet()), "Wrong third version!");
+    }
+
+    private static Dataset version(final String title) {
+        final Dataset dataset = rdf.createDataset();
+        dataset.add(Trellis.PreferUserManaged, ID, DC.title, rdf.createLiteral(title));
+        return dataset;
+    }
+
+    private static Row snapshot(final Dataset data) {
+        return row(CassandraIOUtils.serialize(data), null, null);
+    }
+
+    private static Row delta(final Dataset previous, final Dataset current, final int depth) {
+        return row(CassandraIOUtils.serialize(MementoDelta.added(previous, current)),
+                CassandraIOUtils.serialize(MementoDelta.removed(previous, current)), depth);
+    }
+
+    private static Row based(final Row row, final UUID created, final UUID base) {
+        final ColumnDefinitions columns = row.getColumnDefinitions();
+        lenient().when(columns.contains(DELTA_BASE)).thenReturn(true);
+        lenient().when(row.getUuid("created")).thenReturn(created);
+        lenient().when(row.isNull(DELTA_BASE)).thenReturn(base == null);
+        lenient().when(row.getUuid(DELTA_BASE)).thenReturn(base);
+        return row;
+    }
+
+    private static Row row(final String quads, final String removed, final Integer depth) {
+        final Row row = mock(Row.class);
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        lenient().when(row.getColumnDefinitions()).thenReturn(columns);
+        lenient().when(columns.contains(QUADS_BINARY)).thenReturn(false);
+        lenient().when(columns.contains(DELTA_DEPTH)).thenReturn(true);
+        lenient().when(row.isNull(DELTA_DEPTH)).thenReturn(depth == null);
+        lenient().when(row.getInt(DELTA_DEPTH)).thenReturn(depth == null ? 0 : depth);
+        lenient().when(row.getString(QUADS)).thenReturn(quads);
+        lenient().when(row.getString(REMOVED_QUADS)).thenReturn(removed);
+        return row;
+    }
+}
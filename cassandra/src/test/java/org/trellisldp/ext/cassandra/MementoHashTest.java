@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.trellisldp.api.TrellisUtils.TRELLIS_DATA_PREFIX;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.CONTENT_HASH;
+import static org.trellisldp.vocabulary.RDF.type;
+
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.nio.ByteBuffer;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.Metadata;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.LDP;
+import org.trellisldp.vocabulary.Trellis;
+
+@ExtendWith(MockitoExtension.class)
+class MementoHashTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private static final IRI ID = rdf.createIRI(TRELLIS_DATA_PREFIX + "resource");
+
+    @Mock
+    private Row mockRow;
+
+    @Mock
+    private ColumnDefinitions mockColumns;
+
+    @Test
+    void sameContentSameHash() {
+        final Dataset first = rdf.createDataset();
+        first.add(Trellis.PreferUserManaged, ID, DC.title, rdf.createLiteral("A title"));
+        first.add(Trellis.PreferUserManaged, ID, DC.description, rdf.createLiteral("A description"));
+        final Dataset second = rdf.createDataset();
+        second.add(Trellis.PreferUserManaged, ID, DC.description, rdf.createLiteral("A description"));
+        second.add(Trellis.PreferUserManaged, ID, DC.title, rdf.createLiteral("A title"));
+        second.add(Trellis.PreferServerManaged, ID, type, LDP.RDFSource);
+        assertEquals(MementoHash.of(metadata(), first), MementoHash.of(metadata(), second),
+                "Order and server-managed quads should not change the hash!");
+    }
+
+    @Test
+    void changedContentChangedHash() {
+        final Dataset first = rdf.createDataset();
+        first.add(Trellis.PreferUserManaged, ID, DC.title, rdf.createLiteral("A title"));
+        final Dataset second = rdf.createDataset();
+        second.add(Trellis.PreferUserManaged, ID, DC.title, rdf.createLiteral("Another title"));
+        assertNotEquals(MementoHash.of(metadata(), first), MementoHash.of(metadata(), second),
+                "Changed quads should change the hash!");
+        final Metadata moved = Metadata.builder(ID).interactionModel(LDP.RDFSource)
+            .container(rdf.createIRI(TRELLIS_DATA_PREFIX + "elsewhere")).build();
+        assertNotEquals(MementoHash.of(metadata(), first), MementoHash.of(moved, first),
+                "Changed container should change the hash!");
+        assertEquals(MementoHash.of(metadata(), null), MementoHash.of(metadata(), rdf.createDataset()),
+                "Missing RDF should hash as empty!");
+    }
+
+    @Test
+    void hashFromRow() {
+        final ByteBuffer hash = MementoHash.of(metadata(), rdf.createDataset());
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(CONTENT_HASH)).thenReturn(true);
+        when(mockRow.getByteBuffer(CONTENT_HASH)).thenReturn(hash);
+        assertEquals(hash, MementoHash.of(mockRow), "Wrong hash from row!");
+    }
+
+    @Test
+    void hashMissingFromRow() {
+        when(mockRow.getColumnDefinitions()).thenReturn(mockColumns);
+        when(mockColumns.contains(CONTENT_HASH)).thenReturn(false);
+        assertNull(MementoHash.of(mockRow), "Unmigrated row should have no hash!");
+        assertNull(MementoHash.of((Row) null), "Missing row should have no hash!");
+    }
+
+    private static Metadata metadata() {
+        return Metadata.builder(ID).interactionModel(LDP.RDFSource)
+            .container(rdf.createIRI(TRELLIS_DATA_PREFIX)).build();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.trellisldp.ext.cassandra.MementoIndex.Mode;
+
+class MementoIndexTest {
+
+    @Test
+    void defaultsToFilter() {
+        final MementoIndex index = MementoIndex.configured();
+        assertFalse(index.writesTable(), "Memento time table should not be written by default!");
+        assertFalse(index.readsTable(), "Memento time table should not be read by default!");
+    }
+
+    @Test
+    void migratingWritesButDoesNotRead() {
+        final MementoIndex index = new MementoIndex(Mode.MIGRATING);
+        assertTrue(index.writesTable(), "Memento time table should be written while migrating!");
+        assertFalse(index.readsTable(), "Memento time table should not be read while migrating!");
+    }
+
+    @Test
+    void tableWritesAndReads() {
+        final MementoIndex index = new MementoIndex(Mode.TABLE);
+        assertTrue(index.writesTable(), "Memento time table should be written!");
+        assertTrue(index.readsTable(), "Memento time table should be read!");
+    }
+}
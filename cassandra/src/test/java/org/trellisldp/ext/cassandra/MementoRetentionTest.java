@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MementoRetentionTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-15T12:00:00Z");
+
+    @Test
+    void disabledByDefault() {
+        assertFalse(MementoRetention.configured().isEnabled(), "Retention should be disabled by default!");
+        final MementoRetention retention = new MementoRetention("", 0);
+        assertArrayEquals(new boolean[] {true, true}, retention.retain(List.of(NOW, NOW.minus(1000, DAYS)), NOW),
+                "Every Memento should be kept without a policy!");
+    }
+
+    @Test
+    void thinsByTier() {
+        final MementoRetention retention = new MementoRetention("ALL:P30D, DAILY:P1Y, MONTHLY", 0);
+        assertTrue(retention.isEnabled(), "Retention should be enabled!");
+        final List<Instant> times = List.of(NOW.minus(1, HOURS), NOW.minus(2, DAYS),
+                Instant.parse("2024-05-06T18:00:00Z"), Instant.parse("2024-05-06T06:00:00Z"),
+                Instant.parse("2023-01-20T00:00:00Z"), Instant.parse("2023-01-05T00:00:00Z"),
+                Instant.parse("2022-12-01T00:00:00Z"));
+        assertArrayEquals(new boolean[] {true, true, true, false, true, false, true}, retention.retain(times, NOW),
+                "Wrong Mementos kept!");
+    }
+
+    @Test
+    void removesBeyondLastTier() {
+        final MementoRetention retention = new MementoRetention("ALL:P30D", 0);
+        assertArrayEquals(new boolean[] {true, false}, retention.retain(List.of(NOW.minus(1, DAYS),
+                        NOW.minus(40, DAYS)), NOW), "Old Memento should be removed!");
+        assertArrayEquals(new boolean[] {true, false}, retention.retain(List.of(NOW.minus(40, DAYS),
+                        NOW.minus(50, DAYS)), NOW), "Newest Memento should always be kept!");
+    }
+
+    @Test
+    void limitsVersions() {
+        final MementoRetention retention = new MementoRetention("", 2);
+        assertTrue(retention.isEnabled(), "Retention should be enabled!");
+        assertArrayEquals(new boolean[] {true, true, false, false}, retention.retain(List.of(NOW,
+                        NOW.minus(1, DAYS), NOW.minus(2, DAYS), NOW.minus(3, DAYS)), NOW), "Wrong Mementos kept!");
+    }
+
+    @Test
+    void sweepsOneAtATime() {
+        final MementoRetention retention = new MementoRetention("ALL:P30D, DAILY", 2);
+        final MementoRetention.Sweep sweep = retention.sweep(NOW);
+        assertTrue(sweep.keep(NOW.minus(40, DAYS)), "Newest Memento should always be kept!");
+        assertFalse(sweep.keep(NOW.minus(40, DAYS).minus(1, HOURS)), "Older Memento of the same day should go!");
+        assertTrue(sweep.keep(NOW.minus(41, DAYS)), "Newest Memento of another day should be kept!");
+        assertFalse(sweep.keep(NOW.minus(42, DAYS)), "Mementos beyond the limit should go!");
+    }
+
+    @Test
+    void badPolicies() {
+        assertThrows(IllegalArgumentException.class, () -> new MementoRetention("DAILY, ALL:P1D", 0),
+                "Open-ended tier must be last!");
+        assertThrows(IllegalArgumentException.class, () -> new MementoRetention("WEEKLY:P1Y", 0),
+                "Unknown granularity should be rejected!");
+        assertThrows(IllegalArgumentException.class, () -> new MementoRetention("", -1),
+                "Negative max versions should be rejected!");
+    }
+}
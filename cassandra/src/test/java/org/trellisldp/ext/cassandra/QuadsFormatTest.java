@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.trellisldp.api.TrellisUtils.TRELLIS_DATA_PREFIX;
+import static org.trellisldp.ext.cassandra.QuadsFormat.NQUADS;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+import static org.trellisldp.ext.cassandra.QuadsFormat.THRIFT;
+
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+
+import java.nio.ByteBuffer;
+
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.RDFFactory;
+import org.trellisldp.vocabulary.DC;
+import org.trellisldp.vocabulary.Trellis;
+
+@ExtendWith(MockitoExtension.class)
+class QuadsFormatTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    @Mock
+    private BoundStatement mockStatement;
+
+    @Mock
+    private PreparedStatement mockPrepared;
+
+    @Mock
+    private ColumnDefinitions mockVariables;
+
+    private final Dataset dataset = rdf.createDataset();
+
+    @BeforeEach
+    void setUp() {
+        dataset.add(Trellis.PreferUserManaged, rdf.createIRI(TRELLIS_DATA_PREFIX + "resource"), DC.title,
+                rdf.createLiteral("A title"));
+        lenient().when(mockStatement.setString(anyString(), any())).thenReturn(mockStatement);
+        lenient().when(mockStatement.setByteBuffer(anyString(), any())).thenReturn(mockStatement);
+        lenient().when(mockStatement.setToNull(anyString())).thenReturn(mockStatement);
+        lenient().when(mockStatement.getPreparedStatement()).thenReturn(mockPrepared);
+        lenient().when(mockPrepared.getVariableDefinitions()).thenReturn(mockVariables);
+    }
+
+    @Test
+    void columnsClearTheOtherFormat() {
+        assertEquals(QUADS + ", " + QUADS_BINARY, NQUADS.columns(true), "N-Quads should clear binary RDF!");
+        assertEquals(QUADS, NQUADS.columns(false), "N-Quads should work without a binary column!");
+        assertEquals("?, ?", NQUADS.markers(true), "Wrong markers!");
+        assertEquals(QUADS + ", " + QUADS_BINARY, THRIFT.columns(false), "Wrong columns for RDF Thrift!");
+    }
+
+    @Test
+    void switchToNQuadsClearsBinary() {
+        when(mockVariables.contains(QUADS_BINARY)).thenReturn(true);
+        NQUADS.bind(mockStatement, dataset);
+        verify(mockStatement).setString(eq(QUADS), eq(CassandraIOUtils.serialize(dataset)));
+        verify(mockStatement).setToNull(QUADS_BINARY);
+    }
+
+    @Test
+    void nquadsWithoutBinaryColumn() {
+        when(mockVariables.contains(QUADS_BINARY)).thenReturn(false);
+        NQUADS.bind(mockStatement, dataset);
+        verify(mockStatement, never()).setToNull(QUADS_BINARY);
+    }
+
+    @Test
+    void switchToThriftClearsNQuads() {
+        THRIFT.bind(mockStatement, dataset);
+        verify(mockStatement).setString(QUADS, null);
+        verify(mockStatement).setByteBuffer(eq(QUADS_BINARY), any(ByteBuffer.class));
+    }
+}
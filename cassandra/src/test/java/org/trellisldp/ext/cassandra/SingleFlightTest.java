@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> lookups = new SingleFlight<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final CompletableFuture<String> pending = new CompletableFuture<>();
+
+    private CompletionStage<String> lookup(final String key) {
+        calls.incrementAndGet();
+        return pending;
+    }
+
+    @Test
+    void concurrentLookupsShared() {
+        final CompletableFuture<String> first = lookups.get("key", this::lookup).toCompletableFuture();
+        final CompletableFuture<String> second = lookups.get("key", this::lookup).toCompletableFuture();
+        assertEquals(1, calls.get(), "Lookups should have been coalesced!");
+        pending.complete("value");
+        assertEquals("value", first.join(), "Wrong value!");
+        assertEquals("value", second.join(), "Wrong value!");
+    }
+
+    @Test
+    void completedLookupsNotShared() {
+        pending.complete("value");
+        lookups.get("key", this::lookup).toCompletableFuture().join();
+        lookups.get("key", this::lookup).toCompletableFuture().join();
+        assertEquals(2, calls.get(), "Completed lookups should not be reused!");
+    }
+
+    @Test
+    void differentKeysNotShared() {
+        lookups.get("key", this::lookup);
+        lookups.get("other", this::lookup);
+        assertEquals(2, calls.get(), "Lookups of different keys should not be coalesced!");
+    }
+
+    @Test
+    void forgottenLookupsNotShared() {
+        final CompletableFuture<String> first = lookups.get("key", this::lookup).toCompletableFuture();
+        lookups.forget("key");
+        lookups.get("key", k -> completedFuture("new value"));
+        assertFalse(first.isDone(), "Forgetting a lookup should not complete it!");
+        pending.complete("value");
+        assertEquals("value", first.join(), "Waiting callers should still receive the result!");
+    }
+
+    @Test
+    void callersCannotCancelEachOther() {
+        final CompletableFuture<String> first = lookups.get("key", this::lookup).toCompletableFuture();
+        final CompletableFuture<String> second = lookups.get("key", this::lookup).toCompletableFuture();
+        first.cancel(true);
+        pending.complete("value");
+        assertEquals("value", second.join(), "One caller should not be able to cancel another!");
+    }
+
+    @Test
+    void failedLookupsShared() {
+        final CompletableFuture<String> first = lookups.get("key", this::lookup).toCompletableFuture();
+        final CompletableFuture<String> second = lookups.get("key", this::lookup).toCompletableFuture();
+        pending.completeExceptionally(new IllegalStateException("Expected"));
+        assertThrows(CompletionException.class, first::join, "Failure should reach every caller!");
+        assertThrows(CompletionException.class, second::join, "Failure should reach every caller!");
+        lookups.get("key", k -> completedFuture("value"));
+        assertEquals(1, calls.get(), "Failed lookups should not be reused!");
+    }
+
+    @Test
+    void lookupThrows() {
+        final CompletionStage<String> result = lookups.get("key", k -> {
+            throw new IllegalStateException("Expected");
+        });
+        assertThrows(CompletionException.class, result.toCompletableFuture()::join, "Failure should be returned!");
+        assertEquals("value", lookups.get("key", k -> completedFuture("value")).toCompletableFuture().join(),
+                "A failed lookup should not block later ones!");
+    }
+}
@@ -15,7 +15,21 @@
  */
 package org.trellisldp.ext.cassandra.query.binary;
 
+import static com.datastax.oss.driver.api.core.ConsistencyLevel.ONE;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+
+import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 
@@ -45,4 +59,32 @@ class CassandraBinaryQueryTest {
     void testNoArgBinaryInsertQuery() {
         assertDoesNotThrow(() -> new Insert());
     }
+
+    @Test
+    void testNoArgChunkStoreQuery() {
+        assertDoesNotThrow(() -> new ChunkStore());
+    }
+
+    @Test
+    void testCompressionReadWhereverRecorded() {
+        final CqlSession session = mock(CqlSession.class);
+        final Metadata metadata = mock(Metadata.class);
+        final KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        final TableMetadata table = mock(TableMetadata.class);
+        final CqlIdentifier name = CqlIdentifier.fromCql("trellis");
+        when(session.getKeyspace()).thenReturn(Optional.of(name));
+        when(session.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace(name)).thenReturn(Optional.of(keyspace));
+        when(keyspace.getTable("binarydata")).thenReturn(Optional.of(table));
+        when(table.getColumn("compression")).thenReturn(Optional.of(mock(ColumnMetadata.class)));
+        assertDoesNotThrow(() -> new Read(session, ONE), "Read query could not be created!");
+        verify(session).prepare(startsWith("SELECT chunk, compression FROM binarydata"));
+    }
+
+    @Test
+    void testCompressionNotReadWithoutColumn() {
+        final CqlSession session = mock(CqlSession.class);
+        assertDoesNotThrow(() -> new Read(session, ONE), "Read query could not be created!");
+        verify(session).prepare(startsWith("SELECT chunk FROM binarydata"));
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.TrellisRuntimeException;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkPagesTest {
+
+    @Mock
+    private AsyncResultSet firstPage, secondPage, lastPage;
+
+    @Mock
+    private Row one, two, three;
+
+    @Test
+    void rowsOfEveryPageInOrder() {
+        when(firstPage.currentPage()).thenReturn(List.of(one, two));
+        when(firstPage.hasMorePages()).thenReturn(true);
+        when(firstPage.fetchNextPage()).thenReturn(completedFuture(secondPage));
+        when(secondPage.currentPage()).thenReturn(List.of());
+        when(secondPage.hasMorePages()).thenReturn(true);
+        when(secondPage.fetchNextPage()).thenReturn(completedFuture(lastPage));
+        when(lastPage.currentPage()).thenReturn(List.of(three));
+        when(lastPage.hasMorePages()).thenReturn(false);
+
+        final ChunkPages pages = new ChunkPages(firstPage);
+        assertSame(one, pages.next(), "Wrong first chunk!");
+        assertSame(two, pages.next(), "Wrong second chunk!");
+        assertSame(three, pages.next(), "Empty pages should be passed over!");
+        assertFalse(pages.hasNext(), "No chunks should be left!");
+        assertThrows(NoSuchElementException.class, pages::next, "Reading past the last chunk should fail!");
+    }
+
+    @Test
+    void nextPageRequestedWhenCurrentPageReached() {
+        when(firstPage.currentPage()).thenReturn(List.of(one));
+        when(firstPage.hasMorePages()).thenReturn(true);
+        when(firstPage.fetchNextPage()).thenReturn(completedFuture(secondPage));
+        when(secondPage.currentPage()).thenReturn(List.of(two));
+        when(secondPage.hasMorePages()).thenReturn(true);
+        when(secondPage.fetchNextPage()).thenReturn(completedFuture(lastPage));
+
+        final ChunkPages pages = new ChunkPages(firstPage);
+        verify(firstPage).fetchNextPage();
+        verify(secondPage, never()).fetchNextPage();
+        pages.next();
+        verify(secondPage, never()).fetchNextPage();
+        assertTrue(pages.hasNext(), "Second page should have a chunk!");
+        verify(secondPage).fetchNextPage();
+    }
+
+    @Test
+    void failedPage() {
+        final TrellisRuntimeException failure = new TrellisRuntimeException("Expected");
+        when(firstPage.currentPage()).thenReturn(List.of(one));
+        when(firstPage.hasMorePages()).thenReturn(true);
+        when(firstPage.fetchNextPage()).thenReturn(failedFuture(failure));
+
+        final ChunkPages pages = new ChunkPages(firstPage);
+        assertSame(one, pages.next(), "Rows of the first page should be read!");
+        assertSame(failure, assertThrows(TrellisRuntimeException.class, pages::hasNext,
+                    "A page that cannot be fetched should fail the read!"), "Wrong failure!");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkReadAheadTest {
+
+    private static final int CHUNKS = 10;
+
+    private static final int CHUNK_SIZE = 100;
+
+    @Mock
+    private CqlSession mockSession;
+
+    @Mock
+    private AsyncResultSet mockResultSet;
+
+    @Mock
+    private Row mockRow;
+
+    private final List<BoundStatement> chunks = IntStream.range(0, CHUNKS).mapToObj(i -> mock(BoundStatement.class))
+        .collect(toList());
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mockSession.executeAsync(any(BoundStatement.class)))
+            .thenAnswer(inv -> completedFuture(mockResultSet));
+        lenient().when(mockResultSet.one()).thenReturn(mockRow);
+        lenient().when(mockRow.get("chunk", InputStream.class))
+            .thenAnswer(inv -> new ByteArrayInputStream(new byte[CHUNK_SIZE]));
+    }
+
+    @Test
+    void nothingFetchedUntilRead() {
+        final ChunkReadAhead readAhead = new ChunkReadAhead(mockSession, chunks, 4, Long.MAX_VALUE);
+        readAhead.chunk(0);
+        readAhead.chunk(1);
+        verify(mockSession, never()).executeAsync(any(BoundStatement.class));
+    }
+
+    @Test
+    void windowLimitedByChunkCount() throws IOException {
+        final ChunkReadAhead readAhead = new ChunkReadAhead(mockSession, chunks, 4, Long.MAX_VALUE);
+        try (final InputStream chunk = readAhead.chunk(0)) {
+            assertEquals(CHUNK_SIZE, chunk.available(), "Wrong chunk size!");
+        }
+        verify(mockSession, times(5)).executeAsync(any(BoundStatement.class));
+        verify(mockSession).executeAsync(chunks.get(4));
+        verify(mockSession, never()).executeAsync(chunks.get(5));
+    }
+
+    @Test
+    void windowLimitedByBudget() throws IOException {
+        final ChunkReadAhead readAhead = new ChunkReadAhead(mockSession, chunks, 4, 2 * CHUNK_SIZE + 50);
+        try (final InputStream chunk = readAhead.chunk(0)) {
+            chunk.read();
+        }
+        verify(mockSession).executeAsync(chunks.get(2));
+        verify(mockSession, never()).executeAsync(chunks.get(3));
+    }
+
+    @Test
+    void windowSlides() throws IOException {
+        final ChunkReadAhead readAhead = new ChunkReadAhead(mockSession, chunks, 2, Long.MAX_VALUE);
+        for (int i = 0; i < CHUNKS; i++) {
+            try (final InputStream chunk = readAhead.chunk(i)) {
+                assertEquals(CHUNK_SIZE, chunk.readAllBytes().length, "Wrong chunk size!");
+            }
+            verify(mockSession).executeAsync(chunks.get(Math.min(i + 2, CHUNKS - 1)));
+            if (i + 3 < CHUNKS) verify(mockSession, never()).executeAsync(chunks.get(i + 3));
+        }
+        for (final BoundStatement chunk : chunks) {
+            verify(mockSession).executeAsync(chunk);
+        }
+    }
+
+    @Test
+    void failedChunk() throws IOException {
+        final RuntimeException e = new RuntimeException("Expected");
+        when(mockSession.executeAsync(chunks.get(1))).thenReturn(failedFuture(e));
+        final ChunkReadAhead readAhead = new ChunkReadAhead(mockSession, chunks, 4, Long.MAX_VALUE);
+        try (final InputStream chunk = readAhead.chunk(0)) {
+            assertEquals(CHUNK_SIZE, chunk.readAllBytes().length, "Wrong chunk size!");
+        }
+        try (final InputStream chunk = readAhead.chunk(1)) {
+            assertSame(e, assertThrows(RuntimeException.class, chunk::read), "Didn't get the exception we expected!");
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import static com.datastax.oss.driver.api.core.ConsistencyLevel.ONE;
+import static com.datastax.oss.driver.api.core.ConsistencyLevel.SERIAL;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkStoreTest {
+
+    private final ByteBuffer hash = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+
+    private final ByteBuffer chunk = ByteBuffer.wrap(new byte[] { 4, 5, 6 });
+
+    private final BoundStatement write = bound();
+
+    private final BoundStatement count = bound();
+
+    private final BoundStatement create = bound();
+
+    private final BoundStatement swap = bound();
+
+    private final BoundStatement mark = bound();
+
+    private final BoundStatement remove = bound();
+
+    private final BoundStatement delete = bound();
+
+    private final BoundStatement exists = bound();
+
+    @Mock
+    private CqlSession mockSession;
+
+    @Mock
+    private AsyncResultSet mockCountResult;
+
+    @Mock
+    private AsyncResultSet mockExistsResult;
+
+    @Mock
+    private AsyncResultSet mockApplied;
+
+    @Mock
+    private AsyncResultSet mockNotApplied;
+
+    @Mock
+    private AsyncResultSet mockResultSet;
+
+    @Mock
+    private Row mockRow;
+
+    private ChunkStore store;
+
+    private static BoundStatement bound() {
+        return mock(BoundStatement.class, RETURNS_SELF);
+    }
+
+    private void prepare(final String query, final BoundStatement statement) {
+        final PreparedStatement prepared = mock(PreparedStatement.class);
+        lenient().when(prepared.bind()).thenReturn(statement);
+        when(mockSession.prepareAsync(startsWith(query))).thenReturn(completedFuture(prepared));
+    }
+
+    @BeforeEach
+    void setUp() {
+        prepare("INSERT INTO chunkstore", write);
+        prepare("SELECT refs, released FROM chunkrefs", count);
+        prepare("INSERT INTO chunkrefs", create);
+        prepare("UPDATE chunkrefs SET refs = :refs", swap);
+        prepare("UPDATE chunkrefs SET refs = 0", mark);
+        prepare("DELETE FROM chunkrefs", remove);
+        prepare("DELETE FROM chunkstore", delete);
+        prepare("SELECT hash FROM chunkstore", exists);
+        store = new ChunkStore(mockSession, ONE, true);
+        lenient().when(mockApplied.wasApplied()).thenReturn(true);
+        lenient().when(mockNotApplied.wasApplied()).thenReturn(false);
+        lenient().when(mockSession.executeAsync(write)).thenReturn(completedFuture(mockResultSet));
+        lenient().when(mockSession.executeAsync(delete)).thenReturn(completedFuture(mockResultSet));
+        lenient().when(mockSession.executeAsync(create)).thenReturn(completedFuture(mockApplied));
+        lenient().when(mockSession.executeAsync(swap)).thenReturn(completedFuture(mockApplied));
+        lenient().when(mockSession.executeAsync(mark)).thenReturn(completedFuture(mockApplied));
+        lenient().when(mockSession.executeAsync(remove)).thenReturn(completedFuture(mockApplied));
+        lenient().when(mockSession.executeAsync(count)).thenReturn(completedFuture(mockCountResult));
+        lenient().when(mockSession.executeAsync(exists)).thenReturn(completedFuture(mockExistsResult));
+    }
+
+    @Test
+    void disabled() {
+        assertFalse(new ChunkStore(mockSession, ONE, false).isEnabled(), "Chunk store should be disabled!");
+        assertFalse(new ChunkStore().isEnabled(), "Chunk store should be disabled!");
+        assertTrue(store.isEnabled(), "Chunk store should be enabled!");
+    }
+
+    @Test
+    void firstReferenceWritesChunk() {
+        store.put(hash, chunk).toCompletableFuture().join();
+        verify(count).setConsistencyLevel(SERIAL);
+        verify(mockSession).executeAsync(create);
+        verify(mockSession, never()).executeAsync(exists);
+        verify(mockSession).executeAsync(write);
+        verify(write).setString("compression", null);
+    }
+
+    @Test
+    void compressedChunkWritten() {
+        store.put(hash, chunk, "deflate").toCompletableFuture().join();
+        verify(write).setString("compression", "deflate");
+        verify(mockSession).executeAsync(write);
+    }
+
+    @Test
+    void storedChunkNotWrittenAgain() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L);
+        when(mockExistsResult.one()).thenReturn(mock(Row.class));
+        store.put(hash, chunk).toCompletableFuture().join();
+        verify(swap).setLong("expected", 1L);
+        verify(swap).setLong("refs", 2L);
+        verify(mockSession, never()).executeAsync(write);
+    }
+
+    @Test
+    void referencedButMissingChunkWritten() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L);
+        store.put(hash, chunk).toCompletableFuture().join();
+        verify(mockSession).executeAsync(write);
+    }
+
+    @Test
+    void conflictingReferenceRetried() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L, 2L);
+        when(mockSession.executeAsync(swap)).thenReturn(completedFuture(mockNotApplied),
+                completedFuture(mockApplied));
+        when(mockExistsResult.one()).thenReturn(mock(Row.class));
+        store.put(hash, chunk).toCompletableFuture().join();
+        verify(mockSession, times(2)).executeAsync(count);
+        verify(swap).setLong("refs", 3L);
+    }
+
+    @Test
+    void endlessConflictsFail() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L);
+        when(mockSession.executeAsync(swap)).thenReturn(completedFuture(mockNotApplied));
+        final CompletionException e = assertThrows(CompletionException.class,
+                () -> store.put(hash, chunk).toCompletableFuture().join(), "Put should fail!");
+        assertTrue(e.getCause() instanceof IllegalStateException, "Wrong cause of failure!");
+        verify(mockSession, never()).executeAsync(write);
+    }
+
+    @Test
+    void deletionFinishedBeforeReferencing() {
+        final Row marked = mock(Row.class);
+        when(marked.getLong("refs")).thenReturn(0L);
+        when(marked.getLong("released")).thenReturn(42L);
+        when(mockCountResult.one()).thenReturn(marked, (Row) null);
+        store.put(hash, chunk).toCompletableFuture().join();
+        verify(delete).setLong("timestamp", 42L);
+        verify(mockSession).executeAsync(remove);
+        verify(mockSession).executeAsync(create);
+        verify(mockSession).executeAsync(write);
+    }
+
+    @Test
+    void failedWriteReleasesReference() {
+        final RuntimeException error = new RuntimeException("Expected");
+        when(mockCountResult.one()).thenReturn(null, mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L);
+        when(mockSession.executeAsync(write)).thenReturn(failedFuture(error));
+        final CompletionException e = assertThrows(CompletionException.class,
+                () -> store.put(hash, chunk).toCompletableFuture().join(), "Put should fail!");
+        assertSame(error, e.getCause(), "Wrong cause of failure!");
+        verify(mockSession).executeAsync(mark);
+        verify(mockSession).executeAsync(delete);
+    }
+
+    @Test
+    void failedReferenceNotReleased() {
+        when(mockSession.executeAsync(create)).thenReturn(failedFuture(new RuntimeException("Expected")));
+        assertThrows(CompletionException.class, () -> store.put(hash, chunk).toCompletableFuture().join(),
+                "Put should fail!");
+        verify(mockSession, never()).executeAsync(mark);
+        verify(mockSession, never()).executeAsync(write);
+    }
+
+    @Test
+    void lastReleaseDeletesChunk() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L);
+        store.release(hash).toCompletableFuture().join();
+        verify(mark).setLong("expected", 1L);
+        verify(mockSession).executeAsync(mark);
+        verify(mockSession).executeAsync(delete);
+        verify(mockSession).executeAsync(remove);
+    }
+
+    @Test
+    void sharedChunkNotDeleted() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(2L);
+        store.release(hash).toCompletableFuture().join();
+        verify(swap).setLong("refs", 1L);
+        verify(mockSession, never()).executeAsync(mark);
+        verify(mockSession, never()).executeAsync(delete);
+    }
+
+    @Test
+    void conflictingReleaseRetried() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(1L, 2L);
+        when(mockSession.executeAsync(mark)).thenReturn(completedFuture(mockNotApplied));
+        store.release(hash).toCompletableFuture().join();
+        verify(swap).setLong("refs", 1L);
+        verify(mockSession, never()).executeAsync(delete);
+    }
+
+    @Test
+    void repeatedChunkReleasedOnce() {
+        when(mockCountResult.one()).thenReturn(mockRow);
+        when(mockRow.getLong("refs")).thenReturn(3L);
+        store.releaseAll(List.of(hash, ByteBuffer.wrap(new byte[] { 1, 2, 3 }))).toCompletableFuture().join();
+        verify(mockSession).executeAsync(swap);
+        verify(swap).setLong("refs", 1L);
+    }
+}
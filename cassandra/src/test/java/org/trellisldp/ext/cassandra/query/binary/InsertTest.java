@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.binary;
+
+import static com.datastax.oss.driver.api.core.ConsistencyLevel.ONE;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.api.RDFFactory;
+
+@ExtendWith(MockitoExtension.class)
+class InsertTest {
+
+    private static final RDF rdf = RDFFactory.getInstance();
+
+    private final IRI id = rdf.createIRI("trellis:data/binary");
+
+    private final ByteBuffer content = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+
+    private final BoundStatement inline = mock(BoundStatement.class, RETURNS_SELF);
+
+    private final BoundStatement chunked = mock(BoundStatement.class, RETURNS_SELF);
+
+    @Mock
+    private CqlSession mockSession;
+
+    @Mock
+    private PreparedStatement mockMetadata;
+
+    @Mock
+    private PreparedStatement mockChunk;
+
+    @Mock
+    private AsyncResultSet mockResultSet;
+
+    private Insert insert;
+
+    @BeforeEach
+    void setUp() {
+        when(mockSession.prepareAsync(startsWith("INSERT INTO binarydata"))).thenReturn(completedFuture(mockChunk));
+        when(mockSession.prepareAsync(startsWith("INSERT INTO binarymeta"))).thenReturn(completedFuture(mockMetadata));
+        lenient().when(mockMetadata.bind()).thenReturn(inline, chunked);
+        when(mockSession.executeAsync(any(BoundStatement.class))).thenReturn(completedFuture(mockResultSet));
+        insert = new Insert(mockSession, ONE, true);
+    }
+
+    @Test
+    void uncompressedChunkClearsCompression() {
+        final BoundStatement bound = mock(BoundStatement.class, RETURNS_SELF);
+        when(mockChunk.bind()).thenReturn(bound);
+        final Insert compressing = new Insert(mockSession, ONE, true, true);
+        compressing.execute(id, 1024, 0, content).toCompletableFuture().join();
+        verify(bound).setToNull("compression");
+        compressing.execute(id, 1024, 1, content, "deflate").toCompletableFuture().join();
+        verify(bound).setString("compression", "deflate");
+    }
+
+    @Test
+    void noCompressionColumnWithoutCompression() {
+        final BoundStatement bound = mock(BoundStatement.class, RETURNS_SELF);
+        when(mockChunk.bind()).thenReturn(bound);
+        insert.execute(id, 1024, 0, content).toCompletableFuture().join();
+        verify(bound, never()).setToNull("compression");
+        verify(mockSession).prepareAsync("INSERT INTO binarydata (identifier, chunkSize, chunkIndex, chunk) VALUES "
+                + "(:identifier, :chunkSize, :chunkIndex, :chunk)");
+    }
+
+    @Test
+    void chunkedContentReplacesInlineContent() {
+        insert.executeInline(id, 1024, content, "SHA-256", null).toCompletableFuture().join();
+        final List<ByteBuffer> hashes = List.of(ByteBuffer.wrap(new byte[] { 4, 5, 6 }));
+        insert.executeMetadata(id, 2048, 1024, 2, "SHA-256", null, hashes).toCompletableFuture().join();
+
+        verify(inline).setByteBuffer("inline", content);
+        verify(inline).setToNull("chunkHashes");
+        verify(chunked).setToNull("inline");
+        verify(chunked).setList(eq("chunkHashes"), eq(hashes), eq(ByteBuffer.class));
+        verify(mockSession).executeAsync(inline);
+        verify(mockSession).executeAsync(chunked);
+    }
+
+    @Test
+    void contentStoredByIndexReplacesInlineContent() {
+        insert.executeInline(id, 1024, content, "SHA-256", null).toCompletableFuture().join();
+        insert.executeMetadata(id, 2048, 1024, 2, "SHA-256", null).toCompletableFuture().join();
+
+        verify(chunked).setToNull("inline");
+        verify(chunked).setToNull("chunkHashes");
+        verify(chunked, never()).setList(eq("chunkHashes"), any(), eq(ByteBuffer.class));
+    }
+}
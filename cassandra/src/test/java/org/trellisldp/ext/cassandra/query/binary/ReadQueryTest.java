@@ -20,8 +20,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
@@ -29,6 +32,19 @@ import org.trellisldp.ext.cassandra.query.binary.BinaryReadQuery.SequenceInputSt
 
 class ReadQueryTest {
 
+    private static final int CHUNKS = 10_000;
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private static IntFunction<InputStream> chunks(final AtomicInteger opened) {
+        return i -> {
+            opened.incrementAndGet();
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            chunk[0] = (byte) i;
+            return new ByteArrayInputStream(chunk);
+        };
+    }
+
     @Test
     void shouldConcatStreams() throws IOException {
         try (InputStream one = new ByteArrayInputStream("one".getBytes(UTF_8));
@@ -114,4 +130,60 @@ class ReadQueryTest {
             assertEquals(0, stream.read(new byte[5], 2, 0));
         }
     }
+
+    @Test
+    void shouldReadManyChunks() throws IOException {
+        final AtomicInteger opened = new AtomicInteger();
+        try (InputStream stream = new SequenceInputStream(chunks(opened), CHUNKS)) {
+            assertEquals(1, opened.get(), "Streams should be opened only when reached!");
+            final byte[] buffer = new byte[CHUNK_SIZE / 2];
+            long total = 0;
+            int read;
+            while ((read = stream.read(buffer, 0, buffer.length)) != -1) {
+                total += read;
+            }
+            assertEquals((long) CHUNKS * CHUNK_SIZE, total, "Wrong number of bytes read!");
+            assertEquals(CHUNKS, opened.get(), "Every stream should have been opened once!");
+        }
+    }
+
+    @Test
+    void shouldTransferManyChunks() throws IOException {
+        try (InputStream stream = new SequenceInputStream(chunks(new AtomicInteger()), CHUNKS);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            assertEquals((long) CHUNKS * CHUNK_SIZE, stream.transferTo(out), "Wrong number of bytes transferred!");
+            final byte[] bytes = out.toByteArray();
+            assertEquals((byte) (CHUNKS - 1), bytes[(CHUNKS - 1) * CHUNK_SIZE], "Wrong byte at start of last chunk!");
+            assertEquals(-1, stream.read(), "Stream was not exhausted after transfer!");
+        }
+    }
+
+    @Test
+    void shouldSkipManyChunks() throws IOException {
+        final int target = CHUNKS - 10;
+        try (InputStream stream = new SequenceInputStream(chunks(new AtomicInteger()), CHUNKS)) {
+            assertEquals((long) target * CHUNK_SIZE, stream.skip((long) target * CHUNK_SIZE),
+                    "Could not skip across chunks!");
+            assertEquals(target & 0xFF, stream.read(), "Wrong byte after skip!");
+            assertEquals(10L * CHUNK_SIZE - 1, stream.skip(Long.MAX_VALUE), "Could not skip to end!");
+            assertEquals(-1, stream.read(), "Stream was not exhausted after skip!");
+        }
+    }
+
+    @Test
+    void shouldStopAfterClose() throws IOException {
+        final AtomicInteger opened = new AtomicInteger();
+        final InputStream stream = new SequenceInputStream(chunks(opened), CHUNKS);
+        stream.close();
+        assertEquals(-1, stream.read(), "Closed stream should be exhausted!");
+        assertEquals(1, opened.get(), "No more streams should be opened after close!");
+    }
+
+    @Test
+    void shouldHandleNoStreams() throws IOException {
+        try (InputStream stream = new SequenceInputStream()) {
+            assertEquals(-1, stream.read(), "Empty stream should be exhausted!");
+            assertEquals(0, stream.skip(10), "Empty stream should not skip!");
+        }
+    }
 }
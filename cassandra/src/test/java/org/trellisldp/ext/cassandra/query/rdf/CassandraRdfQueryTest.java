@@ -17,7 +17,12 @@ package org.trellisldp.ext.cassandra.query.rdf;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+
 import org.junit.jupiter.api.Test;
+import org.trellisldp.ext.cassandra.MementoIndex;
+import org.trellisldp.ext.cassandra.MementoRetention;
+import org.trellisldp.ext.cassandra.QuadsFormat;
 
 class CassandraRdfQueryTest {
 
@@ -31,6 +36,11 @@ class CassandraRdfQueryTest {
         assertDoesNotThrow(() -> new BasicContainment());
     }
 
+    @Test
+    void testBadContainmentPageSize() {
+        assertThrows(IllegalArgumentException.class, () -> new BasicContainment(null, ConsistencyLevel.ONE, 0));
+    }
+
     @Test
     void testNoArgRdfImmutableRetrieveQuery() {
         assertDoesNotThrow(() -> new ImmutableRetrieve());
@@ -66,6 +76,23 @@ class CassandraRdfQueryTest {
         assertDoesNotThrow(() -> new GetMemento());
     }
 
+    @Test
+    void testBadMementoBackfillPageSize() {
+        assertThrows(IllegalArgumentException.class, () -> new MementoBackfill(null, ConsistencyLevel.ONE, 0, 1));
+    }
+
+    @Test
+    void testBadMementoCompactorSettings() {
+        final MementoRetention retention = new MementoRetention("ALL:P30D", 0);
+        final MementoIndex index = new MementoIndex(MementoIndex.Mode.FILTER);
+        assertThrows(IllegalArgumentException.class, () -> new MementoCompactor(null, ConsistencyLevel.ONE,
+                    QuadsFormat.NQUADS, retention, index, 0, 1, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new MementoCompactor(null, ConsistencyLevel.ONE,
+                    QuadsFormat.NQUADS, retention, index, 1, 0, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new MementoCompactor(null, ConsistencyLevel.ONE,
+                    QuadsFormat.NQUADS, retention, index, 1, 1, 0.0));
+    }
+
     @Test
     void testNoArgRdfImmutableInsertQuery() {
         assertDoesNotThrow(() -> new ImmutableInsert());
@@ -75,4 +102,15 @@ class CassandraRdfQueryTest {
     void testNoArgRdfMementoizeQuery() {
         assertDoesNotThrow(() -> new Mementoize());
     }
+
+    @Test
+    void testDeltaMementoWithoutDeltas() {
+        assertThrows(IllegalStateException.class,
+                () -> new Mementoize().execute(null, null, null, null, null, null, null, 1, null));
+    }
+
+    @Test
+    void testNoArgRdfMementoChainQuery() {
+        assertDoesNotThrow(() -> new MementoChain());
+    }
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static com.datastax.oss.driver.api.core.ConsistencyLevel.ONE;
+import static com.datastax.oss.driver.api.core.cql.DefaultBatchType.LOGGED;
+import static com.datastax.oss.driver.api.core.cql.DefaultBatchType.UNLOGGED;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.trellisldp.ext.cassandra.QuadsFormat.QUADS_BINARY;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_BASE;
+import static org.trellisldp.ext.cassandra.query.rdf.Mementoize.DELTA_DEPTH;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.trellisldp.ext.cassandra.MementoIndex;
+import org.trellisldp.ext.cassandra.MementoRetention;
+import org.trellisldp.ext.cassandra.QuadsFormat;
+
+@ExtendWith(MockitoExtension.class)
+class MementoCompactorTest {
+
+    private static final String IDENTIFIER = "trellis:data/resource";
+
+    // every Memento in the last thirty days is kept, and only the newest of those older
+    private final MementoRetention retention = new MementoRetention("ALL:P30D", 0);
+
+    private final Instant now = Instant.now();
+
+    private final UUID newest = Uuids.timeBased();
+
+    private final UUID older = Uuids.timeBased();
+
+    private final UUID oldest = Uuids.timeBased();
+
+    private final BoundStatement scan = bound();
+
+    private final BoundStatement chain = bound();
+
+    private final BoundStatement delete = bound();
+
+    private final BoundStatement timeDelete = bound();
+
+    private final BoundStatement snapshot = bound();
+
+    private PreparedStatement deletePrepared;
+
+    private PreparedStatement timeDeletePrepared;
+
+    @Mock
+    private CqlSession mockSession;
+
+    @Mock
+    private ResultSet mockScan;
+
+    @Mock
+    private AsyncResultSet mockChain;
+
+    @Mock
+    private AsyncResultSet mockResultSet;
+
+    private static BoundStatement bound() {
+        return mock(BoundStatement.class, RETURNS_SELF);
+    }
+
+    private PreparedStatement prepare(final String query, final BoundStatement statement) {
+        // the deletes bind their values directly, so every form of bind() yields the statement
+        final PreparedStatement prepared = mock(PreparedStatement.class,
+                i -> "bind".equals(i.getMethod().getName()) ? statement : null);
+        lenient().when(mockSession.prepareAsync(startsWith(query))).thenReturn(completedFuture(prepared));
+        return prepared;
+    }
+
+    private Row memento(final UUID created, final Instant modified, final int depth, final UUID base) {
+        final Row row = mock(Row.class);
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        lenient().when(row.getColumnDefinitions()).thenReturn(columns);
+        lenient().when(columns.contains(anyString())).thenAnswer(i -> !QUADS_BINARY.equals(i.getArgument(0)));
+        lenient().when(row.isNull(anyString())).thenAnswer(i -> DELTA_BASE.equals(i.getArgument(0)) && base == null);
+        lenient().when(row.getString("identifier")).thenReturn(IDENTIFIER);
+        lenient().when(row.getUuid("created")).thenReturn(created);
+        lenient().when(row.get("modified", Instant.class)).thenReturn(modified);
+        lenient().when(row.get("mementomodified", Instant.class)).thenReturn(modified);
+        lenient().when(row.getInt(DELTA_DEPTH)).thenReturn(depth);
+        lenient().when(row.getUuid(DELTA_BASE)).thenReturn(base);
+        return row;
+    }
+
+    private void scan(final Row... rows) {
+        when(mockScan.iterator()).thenReturn(List.of(rows).iterator());
+        // a rewrite reads the Memento and the one it is based on
+        lenient().when(mockChain.currentPage()).thenReturn(List.of(rows));
+    }
+
+    private long compact(final MementoIndex.Mode mode) {
+        return compactor(mode).execute(Long.MIN_VALUE).toCompletableFuture().join();
+    }
+
+    private MementoCompactor compactor(final MementoIndex.Mode mode) {
+        return new MementoCompactor(mockSession, ONE, QuadsFormat.THRIFT, retention, new MementoIndex(mode), 1000,
+                50, 1000.0);
+    }
+
+    private List<BatchStatement> batches() {
+        final ArgumentCaptor<BatchStatement> batches = ArgumentCaptor.forClass(BatchStatement.class);
+        verify(mockSession).executeAsync(batches.capture());
+        return batches.getAllValues();
+    }
+
+    private static List<BatchableStatement<?>> statements(final BatchStatement batch) {
+        final List<BatchableStatement<?>> statements = new ArrayList<>();
+        batch.forEach(statements::add);
+        return statements;
+    }
+
+    @BeforeEach
+    void setUp() {
+        prepare("SELECT token(identifier)", scan);
+        prepare("SELECT * FROM mementodata WHERE identifier = :identifier LIMIT", bound());
+        prepare("SELECT * FROM mementodata WHERE identifier = :identifier AND created", chain);
+        deletePrepared = prepare("DELETE FROM mementodata", delete);
+        timeDeletePrepared = prepare("DELETE FROM mementotime", timeDelete);
+        prepare("UPDATE mementodata", snapshot);
+        lenient().when(mockSession.execute(scan)).thenReturn(mockScan);
+        lenient().when(mockSession.executeAsync(chain)).thenReturn(completedFuture(mockChain));
+        lenient().when(mockSession.executeAsync(snapshot)).thenReturn(completedFuture(mockResultSet));
+        lenient().when(mockSession.executeAsync(any(BatchStatement.class)))
+            .thenReturn(completedFuture(mockResultSet));
+    }
+
+    @Test
+    void keptDeltaRewrittenBeforeItsBaseIsRemoved() {
+        final CompletableFuture<AsyncResultSet> rewrite = new CompletableFuture<>();
+        when(mockSession.executeAsync(snapshot)).thenReturn(rewrite);
+        scan(memento(newest, now.minus(1, DAYS), 1, older), memento(older, now.minus(40, DAYS), 0, null));
+        final CompletionStage<Long> compaction = compactor(MementoIndex.Mode.FILTER).execute(Long.MIN_VALUE);
+
+        verify(mockSession, timeout(5000)).executeAsync(snapshot);
+        verify(snapshot).setUuid("created", newest);
+        verify(mockSession, never()).executeAsync(any(BatchStatement.class));
+        rewrite.complete(mockResultSet);
+        assertEquals(1L, compaction.toCompletableFuture().join(), "Wrong number of Mementos removed!");
+
+        final InOrder order = inOrder(mockSession);
+        order.verify(mockSession).executeAsync(snapshot);
+        order.verify(mockSession).executeAsync(any(BatchStatement.class));
+        verify(deletePrepared).bind(IDENTIFIER, older);
+        verify(deletePrepared, never()).bind(IDENTIFIER, newest);
+    }
+
+    @Test
+    void failedRewriteBlocksLaterRemovals() {
+        when(mockSession.executeAsync(snapshot)).thenReturn(failedFuture(new IllegalStateException("Expected")));
+        scan(memento(newest, now.minus(1, DAYS), 1, older), memento(older, now.minus(40, DAYS), 0, null),
+                memento(oldest, now.minus(50, DAYS), 0, null));
+        assertEquals(0L, compact(MementoIndex.Mode.FILTER), "No Memento should be removed!");
+        verify(mockSession, never()).executeAsync(any(BatchStatement.class));
+    }
+
+    @Test
+    void legacyDeltaRewrittenBeforeTheNextMementoIsRemoved() {
+        scan(memento(newest, now.minus(1, DAYS), 1, null), memento(older, now.minus(40, DAYS), 0, null));
+        assertEquals(1L, compact(MementoIndex.Mode.FILTER), "Wrong number of Mementos removed!");
+        final InOrder order = inOrder(mockSession);
+        order.verify(mockSession).executeAsync(snapshot);
+        order.verify(mockSession).executeAsync(any(BatchStatement.class));
+        verify(snapshot).setUuid("created", newest);
+    }
+
+    @Test
+    void snapshotsNeedNoRewrite() {
+        scan(memento(newest, now.minus(1, DAYS), 0, null), memento(older, now.minus(40, DAYS), 0, null),
+                memento(oldest, now.minus(50, DAYS), 0, null));
+        assertEquals(2L, compact(MementoIndex.Mode.FILTER), "Wrong number of Mementos removed!");
+        verify(mockSession, never()).executeAsync(snapshot);
+        final List<BatchStatement> batches = batches();
+        assertEquals(UNLOGGED, batches.get(0).getBatchType(), "Removals from one table need no log!");
+        assertEquals(List.of(delete, delete), statements(batches.get(0)), "Wrong statements in batch!");
+    }
+
+    @Test
+    void timeIndexEntriesRemoved() {
+        final Instant modified = now.minus(40, DAYS);
+        scan(memento(newest, now.minus(1, DAYS), 0, null), memento(older, modified, 0, null));
+        assertEquals(1L, compact(MementoIndex.Mode.TABLE), "Wrong number of Mementos removed!");
+        verify(deletePrepared).bind(IDENTIFIER, older);
+        verify(timeDeletePrepared).bind(IDENTIFIER, modified, older);
+        final List<BatchStatement> batches = batches();
+        assertEquals(LOGGED, batches.get(0).getBatchType(), "Removals from two tables must be logged!");
+        assertEquals(List.of(delete, timeDelete), statements(batches.get(0)), "Wrong statements in batch!");
+    }
+
+    @Test
+    void newestMementoNeverRemoved() {
+        scan(memento(newest, now.minus(40, DAYS), 0, null));
+        assertEquals(0L, compact(MementoIndex.Mode.TABLE), "The newest Memento should be kept!");
+        verify(mockSession, never()).executeAsync(any(BatchStatement.class));
+    }
+}
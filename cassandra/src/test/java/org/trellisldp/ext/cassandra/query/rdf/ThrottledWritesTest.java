@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021 Aaron Coburn and individual contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trellisldp.ext.cassandra.query.rdf;
+
+import static com.datastax.oss.driver.api.core.ConsistencyLevel.ONE;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ThrottledWritesTest {
+
+    private final BoundStatement scan = mock(BoundStatement.class, RETURNS_SELF);
+
+    private final BoundStatement write = mock(BoundStatement.class, RETURNS_SELF);
+
+    @Mock
+    private CqlSession mockSession;
+
+    @Mock
+    private ResultSet mockResultSet;
+
+    @Mock
+    private AsyncResultSet mockAsyncResultSet;
+
+    private void rows(final Row... rows) {
+        when(mockSession.execute(scan)).thenReturn(mockResultSet);
+        when(mockResultSet.iterator()).thenReturn(List.of(rows).iterator());
+    }
+
+    @Test
+    void badSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ThrottledWrites(mockSession, ONE, 0, 1),
+                "Page size should be checked!");
+        assertThrows(IllegalArgumentException.class, () -> new ThrottledWrites(mockSession, ONE, 1, 0),
+                "Concurrency should be checked!");
+    }
+
+    @Test
+    void skippedRowsNotWritten() {
+        final Row kept = mock(Row.class);
+        rows(kept, mock(Row.class), kept);
+        when(mockSession.executeAsync(write)).thenReturn(completedFuture(mockAsyncResultSet));
+        final long count = new ThrottledWrites(mockSession, ONE, 10, 2).run(scan, row -> row == kept ? write : null,
+                "rows");
+        assertEquals(2L, count, "Wrong number of writes!");
+        verify(mockSession, times(2)).executeAsync(write);
+        verify(scan).setPageSize(10);
+    }
+
+    @Test
+    void failureEndsScan() {
+        final RuntimeException error = new RuntimeException("Expected");
+        rows(mock(Row.class), mock(Row.class));
+        when(mockSession.executeAsync(write)).thenReturn(failedFuture(error));
+        final ThrottledWrites writes = new ThrottledWrites(mockSession, ONE, 10, 1);
+        final CompletionException e = assertThrows(CompletionException.class, () -> writes.run(scan, row -> write,
+                    "rows"), "Scan should fail!");
+        assertSame(error, e.getCause(), "Wrong cause of failure!");
+        verify(mockSession, times(1)).executeAsync(write);
+    }
+}